@@ -15,16 +15,17 @@
 package com.gargoylesoftware.htmlunit;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
+import com.gargoylesoftware.htmlunit.javascript.configuration.JavaScriptConfiguration;
+
 /**
  * Objects of this class represent one specific version of a given browser. Predefined
  * constants are provided for common browser versions.
@@ -61,8 +62,14 @@ public class BrowserVersion implements Serializable {
     private float javaScriptVersionNumeric_;
     private float browserVersionNumeric_;
     private Set<PluginConfiguration> plugins_ = new HashSet<PluginConfiguration>();
-    private final List<BrowserVersionFeatures> features_ = new ArrayList<BrowserVersionFeatures>();
+    /** The features of this browser version, as a bit set, as {@link #hasFeature} is called very often. */
+    private final Set<BrowserVersionFeatures> features_ = EnumSet.noneOf(BrowserVersionFeatures.class);
     private final String nickname_;
+    /**
+     * The JavaScript configuration of this browser version, cached here rather than in a static map so that
+     * it doesn't keep this instance in memory. Transient fields are ignored by {@link #equals(Object)}.
+     */
+    private transient JavaScriptConfiguration javaScriptConfiguration_;
 
     /** Application code name for both Internet Explorer and Netscape series. */
     public static final String APP_CODE_NAME = "Mozilla";
@@ -544,4 +551,26 @@ public class BrowserVersion implements Serializable {
         return nickname_;
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns the JavaScript configuration cached for this browser version.
+     * @return the JavaScript configuration cached for this browser version, or <code>null</code> if there is none
+     * @see JavaScriptConfiguration#getInstance(BrowserVersion)
+     */
+    public JavaScriptConfiguration getCachedJavaScriptConfiguration() {
+        return javaScriptConfiguration_;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Caches the JavaScript configuration of this browser version.
+     * @param configuration the JavaScript configuration of this browser version
+     * @see JavaScriptConfiguration#getInstance(BrowserVersion)
+     */
+    public void setCachedJavaScriptConfiguration(final JavaScriptConfiguration configuration) {
+        javaScriptConfiguration_ = configuration;
+    }
+
 }
@@ -15,14 +15,13 @@
 package com.gargoylesoftware.htmlunit;
 
 import java.io.Serializable;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.httpclient.util.DateParseException;
 import org.apache.commons.httpclient.util.DateUtil;
-import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.w3c.dom.css.CSSStyleSheet;
 
@@ -31,6 +30,12 @@ import org.w3c.dom.css.CSSStyleSheet;
  * compiled JavaScript files avoids unnecessary web requests and additional compilation overhead, while
  * caching parsed CSS snippets avoids very expensive CSS parsing.</p>
  *
+ * <p>Parsed style sheets and the other cached objects (responses, compiled scripts) are kept in two separate
+ * LRU segments, each one with its own lock and its own budget (a maximum number of entries and a maximum
+ * weight, which is the approximate size in bytes of the content the entries were built from), so that
+ * the entries of one kind never evict the ones of the other kind. The cache can be shared by several
+ * {@link WebClient}s.</p>
+ *
  * @version $Revision: 4883 $
  * @author Marc Guillemot
  * @author Daniel Gredler
@@ -39,46 +44,94 @@ public class Cache implements Serializable {
 
     private static final long serialVersionUID = -3864114727885057419L;
 
-    /** The maximum size of the cache. */
+    /** The maximum number of entries of each segment of the cache. */
     private int maxSize_ = 40;
 
+    /** The maximum weight of each segment of the cache. */
+    private long maxWeight_ = 32 * 1024 * 1024;
+
     /**
-     * The map which holds the cached responses. Note that when keying on URLs, we key on the string version
+     * The cached responses and compiled scripts. Note that when keying on URLs, we key on the string version
      * of the URLs, rather than on the URLs themselves. This is done for performance, because a) the
      * {@link java.net.URL#hashCode()} method is synchronized, and b) the {@link java.net.URL#hashCode()}
      * method triggers DNS lookups of the URL hostnames' IPs. As of this writing, the HtmlUnit unit tests
      * run ~20% faster whey keying on strings rather than on {@link java.net.URL} instances.
      */
-    private final Map<String, Entry> entries_ = Collections.synchronizedMap(new HashMap<String, Entry>(maxSize_));
+    private final Segment objects_ = new Segment();
+
+    /** The parsed style sheets, keyed on URL or on CSS snippet. */
+    private final Segment styleSheets_ = new Segment();
+
+    private final AtomicLong hitCount_ = new AtomicLong();
+    private final AtomicLong missCount_ = new AtomicLong();
+    private final AtomicLong evictionCount_ = new AtomicLong();
 
     /**
      * A cache entry.
      */
-    private class Entry implements Comparable<Entry>, Serializable {
+    private static class Entry implements Serializable {
 
         private static final long serialVersionUID = 588400350259242484L;
-        private final String key_;
         private final Object value_;
-        private long lastAccess_;
+        private final long weight_;
 
-        Entry(final String key, final Object value) {
-            key_ = key;
+        Entry(final Object value, final long weight) {
             value_ = value;
-            lastAccess_ = System.currentTimeMillis();
+            weight_ = weight;
+        }
+    }
+
+    /**
+     * A part of the cache, whose entries are kept in access order, so that evicting the least recently
+     * used one doesn't require to search for it.
+     */
+    private class Segment implements Serializable {
+
+        private static final long serialVersionUID = -2453620911634718263L;
+        private final LinkedHashMap<String, Entry> entries_ = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        private long weight_;
+
+        synchronized Entry get(final String key) {
+            return entries_.get(key);
+        }
+
+        synchronized void put(final String key, final Entry entry) {
+            final Entry old = entries_.put(key, entry);
+            if (old != null) {
+                weight_ -= old.weight_;
+            }
+            weight_ += entry.weight_;
+            deleteOverflow();
+        }
+
+        synchronized void remove(final String key) {
+            final Entry old = entries_.remove(key);
+            if (old != null) {
+                weight_ -= old.weight_;
+            }
         }
 
-        /**
-         * {@inheritDoc}
-         */
-        public int compareTo(final Entry other) {
-            return NumberUtils.compare(lastAccess_, other.lastAccess_);
+        synchronized void deleteOverflow() {
+            final Iterator<Entry> iterator = entries_.values().iterator();
+            while (entries_.size() > maxSize_ || (weight_ > maxWeight_ && entries_.size() > 1)) {
+                final Entry eldest = iterator.next();
+                iterator.remove();
+                weight_ -= eldest.weight_;
+                evictionCount_.incrementAndGet();
+            }
+        }
+
+        synchronized int size() {
+            return entries_.size();
         }
 
-        /**
-         * Updates the last access date.
-         */
-        public void touch() {
-            lastAccess_ = System.currentTimeMillis();
+        synchronized long weight() {
+            return weight_;
+        }
+
+        synchronized void clear() {
+            entries_.clear();
+            weight_ = 0;
         }
     }
 
@@ -94,9 +147,16 @@ public class Cache implements Serializable {
     public void cacheIfPossible(final WebRequestSettings request, final WebResponse response, final Object toCache) {
         if (isCacheable(request, response)) {
             final String url = response.getRequestSettings().getUrl().toString();
-            final Entry entry = new Entry(url, toCache);
-            entries_.put(entry.key_, entry);
-            deleteOverflow();
+            final Entry entry = new Entry(toCache, WebResponseImpl.getContentLengthOf(response));
+            // an URL is cached in one segment only, the last object cached for it replaces the previous one
+            if (toCache instanceof CSSStyleSheet) {
+                objects_.remove(url);
+                styleSheets_.put(url, entry);
+            }
+            else {
+                styleSheets_.remove(url);
+                objects_.put(url, entry);
+            }
         }
     }
 
@@ -112,21 +172,15 @@ public class Cache implements Serializable {
      * @param styleSheet the parsed version of <tt>css</tt>
      */
     public void cache(final String css, final CSSStyleSheet styleSheet) {
-        final Entry entry = new Entry(css, styleSheet);
-        entries_.put(entry.key_, entry);
-        deleteOverflow();
+        styleSheets_.put(css, new Entry(styleSheet, 2L * css.length()));
     }
 
     /**
-     * Truncates the cache to the maximal number of entries.
+     * Truncates the cache to the maximal number of entries and to the maximal weight.
      */
     protected void deleteOverflow() {
-        synchronized (entries_) {
-            while (entries_.size() > maxSize_) {
-                final Entry oldestEntry = Collections.min(entries_.values());
-                entries_.remove(oldestEntry.key_);
-            }
-        }
+        objects_.deleteOverflow();
+        styleSheets_.deleteOverflow();
     }
 
     /**
@@ -218,14 +272,12 @@ public class Cache implements Serializable {
         if (HttpMethod.GET != request.getHttpMethod()) {
             return null;
         }
-        final Entry cachedEntry = entries_.get(request.getUrl().toString());
+        final String url = request.getUrl().toString();
+        Entry cachedEntry = objects_.get(url);
         if (cachedEntry == null) {
-            return null;
-        }
-        synchronized (entries_) {
-            cachedEntry.touch();
+            cachedEntry = styleSheets_.get(url);
         }
-        return cachedEntry.value_;
+        return getValue(cachedEntry);
     }
 
     /**
@@ -236,19 +288,22 @@ public class Cache implements Serializable {
      * @return the cached stylesheet corresponding to the specified CSS snippet
      */
     public CSSStyleSheet getCachedStyleSheet(final String css) {
-        final Entry cachedEntry = entries_.get(css);
+        return (CSSStyleSheet) getValue(styleSheets_.get(css));
+    }
+
+    private Object getValue(final Entry cachedEntry) {
         if (cachedEntry == null) {
+            missCount_.incrementAndGet();
             return null;
         }
-        synchronized (entries_) {
-            cachedEntry.touch();
-        }
-        return (CSSStyleSheet) cachedEntry.value_;
+        hitCount_.incrementAndGet();
+        return cachedEntry.value_;
     }
 
     /**
      * Returns the cache's maximum size. This is the maximum number of files that will
-     * be cached. The default is <tt>25</tt>.
+     * be cached, for style sheets on the one hand and for the other objects on the other hand.
+     * The default is <tt>40</tt>.
      *
      * @return the cache's maximum size
      */
@@ -258,7 +313,8 @@ public class Cache implements Serializable {
 
     /**
      * Sets the cache's maximum size. This is the maximum number of files that will
-     * be cached. The default is <tt>25</tt>.
+     * be cached, for style sheets on the one hand and for the other objects on the other hand.
+     * The default is <tt>40</tt>.
      *
      * @param maxSize the cache's maximum size (must be &gt;= 0)
      */
@@ -270,22 +326,83 @@ public class Cache implements Serializable {
         deleteOverflow();
     }
 
+    /**
+     * Returns the cache's maximum weight. This is the maximum total size in bytes of the content
+     * (responses or CSS snippets) from which the cached objects have been built, for style sheets
+     * on the one hand and for the other objects on the other hand. An object heavier than this
+     * limit is still cached if it is the only one of its kind. The default is 32 MB.
+     *
+     * @return the cache's maximum weight
+     */
+    public long getMaxWeight() {
+        return maxWeight_;
+    }
+
+    /**
+     * Sets the cache's maximum weight (see {@link #getMaxWeight()}).
+     *
+     * @param maxWeight the cache's maximum weight (must be &gt;= 0)
+     */
+    public void setMaxWeight(final long maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Illegal value for maxWeight: " + maxWeight);
+        }
+        maxWeight_ = maxWeight;
+        deleteOverflow();
+    }
+
     /**
      * Returns the number of entries in the cache.
      *
      * @return the number of entries in the cache
      */
     public int getSize() {
-        return entries_.size();
+        return objects_.size() + styleSheets_.size();
+    }
+
+    /**
+     * Returns the weight of the entries in the cache (see {@link #getMaxWeight()}).
+     *
+     * @return the weight of the entries in the cache
+     */
+    public long getWeight() {
+        return objects_.weight() + styleSheets_.weight();
+    }
+
+    /**
+     * Returns the number of lookups which have found a cached object since this cache was created.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount_.get();
+    }
+
+    /**
+     * Returns the number of lookups which haven't found any cached object since this cache was created.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount_.get();
+    }
+
+    /**
+     * Returns the number of entries which have been removed to respect the maximum size or weight
+     * since this cache was created.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount_.get();
     }
 
     /**
      * Clears the cache.
      */
     public void clear() {
-        synchronized (entries_) {
-            entries_.clear();
-        }
+        objects_.clear();
+        styleSheets_.clear();
     }
 
 }
@@ -17,6 +17,8 @@ package com.gargoylesoftware.htmlunit;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -24,6 +26,7 @@ import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.HttpState;
 import org.apache.commons.httpclient.cookie.CookiePolicy;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
 
 /**
  * Manages cookies for a {@link WebClient}. This class is thread-safe.
@@ -47,9 +50,21 @@ public class CookieManager implements Serializable {
     /** Whether or not cookies are enabled. */
     private boolean cookiesEnabled_;
 
+    /** The minimum delay between two purges of the expired cookies, in milliseconds. */
+    private static final long PURGE_INTERVAL = DateUtils.MILLIS_PER_MINUTE;
+
     /** The cookies added to this cookie manager. */
     private final Set<Cookie> cookies_;
 
+    /** The cookies added to this cookie manager, as an array; built when needed. */
+    private transient Cookie[] cookiesArray_;
+
+    /** The last time the expired cookies have been purged. */
+    private transient long lastPurgeTime_;
+
+    /** Whether or not {@link #updateState(HttpState)} or {@link #updateFromState(HttpState)} is overridden. */
+    private transient Boolean stateSynchronizationOverridden_;
+
     /**
      * Creates a new instance.
      */
@@ -121,6 +136,7 @@ public class CookieManager implements Serializable {
         }
         cookies_.remove(cookie);
         cookies_.add(cookie);
+        cookiesArray_ = null;
     }
 
     /**
@@ -131,7 +147,9 @@ public class CookieManager implements Serializable {
         if (cookie.getValue() == null) {
             cookie.setValue("");
         }
-        cookies_.remove(cookie);
+        if (cookies_.remove(cookie)) {
+            cookiesArray_ = null;
+        }
     }
 
     /**
@@ -139,10 +157,96 @@ public class CookieManager implements Serializable {
      */
     public synchronized void clearCookies() {
         cookies_.clear();
+        cookiesArray_ = null;
+    }
+
+    /**
+     * Stores the specified cookie, received from a server: it replaces the existing cookie with the same
+     * name, domain and path, if any, and if it is expired, it only deletes this existing cookie.
+     * @param cookie the received cookie
+     */
+    synchronized void storeCookie(final Cookie cookie) {
+        if (cookie.isExpired()) {
+            removeCookie(cookie);
+        }
+        else {
+            addCookie(cookie);
+        }
+    }
+
+    /**
+     * Returns the currently configured cookies, as an array which must not be modified. The array is only
+     * rebuilt when the cookies change, and the expired cookies are purged at most once a minute, as
+     * the cookie specifications ignore them anyway when matching cookies against a request.
+     * @return the currently configured cookies
+     */
+    synchronized Cookie[] getCookiesArray() {
+        final long now = System.currentTimeMillis();
+        if (now - lastPurgeTime_ > PURGE_INTERVAL) {
+            purgeExpiredCookies(new Date(now));
+        }
+        if (cookiesArray_ == null) {
+            cookiesArray_ = cookies_.toArray(new Cookie[cookies_.size()]);
+        }
+        return cookiesArray_;
+    }
+
+    /**
+     * Removes the cookies which are expired at the specified date.
+     * @param date the date
+     * @return <tt>true</tt> if some cookies have been removed
+     */
+    synchronized boolean purgeExpiredCookies(final Date date) {
+        lastPurgeTime_ = date.getTime();
+        boolean removed = false;
+        for (final Iterator<Cookie> iterator = cookies_.iterator(); iterator.hasNext();) {
+            if (iterator.next().isExpired(date)) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        if (removed) {
+            cookiesArray_ = null;
+        }
+        return removed;
+    }
+
+    /**
+     * Returns whether or not a subclass overrides {@link #updateState(HttpState)} or
+     * {@link #updateFromState(HttpState)}. The cookies are then copied to an HTTP state with these methods
+     * before each request, and copied back after it, instead of being used directly by the HTTP client.
+     * @return whether or not the state synchronization methods are overridden
+     */
+    synchronized boolean isStateSynchronizationOverridden() {
+        if (stateSynchronizationOverridden_ == null) {
+            boolean overridden = false;
+            for (Class< ? > c = getClass(); c != CookieManager.class && !overridden; c = c.getSuperclass()) {
+                overridden = declaresMethod(c, "updateState") || declaresMethod(c, "updateFromState");
+            }
+            stateSynchronizationOverridden_ = overridden;
+        }
+        return stateSynchronizationOverridden_;
+    }
+
+    /**
+     * Returns whether or not the specified class declares the specified method taking an {@link HttpState}.
+     * @param c the class
+     * @param name the method name
+     * @return whether or not the specified class declares the method
+     */
+    private static boolean declaresMethod(final Class< ? > c, final String name) {
+        try {
+            c.getDeclaredMethod(name, HttpState.class);
+            return true;
+        }
+        catch (final NoSuchMethodException e) {
+            return false;
+        }
     }
 
     /**
      * Updates the specified HTTP state's cookie configuration according to the current cookie settings.
+     * This is only used before a request if a subclass overrides it.
      * @param state the HTTP state to update
      * @see #updateFromState(HttpState)
      */
@@ -158,6 +262,7 @@ public class CookieManager implements Serializable {
 
     /**
      * Updates the current cookie settings from the specified HTTP state's cookie configuration.
+     * This is only used after a request if a subclass overrides it, or {@link #updateState(HttpState)}.
      * @param state the HTTP state to update from
      * @see #updateState(HttpState)
      */
@@ -167,6 +272,7 @@ public class CookieManager implements Serializable {
         }
         cookies_.clear();
         cookies_.addAll(Arrays.asList(state.getCookies()));
+        cookiesArray_ = null;
     }
 
 }
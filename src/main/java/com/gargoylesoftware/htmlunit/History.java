@@ -19,13 +19,23 @@ import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
 import com.gargoylesoftware.htmlunit.util.UrlUtils;
 
 /**
  * Representation of the navigation history of a single window.
  *
+ * <p>Optionally (see {@link WebClient#setPageCacheSize(int)}), the history of a top level window keeps the
+ * pages it navigates away from, frozen, so that they can be restored as they were when navigating back or
+ * forward, without downloading, parsing and executing them again.</p>
+ *
  * @version $Revision: 4877 $
  * @author Daniel Gredler
  */
@@ -34,6 +44,9 @@ public class History implements Serializable {
     /** Serial version UID. */
     private static final long serialVersionUID = 2913698177338034112L;
 
+    /** The estimated memory used by an element and its attributes, in bytes; see {@link #estimateSize(HtmlPage)}. */
+    private static final int ELEMENT_SIZE = 1024;
+
     /** The window to which this navigation history belongs. */
     private final WebWindow window_;
 
@@ -53,6 +66,48 @@ public class History implements Serializable {
     /** The current index within the list of pages which make up this navigation history. */
     private int index_ = -1;
 
+    /**
+     * The index of the page enclosed in the window; differs from {@link #index_} while the page at the new
+     * current index is being loaded.
+     */
+    private int pageIndex_ = -1;
+
+    /** The cached pages, by index; see {@link WebClient#setPageCacheSize(int)}. */
+    private transient Map<Integer, CachedPage> cachedPages_;
+
+    /**
+     * A page kept in the page cache, along with the JavaScript state of its window.
+     */
+    static final class CachedPage {
+        private final Page page_;
+        private final Object scriptObject_;
+        private final JavaScriptJobManager jobManager_;
+        private final long size_;
+        CachedPage(final Page page, final Object scriptObject, final JavaScriptJobManager jobManager,
+                final long size) {
+            page_ = page;
+            scriptObject_ = scriptObject;
+            jobManager_ = jobManager;
+            size_ = size;
+        }
+        Page getPage() {
+            return page_;
+        }
+        Object getScriptObject() {
+            return scriptObject_;
+        }
+        JavaScriptJobManager getJobManager() {
+            return jobManager_;
+        }
+        /**
+         * Cleans up the page and discards its jobs, as it is removed from the page cache without being restored.
+         */
+        void discard() {
+            ((HtmlPage) page_).cleanUp();
+            jobManager_.shutdown();
+        }
+    }
+
     /**
      * Creates a new navigation history for the specified window.
      * @param window the window which owns the new navigation history
@@ -67,6 +122,7 @@ public class History implements Serializable {
      */
     private void initTransientFields() {
         ignoreNewPages_ = new ThreadLocal<Boolean>();
+        cachedPages_ = new TreeMap<Integer, CachedPage>();
     }
 
     /**
@@ -154,6 +210,8 @@ public class History implements Serializable {
     protected void addPage(final Page page) {
         final Boolean ignoreNewPages = ignoreNewPages_.get();
         if (ignoreNewPages != null && ignoreNewPages) {
+            removeCachedPages(index_, index_);
+            pageIndex_ = index_;
             return;
         }
         index_++;
@@ -161,13 +219,116 @@ public class History implements Serializable {
             urls_.remove(index_);
         }
         urls_.add(page.getWebResponse().getRequestSettings().getUrl().toExternalForm());
+        removeCachedPages(index_, Integer.MAX_VALUE);
+        pageIndex_ = index_;
     }
 
     /**
-     * Loads the URL at the current index into the window to which this navigation history belongs.
+     * Puts the specified page, which is enclosed in the window and is about to be replaced, into the page cache,
+     * if it is enabled and if the page may be cached. The caller is responsible for suspending the specified
+     * job manager, and for not cleaning up the page if it has been cached.
+     * @param page the page enclosed in the window
+     * @param scriptObject the script object of the window
+     * @param jobManager the job manager of the window
+     * @return whether or not the page has been cached
+     */
+    boolean cachePage(final Page page, final Object scriptObject, final JavaScriptJobManager jobManager) {
+        final WebClient webClient = window_.getWebClient();
+        if (webClient.getPageCacheSize() <= 0 || !(window_ instanceof TopLevelWindow) || pageIndex_ < 0
+            || !(page instanceof HtmlPage) || !((HtmlPage) page).isCacheable()) {
+            return false;
+        }
+        final long size = estimateSize((HtmlPage) page);
+        if (size > webClient.getPageCacheMaxMemory()) {
+            return false;
+        }
+        removeCachedPages(pageIndex_, pageIndex_);
+        evictCachedPages(webClient.getPageCacheSize() - 1, webClient.getPageCacheMaxMemory() - size);
+        cachedPages_.put(pageIndex_, new CachedPage(page, scriptObject, jobManager, size));
+        return true;
+    }
+
+    /**
+     * Removes all the pages from the page cache.
+     */
+    void clearPageCache() {
+        removeCachedPages(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Evicts the cached pages farthest from the current index until the specified limits are respected.
+     * @param maxPages the maximum number of cached pages
+     * @param maxMemory the maximum estimated memory used by the cached pages, in bytes
+     */
+    private void evictCachedPages(final int maxPages, final long maxMemory) {
+        long memory = 0;
+        for (final CachedPage cachedPage : cachedPages_.values()) {
+            memory += cachedPage.size_;
+        }
+        while (!cachedPages_.isEmpty() && (cachedPages_.size() > maxPages || memory > maxMemory)) {
+            Integer farthest = null;
+            for (final Integer index : cachedPages_.keySet()) {
+                if (farthest == null || Math.abs(index - index_) > Math.abs(farthest - index_)) {
+                    farthest = index;
+                }
+            }
+            memory -= cachedPages_.get(farthest).size_;
+            removeCachedPages(farthest, farthest);
+        }
+    }
+
+    /**
+     * Removes the cached pages whose index is within the specified range, and discards them.
+     * @param from the first index (inclusive)
+     * @param to the last index (inclusive)
+     */
+    private void removeCachedPages(final int from, final int to) {
+        for (final Iterator<Map.Entry<Integer, CachedPage>> it = cachedPages_.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Integer, CachedPage> entry = it.next();
+            if (entry.getKey() >= from && entry.getKey() <= to) {
+                it.remove();
+                entry.getValue().discard();
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated memory used by the specified page, based on the size of its content
+     * and on its number of elements.
+     * @param page the page
+     * @return the estimated memory used by the page, in bytes
+     */
+    private static long estimateSize(final HtmlPage page) {
+        long size = WebResponseImpl.getContentLengthOf(page.getWebResponse());
+        final Iterator<HtmlElement> elements = page.getAllHtmlChildElements().iterator();
+        while (elements.hasNext()) {
+            elements.next();
+            size += ELEMENT_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * Loads the URL at the current index into the window to which this navigation history belongs,
+     * restoring the cached page for this index if any.
      * @throws IOException if an IO error occurs
      */
     private void goToUrlAtCurrentIndex() throws IOException {
+        final CachedPage cachedPage = cachedPages_.remove(index_);
+        if (cachedPage != null) {
+            final String url = cachedPage.page_.getWebResponse().getRequestSettings().getUrl().toExternalForm();
+            if (url.equals(urls_.get(index_))) {
+                if (((WebWindowImpl) window_).restorePage(cachedPage)) {
+                    pageIndex_ = index_;
+                }
+                else {
+                    cachedPages_.put(index_, cachedPage);
+                }
+                return;
+            }
+            cachedPage.discard();
+        }
+
         final URL url = UrlUtils.toUrlSafe(urls_.get(index_));
         final WebRequestSettings wrs = new WebRequestSettings(url);
         final Boolean old = ignoreNewPages_.get();
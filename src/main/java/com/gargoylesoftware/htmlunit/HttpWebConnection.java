@@ -20,14 +20,17 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpState;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.NameValuePair;
@@ -50,6 +53,7 @@ import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
 import org.apache.commons.httpclient.methods.multipart.Part;
 import org.apache.commons.httpclient.methods.multipart.PartBase;
 import org.apache.commons.httpclient.methods.multipart.StringPart;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.httpclient.util.EncodingUtil;
 import org.apache.commons.logging.Log;
@@ -88,15 +92,28 @@ public class HttpWebConnection implements WebConnection {
         final URL url = settings.getUrl();
 
         final HttpClient httpClient = getHttpClient();
-        webClient_.getCookieManager().updateState(httpClient.getState());
+
+        // The cookie managers which override the state synchronization hooks get a copy of their
+        // cookies, as before the HttpClient state used the cookie manager directly
+        final CookieManager cookieManager = webClient_.getCookieManager();
+        final HttpState state;
+        if (cookieManager.isStateSynchronizationOverridden()) {
+            state = new HttpState();
+            cookieManager.updateState(state);
+        }
+        else {
+            state = httpClient.getState();
+        }
 
         final HttpMethodBase httpMethod = makeHttpMethod(settings);
         try {
             final HostConfiguration hostConfiguration = getHostConfiguration(settings);
             final long startTime = System.currentTimeMillis();
-            final int responseCode = httpClient.executeMethod(hostConfiguration, httpMethod);
+            final int responseCode = httpClient.executeMethod(hostConfiguration, httpMethod, state);
             final long endTime = System.currentTimeMillis();
-            webClient_.getCookieManager().updateFromState(httpClient.getState());
+            if (state != httpClient.getState()) {
+                cookieManager.updateFromState(state);
+            }
             return makeWebResponse(responseCode, httpMethod, settings, endTime - startTime);
         }
         catch (final HttpException e) {
@@ -341,6 +358,7 @@ public class HttpWebConnection implements WebConnection {
     protected synchronized HttpClient getHttpClient() {
         if (httpClient_ == null) {
             httpClient_ = createHttpClient();
+            httpClient_.setState(new CookieManagerState());
 
             // Disable informational messages from httpclient
             final Log log = LogFactory.getLog("httpclient.wire");
@@ -360,6 +378,17 @@ public class HttpWebConnection implements WebConnection {
         // (it may have changed on the webClient since last call to getHttpClientFor(...))
         httpClient_.getParams().setParameter(CredentialsProvider.PROVIDER, webClient_.getCredentialsProvider());
 
+        // Allow as many connections per host as parallel downloads (it may have changed too),
+        // as the connection manager only allows 2 connections per host by default
+        final int parallelDownloads = webClient_.getParallelDownloadsPerHost();
+        final HttpConnectionManagerParams connectionParams = httpClient_.getHttpConnectionManager().getParams();
+        if (parallelDownloads > connectionParams.getDefaultMaxConnectionsPerHost()) {
+            connectionParams.setDefaultMaxConnectionsPerHost(parallelDownloads);
+            if (parallelDownloads > connectionParams.getMaxTotalConnections()) {
+                connectionParams.setMaxTotalConnections(parallelDownloads);
+            }
+        }
+
         return httpClient_;
     }
 
@@ -438,7 +467,8 @@ public class HttpWebConnection implements WebConnection {
             final int statusCode,
             final HttpMethodBase method
     ) throws IOException {
-        return new WebResponseData(method.getResponseBodyAsStream(), statusCode, statusMessage, headers);
+        return new WebResponseData(method.getResponseBodyAsStream(), statusCode, statusMessage, headers,
+            webClient_.getMaxInMemory());
     }
 
     /**
@@ -533,4 +563,61 @@ public class HttpWebConnection implements WebConnection {
             }
         }
     }
+
+    /**
+     * The HTTP state used by the HttpClient: it reads and stores the cookies directly in the cookie manager
+     * of the WebClient, instead of a copy that would have to be synchronized with it for each request.
+     */
+    private class CookieManagerState extends HttpState {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addCookie(final Cookie cookie) {
+            webClient_.getCookieManager().storeCookie(cookie);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addCookies(final Cookie[] cookies) {
+            for (final Cookie cookie : cookies) {
+                addCookie(cookie);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Cookie[] getCookies() {
+            return webClient_.getCookieManager().getCookiesArray();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean purgeExpiredCookies() {
+            return purgeExpiredCookies(new Date());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean purgeExpiredCookies(final Date date) {
+            return webClient_.getCookieManager().purgeExpiredCookies(date);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void clearCookies() {
+            webClient_.getCookieManager().clearCookies();
+        }
+    }
 }
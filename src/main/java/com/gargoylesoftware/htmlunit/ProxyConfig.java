@@ -19,6 +19,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
 
+import com.gargoylesoftware.htmlunit.javascript.ProxyAutoConfig;
+
 /**
  * Class which centralizes proxy configuration, in an effort to reduce clutter in the {@link WebClient}
  * class. One instance of this class exists for each <tt>WebClient</tt> instance.
@@ -36,6 +38,7 @@ public class ProxyConfig implements Serializable {
     private final Map<String, Pattern> proxyBypassHosts_;
     private String proxyAutoConfigUrl_;
     private String proxyAutoConfigContent_;
+    private transient ProxyAutoConfig proxyAutoConfig_;
 
     /**
      * Creates a new instance.
@@ -153,7 +156,19 @@ public class ProxyConfig implements Serializable {
      * Sets the proxy auto-config content.
      * @param proxyAutoConfigContent the proxy auto-config content
      */
-    protected void setProxyAutoConfigContent(final String proxyAutoConfigContent) {
+    protected synchronized void setProxyAutoConfigContent(final String proxyAutoConfigContent) {
         proxyAutoConfigContent_ = proxyAutoConfigContent;
+        proxyAutoConfig_ = null;
+    }
+
+    /**
+     * Returns the proxy auto-config evaluator of the proxy auto-config content, which is compiled only once.
+     * @return the proxy auto-config evaluator, or <tt>null</tt> if the content is not known yet
+     */
+    protected synchronized ProxyAutoConfig getProxyAutoConfig() {
+        if (proxyAutoConfig_ == null && proxyAutoConfigContent_ != null) {
+            proxyAutoConfig_ = new ProxyAutoConfig(proxyAutoConfigContent_);
+        }
+        return proxyAutoConfig_;
     }
 }
@@ -115,6 +115,7 @@ public class TopLevelWindow extends WebWindowImpl {
         }
         destroyChildren();
         getJobManager().shutdown();
+        getHistory().clearPageCache();
         getWebClient().deregisterWebWindow(this);
     }
 
@@ -67,7 +67,8 @@ import com.gargoylesoftware.htmlunit.html.HTMLParserListener;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
-import com.gargoylesoftware.htmlunit.javascript.ProxyAutoConfig;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManagerImpl;
 import com.gargoylesoftware.htmlunit.javascript.host.Event;
 import com.gargoylesoftware.htmlunit.javascript.host.Window;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
@@ -171,6 +172,14 @@ public class WebClient implements Serializable {
     private boolean activeXNative_;
     private RefreshHandler refreshHandler_ = new ImmediateRefreshHandler();
     private boolean throwExceptionOnScriptError_ = true;
+    private boolean virtualTimeEnabled_;
+    private int parallelDownloadsPerHost_;
+    private boolean prefetchEnabled_;
+    private int pageCacheSize_;
+    private long pageCacheMaxMemory_ = 32 * 1024 * 1024;
+    private boolean javaScriptFunctionSharingEnabled_;
+    private int maxInMemory_;
+    private transient WebResponsePrefetcher webResponsePrefetcher_;
 
     /**
      * Creates a web client instance using the browser version returned by
@@ -441,8 +450,13 @@ public class WebClient implements Serializable {
 
         final Page oldPage = webWindow.getEnclosedPage();
         if (oldPage != null) {
-            // Remove the old windows before create new ones.
-            oldPage.cleanUp();
+            // Keep the old page in the page cache if possible, or remove the old windows before create new ones.
+            // Content written by document.open() and the like shares the window's script object with the old
+            // page, which thus cannot be cached.
+            if (webResponse instanceof StringWebResponse || !(webWindow instanceof WebWindowImpl)
+                || !((WebWindowImpl) webWindow).cacheEnclosedPage()) {
+                oldPage.cleanUp();
+            }
         }
         Page newPage = null;
         if (windows_.contains(webWindow) || getBrowserVersion().isIE()) {
@@ -884,7 +898,7 @@ public class WebClient implements Serializable {
         webWindowListeners_.remove(listener);
     }
 
-    private void fireWindowContentChanged(final WebWindowEvent event) {
+    void fireWindowContentChanged(final WebWindowEvent event) {
         for (final WebWindowListener listener : new ArrayList<WebWindowListener>(webWindowListeners_)) {
             listener.webWindowContentChanged(event);
         }
@@ -1419,7 +1433,7 @@ public class WebClient implements Serializable {
                             .getWebResponse().getContentAsString();
                         proxyConfig_.setProxyAutoConfigContent(content);
                     }
-                    final String allValue = ProxyAutoConfig.evaluate(content, url);
+                    final String allValue = proxyConfig_.getProxyAutoConfig().evaluate(url);
                     LOG.debug("Proxy Auto-Config: value '" + allValue + "' for URL " + url);
                     String value = allValue.split(";")[0].trim();
                     if (value.startsWith("PROXY")) {
@@ -1848,6 +1862,218 @@ public class WebClient implements Serializable {
         throwExceptionOnScriptError_ = newValue;
     }
 
+    /**
+     * Returns the maximum number of responses downloaded at the same time from a given host when downloads
+     * are performed in parallel.
+     * @return the maximum number of parallel downloads per host, or <code>0</code> if parallel downloads
+     *         are disabled (the default)
+     * @see #setParallelDownloadsPerHost(int)
+     */
+    public int getParallelDownloadsPerHost() {
+        return parallelDownloadsPerHost_;
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Enables the parallel download of the contents of the frames and iframes of a page, and sets the
+     * maximum number of responses downloaded at the same time from a given host. The frames are still
+     * parsed and their scripts executed one at a time, in document order.</p>
+     *
+     * <p>{@link HttpWebConnection} raises the maximum number of connections per host of its
+     * connection manager accordingly.</p>
+     *
+     * @param max the maximum number of parallel downloads per host, or <code>0</code> to disable
+     *        parallel downloads (the default)
+     */
+    public void setParallelDownloadsPerHost(final int max) {
+        parallelDownloadsPerHost_ = max;
+    }
+
+    /**
+     * Indicates if the external scripts, style sheets and images of HTML pages are downloaded in advance.
+     * @return <code>true</code> if the resources of HTML pages are downloaded in advance
+     * @see #setPrefetchEnabled(boolean)
+     */
+    public boolean isPrefetchEnabled() {
+        return prefetchEnabled_;
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Enables or disables the download in advance of the resources of HTML pages. When enabled, the content
+     * of each HTML page is scanned before being parsed for external scripts, style sheets and images with an
+     * <tt>onload</tt> handler, which are then downloaded in parallel; the scripts are still executed one at
+     * a time, in document order. The number of downloads from a given host is bounded by
+     * {@link #getParallelDownloadsPerHost()} (at least one). Disabled by default.</p>
+     *
+     * @param enabled <code>true</code> to download the resources of HTML pages in advance
+     */
+    public void setPrefetchEnabled(final boolean enabled) {
+        prefetchEnabled_ = enabled;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns the helper used to download responses in parallel.
+     * @return the helper used to download responses in parallel
+     * @see #setParallelDownloadsPerHost(int)
+     */
+    public synchronized WebResponsePrefetcher getWebResponsePrefetcher() {
+        if (webResponsePrefetcher_ == null) {
+            webResponsePrefetcher_ = new WebResponsePrefetcher(this);
+        }
+        return webResponsePrefetcher_;
+    }
+
+    /**
+     * Returns the maximum number of pages kept in the page cache of the navigation history of each window.
+     * @return the maximum number of pages kept in the page cache of each window, or <code>0</code> if the
+     *         page cache is disabled (the default)
+     * @see #setPageCacheSize(int)
+     */
+    public int getPageCacheSize() {
+        return pageCacheSize_;
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Enables the page cache of the navigation history of top level windows, and sets the maximum number
+     * of pages it keeps for each window. When enabled, the pages the windows navigate away from are kept, with
+     * their JavaScript state and their suspended background tasks; going back or forward to them restores
+     * them as they were, without downloading, parsing or executing anything. Pages with frames, or with
+     * <tt>unload</tt> handlers, are not cached. When the cache is full, the pages farthest from the current
+     * one in the navigation history are evicted.</p>
+     *
+     * @param size the maximum number of pages kept in the page cache of each window, or <code>0</code>
+     *        to disable the page cache (the default)
+     * @see #setPageCacheMaxMemory(long)
+     */
+    public void setPageCacheSize(final int size) {
+        pageCacheSize_ = size;
+    }
+
+    /**
+     * Returns the maximum estimated memory used by the pages kept in the page cache of each window.
+     * @return the maximum estimated memory used by the page cache of each window, in bytes
+     * @see #setPageCacheMaxMemory(long)
+     */
+    public long getPageCacheMaxMemory() {
+        return pageCacheMaxMemory_;
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Sets the maximum estimated memory used by the pages kept in the page cache of each window (32 MB by
+     * default). The memory used by a page is estimated from the size of its content and its number of elements.
+     * </p>
+     *
+     * @param maxMemory the maximum estimated memory used by the page cache of each window, in bytes
+     * @see #setPageCacheSize(int)
+     */
+    public void setPageCacheMaxMemory(final long maxMemory) {
+        pageCacheMaxMemory_ = maxMemory;
+    }
+
+    /**
+     * Indicates if the windows share the JavaScript objects of the host functions.
+     * @return <code>true</code> if the windows share the JavaScript objects of the host functions
+     * @see #setJavaScriptFunctionSharingEnabled(boolean)
+     */
+    public boolean isJavaScriptFunctionSharingEnabled() {
+        return javaScriptFunctionSharingEnabled_;
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Enables or disables the sharing of the JavaScript objects of the host functions (like
+     * <tt>document.getElementById</tt>) between the windows. When enabled, these functions are created
+     * once for each browser version instead of once for each page, frame or popup, which makes the
+     * initialization of the windows faster and lighter. The shared functions are sealed: scripts can still
+     * replace them in the prototypes of their window, but not add properties to them. As for functions coming
+     * from other windows in real browsers, they are not instances of the <tt>Function</tt> of the window.
+     * Disabled by default.</p>
+     *
+     * <p>This setting applies to the windows initialized after it has been changed.</p>
+     *
+     * @param enabled <code>true</code> to share the JavaScript objects of the host functions between windows
+     */
+    public void setJavaScriptFunctionSharingEnabled(final boolean enabled) {
+        javaScriptFunctionSharingEnabled_ = enabled;
+    }
+
+    /**
+     * Returns the maximum size of the response bodies kept in memory.
+     * @return the maximum size in bytes of the response bodies kept in memory, or <code>0</code> if all
+     *         response bodies are kept in memory (the default)
+     * @see #setMaxInMemory(int)
+     */
+    public int getMaxInMemory() {
+        return maxInMemory_;
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Sets the maximum size of the response bodies downloaded through HTTP which are kept in memory.
+     * Larger bodies are written to temporary files, which are read each time the content is accessed through
+     * {@link WebResponse#getContentAsStream()}, and which are deleted once the responses can't be reached
+     * anymore and are garbage collected (or explicitly, through {@link WebResponseImpl#cleanUp()}).
+     * Note that {@link WebResponse#getContentAsBytes()} and {@link WebResponse#getContentAsString()} still
+     * return the whole content at once.</p>
+     *
+     * @param maxInMemory the maximum size in bytes of the response bodies kept in memory, or <code>0</code>
+     *        to keep all response bodies in memory (the default)
+     */
+    public void setMaxInMemory(final int maxInMemory) {
+        maxInMemory_ = maxInMemory;
+    }
+
+    /**
+     * Indicates if background JavaScript tasks are executed on virtual time.
+     * @return <code>true</code> if background JavaScript tasks are executed on virtual time
+     * @see #setVirtualTimeEnabled(boolean)
+     */
+    public boolean isVirtualTimeEnabled() {
+        return virtualTimeEnabled_;
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Enables/disables the execution of background JavaScript tasks on virtual time (disabled by default).</p>
+     *
+     * <p>On virtual time, background tasks are not executed on their own anymore: they are executed in order,
+     * on the calling thread, by {@link #waitForBackgroundJavaScript(long)},
+     * {@link #waitForBackgroundJavaScriptStartingBefore(long)} and {@link #advanceVirtualTime(long)}, which
+     * return as soon as the tasks are done, without waiting for their delays to elapse. The <tt>Date</tt> of
+     * the pages loaded afterwards follows the virtual clock of their window.</p>
+     *
+     * @param enabled <code>true</code> to execute background JavaScript tasks on virtual time
+     * @see JavaScriptJobManagerImpl#setVirtualTime(boolean)
+     */
+    public void setVirtualTimeEnabled(final boolean enabled) {
+        virtualTimeEnabled_ = enabled;
+        for (final WebWindow window : new ArrayList<WebWindow>(windows_)) {
+            final JavaScriptJobManager jobManager = window.getJobManager();
+            if (jobManager instanceof JavaScriptJobManagerImpl) {
+                ((JavaScriptJobManagerImpl) jobManager).setVirtualTime(enabled);
+            }
+        }
+    }
+
     /**
      * Gets the current listener for encountered incorrectness (except HTML parsing messages that
      * are handled by the HTML parser listener). Default value is an instance of
@@ -2126,6 +2352,34 @@ public class WebClient implements Serializable {
         return count;
     }
 
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>When background JavaScript tasks are executed on virtual time, advances the clock of every window
+     * by the specified amount, executing in order the tasks which become due.</p>
+     *
+     * @param millis the amount of virtual time to advance (in milliseconds)
+     * @return the number of background JavaScript jobs still waiting to be executed when this method returns
+     * @see #setVirtualTimeEnabled(boolean)
+     */
+    public int advanceVirtualTime(final long millis) {
+        if (!virtualTimeEnabled_) {
+            throw new IllegalStateException("Virtual time is not enabled");
+        }
+        int count = 0;
+        for (final WebWindow window : new ArrayList<WebWindow>(windows_)) {
+            final JavaScriptJobManager jobManager = window.getJobManager();
+            if (jobManager instanceof JavaScriptJobManagerImpl) {
+                count += ((JavaScriptJobManagerImpl) jobManager).advanceTime(millis);
+            }
+            else {
+                count += jobManager.getJobCount();
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns the aggregate background JavaScript job count across all windows.
      * @return the aggregate background JavaScript job count across all windows
@@ -14,9 +14,17 @@
  */
 package com.gargoylesoftware.htmlunit;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
@@ -40,10 +48,32 @@ public class WebResponseData implements Serializable {
     private static final long serialVersionUID = 2979956380280496543L;
 
     private byte[] body_;
+    /** The temporary file containing the body, if it is too large to be kept in memory. */
+    private transient BodyFile bodyFile_;
     private int statusCode_;
     private String statusMessage_;
     private List<NameValuePair> responseHeaders_;
 
+    /**
+     * A temporary file containing a response body, which is deleted once it is garbage collected if it hasn't
+     * been deleted before. Only responses whose body has actually been written to a temporary file are
+     * finalizable this way.
+     */
+    private static final class BodyFile {
+        private final File file_;
+        BodyFile(final File file) {
+            file_ = file;
+        }
+        void delete() {
+            file_.delete();
+        }
+        @Override
+        protected void finalize() throws Throwable {
+            delete();
+            super.finalize();
+        }
+    }
+
     /**
      * Constructs with a raw byte[] (mostly for testing).
      *
@@ -86,6 +116,52 @@ public class WebResponseData implements Serializable {
         body_ = getBody(bodyStream, responseHeaders);
     }
 
+    /**
+     * Constructs with a data stream, keeping the body in memory only if it isn't larger than the specified size.
+     * Larger bodies are written to a temporary file, which is read each time the content is accessed, and
+     * which is deleted by {@link #cleanUp()}, or once this object is garbage collected. Subclasses overriding
+     * {@link #getBody(InputStream, List)} keep all bodies in memory, as returned by this method.
+     *
+     * @param bodyStream        Stream of this response's body
+     * @param statusCode        Status code from the server
+     * @param statusMessage     Status message from the server
+     * @param responseHeaders   Headers in this response
+     * @param maxInMemory       the maximum size in bytes of a body kept in memory, or <code>0</code>
+     *                          to keep all bodies in memory
+     *
+     * @throws IOException on stream errors
+     * @see WebClient#setMaxInMemory(int)
+     */
+    public WebResponseData(final InputStream bodyStream, final int statusCode, final String statusMessage,
+            final List<NameValuePair> responseHeaders, final int maxInMemory) throws IOException {
+        statusCode_ = statusCode;
+        statusMessage_ = statusMessage;
+        responseHeaders_ = Collections.unmodifiableList(responseHeaders);
+        if (maxInMemory <= 0 || overridesGetBody()) {
+            body_ = getBody(bodyStream, responseHeaders);
+        }
+        else if (bodyStream != null) {
+            readBody(getDecodedStream(bodyStream, responseHeaders), maxInMemory);
+        }
+    }
+
+    /**
+     * Returns whether or not a subclass overrides {@link #getBody(InputStream, List)}.
+     * @return whether or not a subclass overrides {@link #getBody(InputStream, List)}
+     */
+    private boolean overridesGetBody() {
+        for (Class< ? > c = getClass(); c != WebResponseData.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("getBody", InputStream.class, List.class);
+                return true;
+            }
+            catch (final NoSuchMethodException e) {
+                // look at the superclass
+            }
+        }
+        return false;
+    }
+
     /**
      * Constructs without data stream for subclasses that override getBody().
      *
@@ -112,10 +188,22 @@ public class WebResponseData implements Serializable {
      * @return the specified body stream, as a byte array
      * @throws IOException if a stream error occurs
      */
-    protected byte[] getBody(InputStream stream, final List<NameValuePair> headers) throws IOException {
+    protected byte[] getBody(final InputStream stream, final List<NameValuePair> headers) throws IOException {
         if (stream == null) {
             return null;
         }
+        return IOUtils.toByteArray(getDecodedStream(stream, headers));
+    }
+
+    /**
+     * Wraps the specified input stream into a stream which uncompresses it, if the response headers indicate
+     * that the data has been compressed.
+     * @param stream the input stream which contains the body
+     * @param headers the response headers
+     * @return the stream to read the uncompressed body from
+     * @throws IOException if a stream error occurs
+     */
+    private InputStream getDecodedStream(InputStream stream, final List<NameValuePair> headers) throws IOException {
         String encoding = null;
         for (final NameValuePair header : headers) {
             final String headerName = header.getName().trim();
@@ -130,17 +218,104 @@ public class WebResponseData implements Serializable {
         else if (encoding != null && StringUtils.contains(encoding, "deflate")) {
             stream = new InflaterInputStream(stream);
         }
-        return IOUtils.toByteArray(stream);
+        return stream;
+    }
+
+    /**
+     * Reads the body, keeping it in memory if it isn't larger than the specified size, or writing it to
+     * a temporary file otherwise.
+     * @param stream the input stream which contains the uncompressed body
+     * @param maxInMemory the maximum size in bytes of a body kept in memory
+     * @throws IOException if a stream error occurs
+     */
+    private void readBody(final InputStream stream, final int maxInMemory) throws IOException {
+        final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            memory.write(buffer, 0, read);
+            if (memory.size() > maxInMemory) {
+                final File file = File.createTempFile("htmlunit", ".tmp");
+                final OutputStream out = new FileOutputStream(file);
+                try {
+                    memory.writeTo(out);
+                    IOUtils.copy(stream, out);
+                }
+                catch (final IOException e) {
+                    out.close();
+                    file.delete();
+                    throw e;
+                }
+                out.close();
+                bodyFile_ = new BodyFile(file);
+                return;
+            }
+        }
+        body_ = memory.toByteArray();
     }
 
     /**
-     * Returns the response body.
+     * Returns the response body. If the body has been written to a temporary file, this reads it entirely
+     * in memory: {@link #getInputStream()} should be preferred.
      * @return response body
      */
     public byte[] getBody() {
+        if (bodyFile_ != null) {
+            try {
+                final InputStream stream = new FileInputStream(bodyFile_.file_);
+                try {
+                    return IOUtils.toByteArray(stream);
+                }
+                finally {
+                    stream.close();
+                }
+            }
+            catch (final IOException e) {
+                throw new RuntimeException("Can't read the response body from " + bodyFile_.file_, e);
+            }
+        }
         return body_;
     }
 
+    /**
+     * Returns a new stream to read the response body from.
+     * @return a new stream to read the response body from, or <tt>null</tt> if there is no body
+     * @throws IOException if the body can't be read
+     */
+    public InputStream getInputStream() throws IOException {
+        if (bodyFile_ != null) {
+            return new BufferedInputStream(new FileInputStream(bodyFile_.file_));
+        }
+        final byte[] body = getBody();
+        if (body == null) {
+            return null;
+        }
+        return new ByteArrayInputStream(body);
+    }
+
+    /**
+     * Returns the length of the response body, without reading it if it has been written to a temporary file.
+     * @return the length in bytes of the response body, or <tt>0</tt> if there is no body
+     */
+    public long getContentLength() {
+        if (bodyFile_ != null) {
+            return bodyFile_.file_.length();
+        }
+        final byte[] body = getBody();
+        if (body == null) {
+            return 0;
+        }
+        return body.length;
+    }
+
+    /**
+     * Indicates if the response body has been written to a temporary file instead of being kept in memory.
+     * @return <tt>true</tt> if the response body is in a temporary file
+     */
+    public boolean isBodyInFile() {
+        return bodyFile_ != null;
+    }
+
     /**
      * @return response headers
      */
@@ -162,4 +337,44 @@ public class WebResponseData implements Serializable {
         return statusMessage_;
     }
 
+    /**
+     * Deletes the temporary file containing the body, if any. The body isn't available anymore afterwards.
+     */
+    public void cleanUp() {
+        final BodyFile file = bodyFile_;
+        bodyFile_ = null;
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Serializes the body in memory, as the temporary file may not exist anymore when deserializing.
+     * @param out the stream to write to
+     * @throws IOException if an error occurs
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (bodyFile_ != null) {
+            out.writeObject(getBody());
+        }
+        else {
+            out.writeObject(null);
+        }
+    }
+
+    /**
+     * Deserializes the body written to a temporary file, if any, into memory.
+     * @param in the stream to read from
+     * @throws IOException if an error occurs
+     * @throws ClassNotFoundException if a class can't be found
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final byte[] body = (byte[]) in.readObject();
+        if (body != null) {
+            body_ = body;
+        }
+    }
+
 }
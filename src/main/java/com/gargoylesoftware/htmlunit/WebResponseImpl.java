@@ -14,7 +14,6 @@
  */
 package com.gargoylesoftware.htmlunit;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -22,6 +21,7 @@ import java.net.URL;
 import java.util.List;
 
 import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -180,7 +180,13 @@ public class WebResponseImpl implements WebResponse {
      */
     public String getContentCharsetOrNull() {
         try {
-            return EncodingSniffer.sniffEncoding(getResponseHeaders(), getContentAsStream());
+            final InputStream stream = getContentAsStream();
+            try {
+                return EncodingSniffer.sniffEncoding(getResponseHeaders(), stream);
+            }
+            finally {
+                IOUtils.closeQuietly(stream);
+            }
         }
         catch (final IOException e) {
             LOG.warn("Error trying to sniff encoding.", e);
@@ -213,6 +219,9 @@ public class WebResponseImpl implements WebResponse {
      * {@inheritDoc}
      */
     public String getContentAsString(final String encoding) {
+        if (responseData_.isBodyInFile()) {
+            return getContentAsStringFromStream(encoding);
+        }
         final byte[] body = responseData_.getBody();
         if (body != null) {
             try {
@@ -226,15 +235,41 @@ public class WebResponseImpl implements WebResponse {
         return null;
     }
 
+    /**
+     * Decodes the response body, read from its stream.
+     * @param encoding the encoding to use
+     * @return the response body as a string, or <tt>null</tt> if there is no body
+     */
+    private String getContentAsStringFromStream(final String encoding) {
+        try {
+            final InputStream stream = responseData_.getInputStream();
+            if (stream == null) {
+                return null;
+            }
+            try {
+                try {
+                    return IOUtils.toString(stream, encoding);
+                }
+                catch (final UnsupportedEncodingException e) {
+                    LOG.warn("Attempted to use unsupported encoding '" + encoding
+                        + "'; using default system encoding.");
+                    return IOUtils.toString(stream);
+                }
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (final IOException e) {
+            throw new RuntimeException("Can't read the response body", e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     public InputStream getContentAsStream() throws IOException {
-        final byte[] body = responseData_.getBody();
-        if (body != null) {
-            return new ByteArrayInputStream(body);
-        }
-        return null;
+        return responseData_.getInputStream();
     }
 
     /**
@@ -244,6 +279,68 @@ public class WebResponseImpl implements WebResponse {
         return responseData_.getBody();
     }
 
+    /**
+     * Returns the length of the response content, which doesn't require to read the content
+     * if it has been written to a temporary file.
+     * @return the length in bytes of the response content, or <tt>0</tt> if there is no content
+     */
+    public long getContentLength() {
+        return responseData_.getContentLength();
+    }
+
+    /**
+     * Returns the length of the content of the specified response, without keeping the whole content in memory
+     * if possible: the length is known by {@link WebResponseImpl}s, and is otherwise taken from the
+     * <tt>Content-Length</tt> header or, as a last resort, counted while reading the content stream.
+     * @param response the response
+     * @return the length in bytes of the response content, or <tt>0</tt> if there is no content
+     */
+    static long getContentLengthOf(final WebResponse response) {
+        if (response instanceof WebResponseImpl) {
+            return ((WebResponseImpl) response).getContentLength();
+        }
+        final String header = response.getResponseHeaderValue("Content-Length");
+        if (header != null) {
+            try {
+                return Long.parseLong(header.trim());
+            }
+            catch (final NumberFormatException e) {
+                // count the content instead
+            }
+        }
+        try {
+            final InputStream stream = response.getContentAsStream();
+            if (stream == null) {
+                return 0;
+            }
+            try {
+                final byte[] buffer = new byte[8192];
+                long length = 0;
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    length += read;
+                }
+                return length;
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (final IOException e) {
+            LOG.warn("Can't read the content of " + response.getRequestSettings().getUrl(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Releases the resources held by this response, like the temporary file its body may have been
+     * written to. The content isn't available anymore afterwards.
+     * @see WebClient#setMaxInMemory(int)
+     */
+    public void cleanUp() {
+        responseData_.cleanUp();
+    }
+
     /**
      * {@inheritDoc}
      */
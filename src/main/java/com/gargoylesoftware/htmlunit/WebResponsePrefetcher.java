@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+ *
+ * <p>Downloads {@link WebResponse}s in background threads, through
+ * {@link WebClient#loadWebResponse(WebRequestSettings)}, so that several responses can be downloaded at the
+ * same time. The number of simultaneous downloads from a given host is bounded by
+ * {@link WebClient#getParallelDownloadsPerHost()}; the other requests to this host wait for their turn.
+ * {@link HttpWebConnection} allows as many connections per host.</p>
+ *
+ * <p>Downloading a response in advance doesn't have any side effect on the pages: it is up to the caller to
+ * load the response once it is needed.</p>
+ *
+ * @version $Revision$
+ * @author HtmlUnit team
+ * @see WebClient#getWebResponsePrefetcher()
+ */
+public class WebResponsePrefetcher {
+
+    /** A counter used to generate the IDs assigned to threads. */
+    private static final AtomicInteger NEXT_THREAD_ID = new AtomicInteger(1);
+
+    private final WebClient webClient_;
+    private final ExecutorService executor_;
+
+    /** The downloads of each host which are waiting for their turn. */
+    private final Map<String, LinkedList<Runnable>> waitingDownloads_ = new HashMap<String, LinkedList<Runnable>>();
+
+    /** The number of downloads in progress for each host. */
+    private final Map<String, Integer> runningDownloads_ = new HashMap<String, Integer>();
+
+    /**
+     * Creates a new instance.
+     * @param webClient the web client which downloads the responses
+     */
+    public WebResponsePrefetcher(final WebClient webClient) {
+        webClient_ = webClient;
+        executor_ = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                // Make sure the thread is a daemon thread so that it doesn't keep the JVM running unnecessarily.
+                final Thread t = new Thread(r, "HtmlUnit Download Thread " + NEXT_THREAD_ID.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Starts downloading the response to the specified request.
+     * @param settings the request settings
+     * @return the future response
+     */
+    public Future<WebResponse> prefetch(final WebRequestSettings settings) {
+        final String host = settings.getUrl().getHost();
+        final FutureTask<WebResponse> download = new FutureTask<WebResponse>(new Callable<WebResponse>() {
+            public WebResponse call() throws Exception {
+                return webClient_.loadWebResponse(settings);
+            }
+        });
+        final Runnable task = new Runnable() {
+            public void run() {
+                try {
+                    download.run();
+                }
+                finally {
+                    downloadFinished(host);
+                }
+            }
+        };
+        synchronized (this) {
+            final int running = getRunningDownloadCount(host);
+            if (running < Math.max(1, webClient_.getParallelDownloadsPerHost())) {
+                runningDownloads_.put(host, running + 1);
+                executor_.execute(task);
+            }
+            else {
+                LinkedList<Runnable> waiting = waitingDownloads_.get(host);
+                if (waiting == null) {
+                    waiting = new LinkedList<Runnable>();
+                    waitingDownloads_.put(host, waiting);
+                }
+                waiting.add(task);
+            }
+        }
+        return download;
+    }
+
+    /**
+     * Waits for the specified download to finish, and returns its response.
+     * @param download the download, as returned by {@link #prefetch(WebRequestSettings)}
+     * @return the downloaded response
+     * @throws IOException if the download failed
+     */
+    public static WebResponse getResponse(final Future<WebResponse> download) throws IOException {
+        try {
+            return download.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Called once a download is over: starts the next download from the same host, if any.
+     * @param host the host of the finished download
+     */
+    private synchronized void downloadFinished(final String host) {
+        final LinkedList<Runnable> waiting = waitingDownloads_.get(host);
+        if (waiting != null) {
+            final Runnable next = waiting.removeFirst();
+            if (waiting.isEmpty()) {
+                waitingDownloads_.remove(host);
+            }
+            executor_.execute(next);
+        }
+        else {
+            final int running = getRunningDownloadCount(host) - 1;
+            if (running > 0) {
+                runningDownloads_.put(host, running);
+            }
+            else {
+                runningDownloads_.remove(host);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of downloads in progress for the specified host.
+     * @param host the host
+     * @return the number of downloads in progress for the specified host
+     */
+    private int getRunningDownloadCount(final String host) {
+        final Integer running = runningDownloads_.get(host);
+        if (running == null) {
+            return 0;
+        }
+        return running;
+    }
+}
@@ -14,6 +14,7 @@
  */
 package com.gargoylesoftware.htmlunit;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
@@ -65,10 +66,20 @@ public abstract class WebWindowImpl implements WebWindow {
     public WebWindowImpl(final WebClient webClient) {
         WebAssert.notNull("webClient", webClient);
         webClient_ = webClient;
-        jobManager_ = new JavaScriptJobManagerImpl(this);
+        jobManager_ = createJobManager();
         performRegistration();
     }
 
+    /**
+     * Creates a new job manager for this window.
+     * @return the new job manager
+     */
+    private JavaScriptJobManager createJobManager() {
+        final JavaScriptJobManagerImpl jobManager = new JavaScriptJobManagerImpl(this);
+        jobManager.setVirtualTime(webClient_.isVirtualTimeEnabled());
+        return jobManager;
+    }
+
     /**
      * Registers the window with the client.
      */
@@ -155,6 +166,52 @@ public abstract class WebWindowImpl implements WebWindow {
         childWindows_.add(child);
     }
 
+    /**
+     * Puts the enclosed page into the page cache of this window's navigation history, if possible, before
+     * another page is loaded into this window: the jobs of the page are suspended, and this window gets a new
+     * job manager for the next page. Pages are only cached if this window uses the default job manager.
+     * @return whether or not the enclosed page has been cached, in which case it must not be cleaned up
+     * @see WebClient#setPageCacheSize(int)
+     */
+    boolean cacheEnclosedPage() {
+        if (enclosedPage_ == null || !(jobManager_ instanceof JavaScriptJobManagerImpl)
+            || !history_.cachePage(enclosedPage_, scriptObject_, jobManager_)) {
+            return false;
+        }
+        ((JavaScriptJobManagerImpl) jobManager_).suspend();
+        jobManager_ = createJobManager();
+        return true;
+    }
+
+    /**
+     * Restores a page from the page cache of this window's navigation history, as it was when it was cached.
+     * The enclosed page is cached too if possible, or cleaned up otherwise.
+     * @param cachedPage the cached page
+     * @return <tt>false</tt> if the page has not been restored because the onbeforeunload handler of the
+     *         enclosed page rejected it
+     * @throws IOException if an IO error occurs while cleaning up the enclosed page
+     */
+    boolean restorePage(final History.CachedPage cachedPage) throws IOException {
+        final Page oldPage = enclosedPage_;
+        if (oldPage instanceof HtmlPage && !((HtmlPage) oldPage).isOnbeforeunloadAccepted()) {
+            return false;
+        }
+        if (oldPage != null && !cacheEnclosedPage()) {
+            oldPage.cleanUp();
+        }
+        destroyChildren();
+        jobManager_.shutdown();
+
+        enclosedPage_ = cachedPage.getPage();
+        scriptObject_ = cachedPage.getScriptObject();
+        final JavaScriptJobManagerImpl jobManager = (JavaScriptJobManagerImpl) cachedPage.getJobManager();
+        jobManager.resume();
+        jobManager.setVirtualTime(webClient_.isVirtualTimeEnabled());
+        jobManager_ = jobManager;
+        webClient_.fireWindowContentChanged(new WebWindowEvent(this, WebWindowEvent.CHANGE, oldPage, enclosedPage_));
+        return true;
+    }
+
     void destroyChildren() {
         getJobManager().removeAllJobs();
         for (final ListIterator<WebWindowImpl> iter = childWindows_.listIterator(); iter.hasNext();) {
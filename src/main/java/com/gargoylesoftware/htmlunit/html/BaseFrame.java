@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +28,8 @@ import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequestSettings;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponsePrefetcher;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.PostponedAction;
@@ -86,13 +89,27 @@ public abstract class BaseFrame extends StyledElement {
      *      {@link WebClient#setThrowExceptionOnFailingStatusCode(boolean)} is set to true
      */
     void loadInnerPage() throws FailingHttpStatusCodeException {
+        loadInnerPage(null, null);
+    }
+
+    /**
+     * Same as {@link #loadInnerPage()}, but uses the specified response, downloaded in advance, if it
+     * corresponds to the current source of this frame.
+     * @param downloadedSettings the settings of the request made in advance, or <code>null</code>
+     * @param downloadedResponse the response to this request, or <code>null</code>
+     * @throws FailingHttpStatusCodeException if the server returns a failing status code AND the property
+     *      {@link WebClient#setThrowExceptionOnFailingStatusCode(boolean)} is set to true
+     * @see #getInnerPageRequestSettings()
+     */
+    void loadInnerPage(final WebRequestSettings downloadedSettings, final Future<WebResponse> downloadedResponse)
+        throws FailingHttpStatusCodeException {
         String source = getSrcAttribute();
         if (source.length() == 0) {
             // Nothing to load
             source = "about:blank";
         }
         else {
-            loadInnerPageIfPossible(source);
+            loadInnerPageIfPossible(source, downloadedSettings, downloadedResponse);
         }
         final Page enclosedPage = getEnclosedPage();
         if (enclosedPage instanceof HtmlPage) {
@@ -101,28 +118,71 @@ public abstract class BaseFrame extends StyledElement {
     }
 
     /**
-     * @throws FailingHttpStatusCodeException if the server returns a failing status code AND the property
-     *      {@link WebClient#setThrowExceptionOnFailingStatusCode(boolean)} is set to true
+     * Returns the settings of the request which {@link #loadInnerPage()} would make to load the content
+     * of this frame, without making it.
+     * @return the settings of the request, or <code>null</code> if the source of this frame is empty or invalid
      */
-    private void loadInnerPageIfPossible(final String src) throws FailingHttpStatusCodeException {
-        if (src.length() != 0) {
-            final URL url;
-            try {
-                url = ((HtmlPage) getPage()).getFullyQualifiedUrl(src);
-            }
-            catch (final MalformedURLException e) {
+    WebRequestSettings getInnerPageRequestSettings() {
+        final String src = getSrcAttribute();
+        if (src.length() == 0) {
+            return null;
+        }
+        return getRequestSettings(src, false);
+    }
+
+    /**
+     * Returns the settings of the request to make to load the specified source into this frame.
+     * @param src the source
+     * @param notify whether or not to notify the incorrectness listener when the source is invalid
+     * @return the settings of the request, or <code>null</code> if the source is invalid
+     */
+    private WebRequestSettings getRequestSettings(final String src, final boolean notify) {
+        final URL url;
+        try {
+            url = ((HtmlPage) getPage()).getFullyQualifiedUrl(src);
+        }
+        catch (final MalformedURLException e) {
+            if (notify) {
                 notifyIncorrectness("Invalid src attribute of " + getTagName() + ": url=[" + src + "]. Ignored.");
-                return;
             }
-            if (isAlreadyLoadedByAncestor(url)) {
+            return null;
+        }
+        if (isAlreadyLoadedByAncestor(url)) {
+            if (notify) {
                 notifyIncorrectness("Recursive src attribute of " + getTagName() + ": url=[" + src + "]. Ignored.");
+            }
+            return null;
+        }
+        final WebRequestSettings settings = new WebRequestSettings(url);
+        settings.setAdditionalHeader("Referer", getPage().getWebResponse().getRequestSettings().getUrl()
+                .toExternalForm());
+        return settings;
+    }
+
+    /**
+     * @throws FailingHttpStatusCodeException if the server returns a failing status code AND the property
+     *      {@link WebClient#setThrowExceptionOnFailingStatusCode(boolean)} is set to true
+     */
+    private void loadInnerPageIfPossible(final String src, final WebRequestSettings downloadedSettings,
+            final Future<WebResponse> downloadedResponse) throws FailingHttpStatusCodeException {
+        if (src.length() != 0) {
+            final WebRequestSettings settings = getRequestSettings(src, true);
+            if (settings == null) {
                 return;
             }
+            final URL url = settings.getUrl();
+            final WebClient webClient = getPage().getEnclosingWindow().getWebClient();
             try {
-                final WebRequestSettings settings = new WebRequestSettings(url);
-                settings.setAdditionalHeader("Referer", getPage().getWebResponse().getRequestSettings().getUrl()
-                        .toExternalForm());
-                getPage().getEnclosingWindow().getWebClient().getPage(enclosedWindow_, settings);
+                if (downloadedResponse != null
+                        && url.toExternalForm().equals(downloadedSettings.getUrl().toExternalForm())) {
+                    final WebResponse webResponse = WebResponsePrefetcher.getResponse(downloadedResponse);
+                    webClient.printContentIfNecessary(webResponse);
+                    webClient.loadWebResponseInto(webResponse, enclosedWindow_);
+                    webClient.throwFailingHttpStatusCodeExceptionIfNecessary(webResponse);
+                }
+                else {
+                    webClient.getPage(enclosedWindow_, settings);
+                }
             }
             catch (final IOException e) {
                 if (LOG.isErrorEnabled()) {
@@ -306,7 +366,7 @@ public abstract class BaseFrame extends StyledElement {
             // in fact this implementation is probably wrong: JavaScript URL should be
             // first evaluated and only loading, when any, should be postponed.
             if (!jsEngine.isScriptRunning() || attributeValue.startsWith("javascript:")) {
-                loadInnerPageIfPossible(attributeValue);
+                loadInnerPageIfPossible(attributeValue, null, null);
             }
             else {
                 final String src = attributeValue;
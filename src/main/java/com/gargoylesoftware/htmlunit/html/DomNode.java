@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
 
@@ -37,8 +38,6 @@ import com.gargoylesoftware.htmlunit.WebAssert;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.xpath.XPathUtils;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
-import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleDeclaration;
-import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
 
 /**
  * Base class for nodes in the HTML DOM tree. This class is modeled after the
@@ -138,8 +137,12 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     private int endColumnNumber_ = -1;
 
-    private List<DomChangeListener> domListeners_;
-    private final Integer domListeners_lock_ = 0;
+    /**
+     * The DOM change listeners registered on this node; <code>null</code> until the first one is added.
+     * Listeners are only added and removed under this node's own lock, and firing reads the
+     * copy-on-write list without locking at all.
+     */
+    private volatile CopyOnWriteArrayList<DomChangeListener> domListeners_;
 
     /**
      * Never call this, used for Serialization.
@@ -626,38 +629,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public boolean isDisplayed() {
         final Page page = getPage();
         if (page instanceof HtmlPage) {
-            // display: iterate top to bottom, because if a parent is display:none,
-            // there's nothing that a child can do to override it
-            for (final Node node : getAncestors(true)) {
-                final ScriptableObject scriptableObject = ((DomNode) node).getScriptObject();
-                if (scriptableObject instanceof HTMLElement) {
-                    final CSSStyleDeclaration style = ((HTMLElement) scriptableObject).jsxGet_style();
-                    final String display = style.jsxGet_display();
-                    if ("none".equals(display)) {
-                        return false;
-                    }
-                }
-            }
-            // visibility: iterate bottom to top, because children can override
-            // the visibility used by parent nodes
-            final boolean isNotIE = !((HtmlPage) page).getWebClient().getBrowserVersion().isIE();
-            DomNode node = this;
-            do {
-                final ScriptableObject scriptableObject = node.getScriptObject();
-                if (scriptableObject instanceof HTMLElement) {
-                    final CSSStyleDeclaration style = ((HTMLElement) scriptableObject).jsxGet_style();
-                    final String visibility = style.jsxGet_visibility();
-                    if (visibility.length() > 0) {
-                        if (visibility.equals("visible")) {
-                            return true;
-                        }
-                        else if (visibility.equals("hidden") || (isNotIE && visibility.equals("collapse"))) {
-                            return false;
-                        }
-                    }
-                }
-                node = node.getParentNode();
-            } while (node != null);
+            return ((HtmlPage) page).isDisplayed(this);
         }
         return true;
     }
@@ -804,9 +776,21 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             }
         }
         else {
+            checkNotAncestor(domNode);
+            final boolean notifyPage = !(this instanceof DomDocumentFragment) && (getPage() instanceof HtmlPage);
             // clean up the new node, in case it is being moved
-            if (domNode != this && domNode.getParentNode() != null) {
-                domNode.remove();
+            final DomNode exParent = domNode.getParentNode();
+            if (exParent != null) {
+                if (notifyPage && domNode.getPage() == getPage()) {
+                    // like with insertBefore(), the page is only notified of the addition,
+                    // so that an element moved within the page keeps its position in the ID and name maps
+                    domNode.basicRemove();
+                    domNode.fireNodeDeleted(exParent, domNode);
+                    exParent.fireNodeDeleted(exParent, domNode);
+                }
+                else {
+                    domNode.remove();
+                }
             }
             // move the node
             basicAppend(domNode);
@@ -816,7 +800,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             }
 
             // trigger events
-            if (!(this instanceof DomDocumentFragment) && (getPage() instanceof HtmlPage)) {
+            if (notifyPage) {
                 ((HtmlPage) getPage()).notifyNodeAdded(domNode);
             }
             fireNodeAdded(this, domNode);
@@ -835,11 +819,41 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         if (destination.getPage() != getPage()) {
             throw new RuntimeException("Cannot perform quiet move on nodes from different pages.");
         }
+        final boolean htmlPage = getPage() instanceof HtmlPage;
         for (DomNode child : getChildren()) {
+            destination.checkNotAncestor(child);
             child.basicRemove();
             destination.basicAppend(child);
+            if (htmlPage) {
+                ((HtmlPage) getPage()).notifyNodeMoved(child);
+            }
         }
         basicRemove();
+        if (htmlPage) {
+            ((HtmlPage) getPage()).notifyNodeMoved(this);
+        }
+    }
+
+    /**
+     * Checks that the specified node is neither this node nor one of its ancestors,
+     * as inserting it below this node would create a cycle.
+     *
+     * @param node the node about to be inserted below this node
+     * @throws DOMException HIERARCHY_REQUEST_ERR if the node is this node or one of its ancestors
+     */
+    private void checkNotAncestor(final DomNode node) throws DOMException {
+        if (node == this) {
+            throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, "Node can't be inserted into itself.");
+        }
+        // a node without children, as created by the parser, can't be an ancestor
+        if (node.firstChild_ != null) {
+            for (DomNode ancestor = parent_; ancestor != null; ancestor = ancestor.parent_) {
+                if (ancestor == node) {
+                    throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+                        "Node can't be inserted into one of its descendants.");
+                }
+            }
+        }
     }
 
     /**
@@ -923,6 +937,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         if (newNode == this) {
             return;
         }
+        parent_.checkNotAncestor(newNode);
 
         //clean up the new node, in case it is being moved
         final DomNode exParent = newNode.getParentNode();
@@ -965,6 +980,9 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         }
 
         page_ = newPage;
+        if (newPage instanceof HtmlPage) {
+            ((HtmlPage) newPage).addEventHandlerTypes(this, scriptObject_);
+        }
         for (final DomNode node : getChildren()) {
             node.setPage(newPage);
         }
@@ -1274,11 +1292,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     @SuppressWarnings("unchecked")
     public <X> X getFirstByXPath(final String xpathExpr) {
-        final List< ? > results = getByXPath(xpathExpr);
-        if (results.isEmpty()) {
-            return null;
-        }
-        return (X) results.get(0);
+        return (X) XPathUtils.getFirstByXPath(this, xpathExpr);
     }
 
     public Object selectSingleNode(final String xpathExpr) {
@@ -1345,13 +1359,11 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     public void addDomChangeListener(final DomChangeListener listener) {
         WebAssert.notNull("listener", listener);
-        synchronized (domListeners_lock_) {
+        synchronized (this) {
             if (domListeners_ == null) {
-                domListeners_ = new ArrayList<DomChangeListener>();
-            }
-            if (!domListeners_.contains(listener)) {
-                domListeners_.add(listener);
+                domListeners_ = new CopyOnWriteArrayList<DomChangeListener>();
             }
+            domListeners_.addIfAbsent(listener);
         }
     }
 
@@ -1364,10 +1376,9 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     public void removeDomChangeListener(final DomChangeListener listener) {
         WebAssert.notNull("listener", listener);
-        synchronized (domListeners_lock_) {
-            if (domListeners_ != null) {
-                domListeners_.remove(listener);
-            }
+        final List<DomChangeListener> listeners = domListeners_;
+        if (listeners != null) {
+            listeners.remove(listener);
         }
     }
 
@@ -1381,8 +1392,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param addedNode the node that was added
      */
     protected void fireNodeAdded(final DomNode parentNode, final DomNode addedNode) {
-        final List<DomChangeListener> listeners = safeGetDomListeners();
-        if (listeners != null) {
+        final List<DomChangeListener> listeners = domListeners_;
+        if (listeners != null && !listeners.isEmpty()) {
             final DomChangeEvent event = new DomChangeEvent(parentNode, addedNode);
             for (final DomChangeListener listener : listeners) {
                 listener.nodeAdded(event);
@@ -1403,8 +1414,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param deletedNode the node that was deleted
      */
     protected void fireNodeDeleted(final DomNode parentNode, final DomNode deletedNode) {
-        final List<DomChangeListener> listeners = safeGetDomListeners();
-        if (listeners != null) {
+        final List<DomChangeListener> listeners = domListeners_;
+        if (listeners != null && !listeners.isEmpty()) {
             final DomChangeEvent event = new DomChangeEvent(parentNode, deletedNode);
             for (final DomChangeListener listener : listeners) {
                 listener.nodeDeleted(event);
@@ -1415,13 +1426,4 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         }
     }
 
-    private List<DomChangeListener> safeGetDomListeners() {
-        synchronized (domListeners_lock_) {
-            if (domListeners_ != null) {
-                return new ArrayList<DomChangeListener>(domListeners_);
-            }
-            return null;
-        }
-    }
-
 }
@@ -342,6 +342,28 @@ public final class HTMLParser {
             }
         }
 
+        // the scripts, the images with an onload handler and the style sheets found by the scanner
+        // are only downloaded when JavaScript is enabled
+        final WebClient webClient = webWindow.getWebClient();
+        if (webClient.isPrefetchEnabled() && webClient.isJavaScriptEnabled()) {
+            final InputStream stream = webResponse.getContentAsStream();
+            if (stream != null) {
+                try {
+                    final String scanCharset;
+                    if (charset != null) {
+                        scanCharset = charset;
+                    }
+                    else {
+                        scanCharset = webResponse.getContentCharset();
+                    }
+                    page.prefetch(PreloadScanner.scan(stream, scanCharset, url));
+                }
+                finally {
+                    stream.close();
+                }
+            }
+        }
+
         final InputStream content = webResponse.getContentAsStream();
         final XMLInputSource in = new XMLInputSource(null, url.toString(), null, content, charset);
 
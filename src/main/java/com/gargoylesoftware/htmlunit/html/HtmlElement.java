@@ -91,6 +91,12 @@ public abstract class HtmlElement extends DomElement {
     /** The owning form for lost form children. */
     private HtmlForm owningForm_;
 
+    /** Whether this element is a descendant of its page, maintained by the page. */
+    private boolean attachedToPage_;
+
+    /** Whether this element is a descendant of a &lt;noscript&gt; element, maintained by the page. */
+    private boolean insideNoScript_;
+
     /**
      * Creates an instance.
      *
@@ -103,6 +109,11 @@ public abstract class HtmlElement extends DomElement {
     protected HtmlElement(final String namespaceURI, final String qualifiedName, final SgmlPage page,
             final Map<String, DomAttr> attributes) {
         super(namespaceURI, qualifiedName, page, attributes);
+        if (page instanceof HtmlPage && attributes != null) {
+            for (final String attributeName : attributes.keySet()) {
+                ((HtmlPage) page).addEventHandlerAttribute(attributeName);
+            }
+        }
         if (page != null && page.getWebClient().getBrowserVersion().isFirefox()) {
             final String value = getAttribute("class");
             if (value != ATTRIBUTE_NOT_DEFINED) {
@@ -148,6 +159,7 @@ public abstract class HtmlElement extends DomElement {
         if (mappedElement) {
             htmlPage.addMappedElement(this);
         }
+        htmlPage.addEventHandlerAttribute(qualifiedName);
 
         final HtmlAttributeChangeEvent htmlEvent;
         if (oldAttributeValue == ATTRIBUTE_NOT_DEFINED) {
@@ -165,7 +177,7 @@ public abstract class HtmlElement extends DomElement {
             fireHtmlAttributeReplaced(htmlEvent);
             ((HtmlPage) getPage()).fireHtmlAttributeReplaced(htmlEvent);
         }
-        if (getPage().getWebClient().getBrowserVersion().isIE()) {
+        if (getPage().getWebClient().getBrowserVersion().isIE() && mayHaveEventHandlers(Event.TYPE_PROPERTY_CHANGE)) {
             fireEvent(Event.createPropertyChangeEvent(this, qualifiedName));
         }
     }
@@ -466,13 +478,10 @@ public abstract class HtmlElement extends DomElement {
             focus();
         }
 
-        final Event keyDown = new UIEvent(this, Event.TYPE_KEY_DOWN, c, shiftKey, ctrlKey, altKey);
-        final ScriptResult keyDownResult = fireEvent(keyDown);
-
-        final Event keyPress = new UIEvent(this, Event.TYPE_KEY_PRESS, c, shiftKey, ctrlKey, altKey);
-        final ScriptResult keyPressResult = fireEvent(keyPress);
+        final boolean keyDownAborted = fireKeyboardEvent(Event.TYPE_KEY_DOWN, c, shiftKey, ctrlKey, altKey);
+        final boolean keyPressAborted = fireKeyboardEvent(Event.TYPE_KEY_PRESS, c, shiftKey, ctrlKey, altKey);
 
-        if (!keyDown.isAborted(keyDownResult) && !keyPress.isAborted(keyPressResult)) {
+        if (!keyDownAborted && !keyPressAborted) {
             doType(c, shiftKey, ctrlKey, altKey);
         }
 
@@ -481,12 +490,10 @@ public abstract class HtmlElement extends DomElement {
             && (this instanceof HtmlTextInput
             || this instanceof HtmlTextArea
             || this instanceof HtmlPasswordInput)) {
-            final Event input = new UIEvent(this, Event.TYPE_INPUT, c, shiftKey, ctrlKey, altKey);
-            fireEvent(input);
+            fireKeyboardEvent(Event.TYPE_INPUT, c, shiftKey, ctrlKey, altKey);
         }
 
-        final Event keyUp = new UIEvent(this, Event.TYPE_KEY_UP, c, shiftKey, ctrlKey, altKey);
-        fireEvent(keyUp);
+        fireKeyboardEvent(Event.TYPE_KEY_UP, c, shiftKey, ctrlKey, altKey);
 
         final HtmlForm form = getEnclosingForm();
         if (form != null && c == '\n' && isSubmittableByEnter()) {
@@ -857,12 +864,52 @@ public abstract class HtmlElement extends DomElement {
         }
     }
 
+    /**
+     * Fires a keyboard event on the element, unless no event handler may handle it.
+     * @param eventType the event type (like "keydown")
+     * @param c the typed character
+     * @param shiftKey <tt>true</tt> if SHIFT is pressed
+     * @param ctrlKey <tt>true</tt> if CTRL is pressed
+     * @param altKey <tt>true</tt> if ALT is pressed
+     * @return whether or not the event has been aborted by an event handler
+     */
+    private boolean fireKeyboardEvent(final String eventType, final char c, final boolean shiftKey,
+            final boolean ctrlKey, final boolean altKey) {
+        if (!mayHaveEventHandlers(eventType)) {
+            return false;
+        }
+        final Event event = new UIEvent(this, eventType, c, shiftKey, ctrlKey, altKey);
+        return event.isAborted(fireEvent(event));
+    }
+
+    /**
+     * Indicates if an event of the specified type fired on this element may be handled by an event handler
+     * or a listener. When it returns <code>false</code>, firing the event doesn't execute anything, and neither
+     * the event object nor a JavaScript context need to be created.
+     * @param eventType the event type (like "click")
+     * @return <code>false</code> if no event handler nor listener may handle the event
+     * @see HtmlPage#mayHaveEventHandlers(String)
+     */
+    private boolean mayHaveEventHandlers(final String eventType) {
+        final SgmlPage page = getPage();
+        if (!page.getWebClient().isJavaScriptEnabled()) {
+            return false;
+        }
+        if (page instanceof HtmlPage) {
+            return ((HtmlPage) page).mayHaveEventHandlers(eventType);
+        }
+        return true;
+    }
+
     /**
      * Shortcut for {@link #fireEvent(Event)}.
      * @param eventType the event type (like "load", "click")
      * @return the execution result, or <code>null</code> if nothing is executed
      */
     public ScriptResult fireEvent(final String eventType) {
+        if (!mayHaveEventHandlers(eventType)) {
+            return null;
+        }
         return fireEvent(new Event(this, eventType));
     }
 
@@ -876,6 +923,9 @@ public abstract class HtmlElement extends DomElement {
         if (!client.isJavaScriptEnabled()) {
             return null;
         }
+        if (!mayHaveEventHandlers(event.jsxGet_type())) {
+            return null;
+        }
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Firing " + event);
@@ -1097,6 +1147,9 @@ public abstract class HtmlElement extends DomElement {
             return getPage();
         }
         final HtmlPage page = (HtmlPage) getPage();
+        if (!mayHaveEventHandlers(eventType)) {
+            return page;
+        }
         final Event event = new MouseEvent(this, eventType, shiftKey, ctrlKey, altKey, button);
         final ScriptResult scriptResult = fireEvent(event);
         final Page currentPage;
@@ -1146,6 +1199,43 @@ public abstract class HtmlElement extends DomElement {
         owningForm_ = form;
     }
 
+    /**
+     * Indicates if this element is a descendant of its page.
+     * @return <code>true</code> if this element is a descendant of its page
+     */
+    boolean isAttachedToPage() {
+        return attachedToPage_;
+    }
+
+    /**
+     * Indicates if this element is a descendant of a &lt;noscript&gt; element.
+     * @return <code>true</code> if this element is a descendant of a &lt;noscript&gt; element
+     */
+    boolean isInsideNoScript() {
+        return insideNoScript_;
+    }
+
+    /**
+     * Sets the position of this element in its page, as derived by the page from the one of its parent.
+     * @param attachedToPage whether this element is a descendant of its page
+     * @param insideNoScript whether this element is a descendant of a &lt;noscript&gt; element
+     */
+    void setPageState(final boolean attachedToPage, final boolean insideNoScript) {
+        attachedToPage_ = attachedToPage;
+        insideNoScript_ = insideNoScript;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The clone is not attached to any page yet.
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        final HtmlElement clone = (HtmlElement) super.clone();
+        clone.setPageState(false, false);
+        return clone;
+    }
+
     /**
      * Gets notified that it has lost the focus
      */
@@ -1294,6 +1384,9 @@ public abstract class HtmlElement extends DomElement {
             return (P) clickPage;
         }
 
+        if (!mayHaveEventHandlers(MouseEvent.TYPE_DBL_CLICK)) {
+            return (P) clickPage;
+        }
         final Event event = new MouseEvent(this, MouseEvent.TYPE_DBL_CLICK, shiftKey, ctrlKey, altKey,
                 MouseEvent.BUTTON_LEFT);
         final ScriptResult scriptResult = fireEvent(event);
@@ -35,7 +35,6 @@ import org.apache.commons.logging.LogFactory;
 
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.SgmlPage;
-import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequestSettings;
 import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.javascript.PostponedAction;
@@ -350,13 +349,12 @@ public class HtmlImage extends ClickableElement {
     private void downloadImageIfNeeded() throws IOException {
         if (!downloaded_) {
             final HtmlPage page = (HtmlPage) getPage();
-            final WebClient webclient = page.getWebClient();
 
             final URL url = page.getFullyQualifiedUrl(getSrcAttribute());
             final WebRequestSettings request = new WebRequestSettings(url);
             request.setAdditionalHeader("Referer",
                 page.getWebResponse().getRequestSettings().getUrl().toExternalForm());
-            imageWebResponse_ = webclient.loadWebResponse(request);
+            imageWebResponse_ = page.loadWebResponse(request);
             downloaded_ = true;
         }
     }
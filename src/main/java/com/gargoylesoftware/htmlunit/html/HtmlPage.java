@@ -21,11 +21,13 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Future;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 import net.sourceforge.htmlunit.corejs.javascript.Function;
 import net.sourceforge.htmlunit.corejs.javascript.Script;
 import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
 
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.URIException;
@@ -52,6 +54,7 @@ import com.gargoylesoftware.htmlunit.BrowserVersionFeatures;
 import com.gargoylesoftware.htmlunit.Cache;
 import com.gargoylesoftware.htmlunit.ElementNotFoundException;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.HttpMethod;
 import com.gargoylesoftware.htmlunit.OnbeforeunloadHandler;
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.ScriptException;
@@ -62,14 +65,18 @@ import com.gargoylesoftware.htmlunit.WebAssert;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequestSettings;
 import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponsePrefetcher;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.HTMLParser.HtmlUnitDOMBuilder;
 import com.gargoylesoftware.htmlunit.html.impl.SimpleRange;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.PostponedAction;
 import com.gargoylesoftware.htmlunit.javascript.host.Event;
+import com.gargoylesoftware.htmlunit.javascript.host.EventListenersContainer;
 import com.gargoylesoftware.htmlunit.javascript.host.Node;
 import com.gargoylesoftware.htmlunit.javascript.host.Window;
+import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleDeclaration;
+import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
 
 /**
  * A representation of an HTML page returned from a server.
@@ -117,8 +124,9 @@ public class HtmlPage extends SgmlPage {
 
     private HtmlUnitDOMBuilder builder_;
     private String originalCharset_;
-    private Map<String, List<HtmlElement>> idMap_ = new HashMap<String, List<HtmlElement>>();
-    private Map<String, List<HtmlElement>> nameMap_ = new HashMap<String, List<HtmlElement>>();
+    // the elements don't override equals(), so the sets hold them by identity, in insertion order
+    private Map<String, Set<HtmlElement>> idMap_ = new HashMap<String, Set<HtmlElement>>();
+    private Map<String, Set<HtmlElement>> nameMap_ = new HashMap<String, Set<HtmlElement>>();
     private HtmlElement elementWithFocus_;
     private int parserCount_;
     private int snippetParserCount_;
@@ -130,6 +138,28 @@ public class HtmlPage extends SgmlPage {
     private boolean cleaning_;
     private HtmlBase base_;
 
+    /** Display state of a node: displayed. */
+    private static final int DISPLAY_VISIBLE = 0;
+    /** Display state of a node: hidden by its visibility, which descendants may override. */
+    private static final int DISPLAY_HIDDEN = 1;
+    /** Display state of a node: not displayed at all, because of its display or an ancestor's one. */
+    private static final int DISPLAY_NONE = 2;
+
+    /**
+     * The display states of the nodes of this page, as computed by {@link #isDisplayed(DomNode)};
+     * cleared on each change to the tree or to a "style" attribute.
+     */
+    private transient Map<DomNode, Integer> displayStates_;
+
+    /** The responses downloaded in advance while this page is parsed, by URL; see {@link #prefetch(List)}. */
+    private transient Map<String, Future<WebResponse>> prefetchedResponses_;
+
+    /**
+     * The types of the events which may be handled by the nodes of this page, see
+     * {@link #mayHaveEventHandlers(String)}.
+     */
+    private final Set<String> eventHandlerTypes_ = Collections.synchronizedSet(new HashSet<String>());
+
     /**
      * Creates an instance of HtmlPage.
      * An HtmlPage instance is normally retrieved with {@link WebClient#getPage(String)}.
@@ -175,6 +205,7 @@ public class HtmlPage extends SgmlPage {
         executeDeferredScriptsIfNeeded();
         setReadyStateOnDeferredScriptsIfNeeded();
         executeEventHandlersIfNeeded(Event.TYPE_LOAD);
+        dropPrefetchedResponses();
         final List<PostponedAction> actions = new ArrayList<PostponedAction>(afterLoadActions_);
         afterLoadActions_.clear();
         try {
@@ -211,9 +242,105 @@ public class HtmlPage extends SgmlPage {
         cleaning_ = true;
         executeEventHandlersIfNeeded(Event.TYPE_UNLOAD);
         deregisterFramesIfNeeded();
+        dropPrefetchedResponses();
         cleaning_ = false;
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns whether or not this page may be kept, instead of being cleaned up, in the page cache of its
+     * window's navigation history when another page is loaded. Pages containing frames may not, nor
+     * pages with <tt>unload</tt> or <tt>beforeunload</tt> handlers, as these expect the page to be destroyed.
+     * @return whether or not this page may be kept in the page cache
+     * @see WebClient#setPageCacheSize(int)
+     */
+    public boolean isCacheable() {
+        if (!getFrames().isEmpty()) {
+            return false;
+        }
+        if (!getWebClient().isJavaScriptEnabled()) {
+            return true;
+        }
+        final Window window = (Window) getEnclosingWindow().getScriptObject();
+        if (window == null) {
+            return true;
+        }
+        final EventListenersContainer listeners = window.getEventListenersContainer();
+        if (listeners.hasEventHandlers(Event.TYPE_UNLOAD) || listeners.hasEventHandlers(Event.TYPE_BEFORE_UNLOAD)) {
+            return false;
+        }
+        for (final HtmlElement element : new HtmlElement[] {getDocumentElement(), getBody()}) {
+            if (element != null) {
+                final Node node = (Node) element.getScriptObject();
+                if (node.hasEventHandlers("on" + Event.TYPE_UNLOAD)
+                    || node.hasEventHandlers("on" + Event.TYPE_BEFORE_UNLOAD)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Records that the events of the specified type may be handled by a node of this page, because an event
+     * handler or a listener has been registered for them, or because an element has a matching
+     * <tt>on...</tt> attribute.
+     * @param eventType the event type (like "click")
+     * @see #mayHaveEventHandlers(String)
+     */
+    public void addEventHandlerType(final String eventType) {
+        eventHandlerTypes_.add(eventType.toLowerCase());
+    }
+
+    /**
+     * Records the type of the events handled by the specified attribute, if it is an event handler
+     * attribute like "onclick". Attribute names are compared case-insensitively.
+     * @param attributeName the name of the attribute
+     */
+    void addEventHandlerAttribute(final String attributeName) {
+        if (attributeName.length() > 2 && attributeName.regionMatches(true, 0, "on", 0, 2)) {
+            addEventHandlerType(attributeName.substring(2));
+        }
+    }
+
+    /**
+     * Records the types of the events which may be handled by the specified node, which has just been
+     * moved to this page from another one: the types registered in the other page are unknown here.
+     * @param node the node
+     * @param scriptObject the JavaScript object of the node, or <code>null</code> if it hasn't been created
+     */
+    void addEventHandlerTypes(final DomNode node, final ScriptableObject scriptObject) {
+        if (node instanceof HtmlElement) {
+            for (final String attributeName : ((HtmlElement) node).getAttributesMap().keySet()) {
+                addEventHandlerAttribute(attributeName);
+            }
+        }
+        if (scriptObject instanceof Node) {
+            ((Node) scriptObject).addEventHandlerTypes();
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Indicates if an event of the specified type fired on a node of this page may be handled by an event
+     * handler or a listener, of any node or of the window. When it returns <code>false</code>, firing the event
+     * doesn't execute anything, and can be skipped.
+     * @param eventType the event type (like "click")
+     * @return <code>false</code> if no event handler nor listener may handle the event
+     */
+    public boolean mayHaveEventHandlers(final String eventType) {
+        final String type = eventType.toLowerCase();
+        if (eventHandlerTypes_.contains(type)) {
+            return true;
+        }
+        final Window window = (Window) getEnclosingWindow().getScriptObject();
+        return window != null && window.getEventListenersContainer().hasEventHandlers(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -958,6 +1085,67 @@ public class HtmlPage extends SgmlPage {
         return loaded;
     }
 
+    /**
+     * Starts downloading the specified resources, which will be needed while this page is parsed.
+     * Resources already in the cache are skipped.
+     * @param urls the URLs of the resources
+     * @see #loadWebResponse(WebRequestSettings)
+     */
+    void prefetch(final List<URL> urls) {
+        final WebClient client = getWebClient();
+        final Cache cache = client.getCache();
+        final WebResponsePrefetcher prefetcher = client.getWebResponsePrefetcher();
+        final WebRequestSettings referringRequest = getWebResponse().getRequestSettings();
+        for (final URL url : urls) {
+            final WebRequestSettings request = new WebRequestSettings(url);
+            request.setAdditionalHeaders(new HashMap<String, String>(referringRequest.getAdditionalHeaders()));
+            request.setAdditionalHeader("Referer", referringRequest.getUrl().toExternalForm());
+            if (cache.getCachedObject(request) == null) {
+                if (prefetchedResponses_ == null) {
+                    prefetchedResponses_ = Collections.synchronizedMap(new HashMap<String, Future<WebResponse>>());
+                }
+                prefetchedResponses_.put(url.toExternalForm(), prefetcher.prefetch(request));
+            }
+        }
+    }
+
+    /**
+     * Drops the responses downloaded in advance which haven't been used while this page was loaded,
+     * and cancels the downloads which haven't started yet.
+     * @see #prefetch(List)
+     */
+    private void dropPrefetchedResponses() {
+        final Map<String, Future<WebResponse>> responses = prefetchedResponses_;
+        prefetchedResponses_ = null;
+        if (responses != null) {
+            synchronized (responses) {
+                for (final Future<WebResponse> response : responses.values()) {
+                    response.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Loads the response to a request made by this page for one of its resources, like
+     * {@link WebClient#loadWebResponse(WebRequestSettings)}, but uses the response downloaded in advance
+     * while the page was parsed, if any.
+     * @param request the request
+     * @return the response
+     * @throws IOException if an IO problem occurs
+     */
+    public WebResponse loadWebResponse(final WebRequestSettings request) throws IOException {
+        if (prefetchedResponses_ != null && request.getHttpMethod() == HttpMethod.GET) {
+            final Future<WebResponse> prefetched = prefetchedResponses_.remove(request.getUrl().toExternalForm());
+            if (prefetched != null) {
+                return WebResponsePrefetcher.getResponse(prefetched);
+            }
+        }
+        return getWebClient().loadWebResponse(request);
+    }
+
     /**
      * Loads JavaScript from the specified URL. This method may return <tt>null</tt> if
      * there is a problem loading the code from the specified URL.
@@ -985,7 +1173,7 @@ public class HtmlPage extends SgmlPage {
 
         WebResponse response;
         try {
-            response = client.loadWebResponse(request);
+            response = loadWebResponse(request);
         }
         catch (final IOException e) {
             if (LOG.isErrorEnabled()) {
@@ -1545,9 +1733,9 @@ public class HtmlPage extends SgmlPage {
                 }
             }
         }
-        final List<HtmlElement> elements = idMap_.get(usedID);
+        final Set<HtmlElement> elements = idMap_.get(usedID);
         if (elements != null) {
-            return (E) elements.get(0);
+            return (E) elements.iterator().next();
         }
         throw new ElementNotFoundException("*", "id", id);
     }
@@ -1563,9 +1751,9 @@ public class HtmlPage extends SgmlPage {
      */
     @SuppressWarnings("unchecked")
     public <E extends HtmlElement> E getElementByName(final String name) throws ElementNotFoundException {
-        final List<HtmlElement> elements = nameMap_.get(name);
+        final Set<HtmlElement> elements = nameMap_.get(name);
         if (elements != null) {
-            return (E) elements.get(0);
+            return (E) elements.iterator().next();
         }
         throw new ElementNotFoundException("*", "name", name);
     }
@@ -1579,9 +1767,9 @@ public class HtmlPage extends SgmlPage {
      * @return the HTML elements with the specified name attribute
      */
     public List<HtmlElement> getElementsByName(final String name) {
-        final List<HtmlElement> list = nameMap_.get(name);
-        if (list != null) {
-            return Collections.unmodifiableList(list);
+        final Set<HtmlElement> elements = nameMap_.get(name);
+        if (elements != null) {
+            return Collections.unmodifiableList(new ArrayList<HtmlElement>(elements));
         }
         return Collections.emptyList();
     }
@@ -1595,20 +1783,16 @@ public class HtmlPage extends SgmlPage {
      * @return the HTML elements with the specified string for their name or ID
      */
     public List<HtmlElement> getElementsByIdAndOrName(final String idAndOrName) {
-        final List<HtmlElement> list1 = idMap_.get(idAndOrName);
-        final List<HtmlElement> list2 = nameMap_.get(idAndOrName);
-        final List<HtmlElement> list = new ArrayList<HtmlElement>();
-        if (list1 != null) {
-            list.addAll(list1);
-        }
-        if (list2 != null) {
-            for (final HtmlElement elt : list2) {
-                if (!list.contains(elt)) {
-                    list.add(elt);
-                }
-            }
+        final Set<HtmlElement> set1 = idMap_.get(idAndOrName);
+        final Set<HtmlElement> set2 = nameMap_.get(idAndOrName);
+        final Set<HtmlElement> elements = new LinkedHashSet<HtmlElement>();
+        if (set1 != null) {
+            elements.addAll(set1);
         }
-        return Collections.unmodifiableList(list);
+        if (set2 != null) {
+            elements.addAll(set2);
+        }
+        return Collections.unmodifiableList(new ArrayList<HtmlElement>(elements));
     }
 
     /**
@@ -1616,51 +1800,31 @@ public class HtmlPage extends SgmlPage {
      * @param element the element to be added to the ID and name maps
      */
     void addMappedElement(final HtmlElement element) {
-        addMappedElement(element, false);
-    }
-
-    /**
-     * Adds an element to the ID and name maps, if necessary.
-     * @param element the element to be added to the ID and name maps
-     * @param recurse indicates if children must be added too
-     */
-    void addMappedElement(final HtmlElement element, final boolean recurse) {
-        if (isDescendant(element)) {
-            addElement(idMap_, element, "id", recurse);
-            addElement(nameMap_, element, "name", recurse);
+        if (isMapped(element)) {
+            addElement(idMap_, element, "id");
+            addElement(nameMap_, element, "name");
         }
     }
 
     /**
-     * Checks whether the specified element is descendant of this HtmlPage or not.
+     * Indicates if the specified element belongs to the ID and name maps: if it is a descendant of this page,
+     * but not of a &lt;noscript&gt; element whose content is ignored because JavaScript is enabled.
      */
-    private boolean isDescendant(final HtmlElement element) {
-        for (DomNode parent = element; parent != null; parent = parent.getParentNode()) {
-            if (parent == this) {
-                return true;
-            }
-        }
-        return false;
+    private boolean isMapped(final HtmlElement element) {
+        return element.isAttachedToPage()
+            && !(element.isInsideNoScript() && getWebClient().isJavaScriptEnabled());
     }
 
-    private void addElement(final Map<String, List<HtmlElement>> map, final HtmlElement element,
-            final String attribute, final boolean recurse) {
+    private void addElement(final Map<String, Set<HtmlElement>> map, final HtmlElement element,
+            final String attribute) {
         final String value = element.getAttribute(attribute);
         if (!StringUtils.isEmpty(value)) {
-            List<HtmlElement> elements = map.get(value);
+            Set<HtmlElement> elements = map.get(value);
             if (elements == null) {
-                elements = new ArrayList<HtmlElement>();
-                elements.add(element);
+                elements = new LinkedHashSet<HtmlElement>();
                 map.put(value, elements);
             }
-            else if (!elements.contains(element)) {
-                elements.add(element);
-            }
-        }
-        if (recurse) {
-            for (final HtmlElement child : element.getChildElements()) {
-                addElement(map, child, attribute, true);
-            }
+            elements.add(element);
         }
     }
 
@@ -1669,36 +1833,48 @@ public class HtmlPage extends SgmlPage {
      * @param element the element to be removed from the ID and name maps
      */
     void removeMappedElement(final HtmlElement element) {
-        removeMappedElement(element, false, false);
-    }
-
-    /**
-     * Removes an element and optionally its children from the ID and name maps, if necessary.
-     * @param element the element to be removed from the ID and name maps
-     * @param recurse indicates if children must be removed too
-     * @param descendant indicates of the element was descendant of this HtmlPage, but now its parent might be null
-     */
-    void removeMappedElement(final HtmlElement element, final boolean recurse, final boolean descendant) {
-        if (descendant || isDescendant(element)) {
-            removeElement(idMap_, element, "id", recurse);
-            removeElement(nameMap_, element, "name", recurse);
+        if (element.isAttachedToPage()) {
+            removeElement(idMap_, element, "id");
+            removeElement(nameMap_, element, "name");
         }
     }
 
-    private void removeElement(final Map<String, List<HtmlElement>> map, final HtmlElement element, final String att,
-            final boolean recurse) {
-        final String value = element.getAttribute(att);
+    private void removeElement(final Map<String, Set<HtmlElement>> map, final HtmlElement element,
+            final String attribute) {
+        final String value = element.getAttribute(attribute);
         if (!StringUtils.isEmpty(value)) {
-            final List<HtmlElement> elements = map.remove(value);
-            if (elements != null && (elements.size() != 1 || !elements.contains(element))) {
-                elements.remove(element);
-                map.put(value, elements);
+            final Set<HtmlElement> elements = map.get(value);
+            if (elements != null && elements.remove(element) && elements.isEmpty()) {
+                map.remove(value);
             }
         }
-        if (recurse) {
-            for (final HtmlElement child : element.getChildElements()) {
-                removeElement(map, child, att, true);
+    }
+
+    /**
+     * Updates the state of the specified node and of its descendants, as well as the ID and name maps,
+     * once the node has been added to or removed from the tree.
+     * @param node the node which has been moved
+     * @param attached whether the node is now a descendant of this page
+     * @param insideNoScript whether the node is now a descendant of a &lt;noscript&gt; element
+     */
+    private void updatePageState(final DomNode node, final boolean attached, final boolean insideNoScript) {
+        boolean childrenInsideNoScript = insideNoScript;
+        if (node instanceof HtmlElement) {
+            final HtmlElement element = (HtmlElement) node;
+            element.setPageState(attached, insideNoScript);
+            // an element which stays mapped keeps its position in the maps
+            if (isMapped(element)) {
+                addElement(idMap_, element, "id");
+                addElement(nameMap_, element, "name");
+            }
+            else {
+                removeElement(idMap_, element, "id");
+                removeElement(nameMap_, element, "name");
             }
+            childrenInsideNoScript = insideNoScript || element instanceof HtmlNoScript;
+        }
+        for (DomNode child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            updatePageState(child, attached, childrenInsideNoScript);
         }
     }
 
@@ -1709,30 +1885,7 @@ public class HtmlPage extends SgmlPage {
      */
     void notifyNodeAdded(final DomNode node) {
         if (node instanceof HtmlElement) {
-            boolean insideNoScript = false;
-            if (getWebClient().isJavaScriptEnabled()) {
-                // Kohsuke: while going up the tree, detect a cycle. this is not the best place to do it,
-                // (it should be detected when a cycle node is inserted), but I couldn't find where it was,
-                // and this is where the infinite loop happens.
-                // the cycle appears to happen when xyz.innerHTML="<html><body>...</body></html>" is executed
-                // from JavaScript, so it's likely NekoHTML's mark up fix
-                Set<DomNode> parents = new HashSet<DomNode>();
-                for (DomNode parent = node.getParentNode(); parent != null; parent = parent.getParentNode()) {
-                    if(!parents.add(parent)) {
-                        // somehow even when we throw an exception, we'll get stuck somewhere else.
-                        // so just to call for an attention, print some message.
-                        System.out.println("Cycle in an HTML tree detected");
-                        throw new AssertionError("Cycle in an HTML tree detected");
-                    }
-                    if (parent instanceof HtmlNoScript) {
-                        insideNoScript = true;
-                        break;
-                    }
-                }
-            }
-            if (!insideNoScript) {
-                addMappedElement((HtmlElement) node, true);
-            }
+            updatePageState(node);
             if (node.getNodeName().equals("base")) {
                 calculateBase();
             }
@@ -1740,6 +1893,38 @@ public class HtmlPage extends SgmlPage {
         node.onAddedToPage();
     }
 
+    /**
+     * Updates the state of the specified node and of its descendants, as well as the ID and name maps,
+     * from the state of its new parent. The state of the node derives from the one of its nearest HtmlElement
+     * ancestor, so that adding the nodes one by one, as the parser does, doesn't walk up the whole tree.
+     * @param node the node which has been moved
+     */
+    private void updatePageState(final DomNode node) {
+        DomNode ancestor = node.getParentNode();
+        while (ancestor != null && ancestor != this && !(ancestor instanceof HtmlElement)) {
+            ancestor = ancestor.getParentNode();
+        }
+        if (ancestor instanceof HtmlElement) {
+            final HtmlElement parent = (HtmlElement) ancestor;
+            updatePageState(node, parent.isAttachedToPage(),
+                parent.isInsideNoScript() || parent instanceof HtmlNoScript);
+        }
+        else {
+            updatePageState(node, ancestor == this, false);
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Updates the state of a node which has been moved without the usual notifications.
+     * @param node the node that has just been moved
+     * @see DomNode#quietlyRemoveAndMoveChildrenTo(DomNode)
+     */
+    void notifyNodeMoved(final DomNode node) {
+        updatePageState(node);
+    }
+
     private void calculateBase() {
         final List<HtmlBase> baseElements = getDocumentElement().getHtmlElementsByTagName("base");
         switch (baseElements.size()) {
@@ -1764,13 +1949,107 @@ public class HtmlPage extends SgmlPage {
      */
     void notifyNodeRemoved(final DomNode node) {
         if (node instanceof HtmlElement) {
-            removeMappedElement((HtmlElement) node, true, true);
+            updatePageState(node, false, false);
             if (node.getNodeName().equals("base")) {
                 calculateBase();
             }
         }
     }
 
+    /**
+     * Returns <tt>true</tt> if the specified node of this page is displayed (see {@link DomNode#isDisplayed()}).
+     * The display state of each node is derived from the one of its parent, and remembered until
+     * the tree or a "style" attribute changes, so that checking all the nodes of the page is linear.
+     * @param node the node to check
+     * @return <tt>true</tt> if the node is displayed
+     */
+    boolean isDisplayed(final DomNode node) {
+        Map<DomNode, Integer> states = displayStates_;
+        if (states == null) {
+            states = Collections.synchronizedMap(new IdentityHashMap<DomNode, Integer>());
+            displayStates_ = states;
+        }
+        final Integer cachedState = states.get(node);
+        if (cachedState != null) {
+            return cachedState.intValue() == DISPLAY_VISIBLE;
+        }
+
+        // find the nearest ancestor whose state is known, then compute the states top to bottom
+        final List<DomNode> nodes = new ArrayList<DomNode>();
+        int state = DISPLAY_VISIBLE;
+        DomNode current = node;
+        for ( ; current != null; current = current.getParentNode()) {
+            final Integer known = states.get(current);
+            if (known != null) {
+                state = known.intValue();
+                break;
+            }
+            nodes.add(current);
+        }
+        // the nodes of a detached subtree aren't cached, as their changes aren't notified to the page
+        final boolean attached = current != null || nodes.get(nodes.size() - 1) == this;
+        final boolean isNotIE = !getWebClient().getBrowserVersion().isIE();
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            final DomNode n = nodes.get(i);
+            state = getDisplayState(n, state, isNotIE);
+            if (attached) {
+                states.put(n, state);
+            }
+        }
+        return state == DISPLAY_VISIBLE;
+    }
+
+    private static int getDisplayState(final DomNode node, final int parentState, final boolean isNotIE) {
+        // display: if a parent is display:none, there's nothing that a child can do to override it
+        if (parentState == DISPLAY_NONE) {
+            return DISPLAY_NONE;
+        }
+        final Scriptable scriptableObject = node.getScriptObject();
+        if (scriptableObject instanceof HTMLElement) {
+            final CSSStyleDeclaration style = ((HTMLElement) scriptableObject).jsxGet_style();
+            if ("none".equals(style.jsxGet_display())) {
+                return DISPLAY_NONE;
+            }
+            // visibility: children can override the visibility used by parent nodes
+            final String visibility = style.jsxGet_visibility();
+            if (visibility.equals("visible")) {
+                return DISPLAY_VISIBLE;
+            }
+            else if (visibility.equals("hidden") || (isNotIE && visibility.equals("collapse"))) {
+                return DISPLAY_HIDDEN;
+            }
+        }
+        return parentState;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireNodeAdded(final DomNode parentNode, final DomNode addedNode) {
+        displayStates_ = null;
+        super.fireNodeAdded(parentNode, addedNode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireNodeDeleted(final DomNode parentNode, final DomNode deletedNode) {
+        displayStates_ = null;
+        super.fireNodeDeleted(parentNode, deletedNode);
+    }
+
+    /**
+     * Clears the display states of the nodes if the specified attribute change can affect them.
+     * @param event the attribute change event
+     */
+    private void attributeChanged(final HtmlAttributeChangeEvent event) {
+        if ("style".equalsIgnoreCase(event.getName())) {
+            displayStates_ = null;
+        }
+    }
+
     /**
      * Loads the content of the contained frames. This is done after the page is completely loaded, to allow script
      * contained in the frames to reference elements from the page located after the closing &lt;/frame&gt; tag.
@@ -1778,17 +2057,43 @@ public class HtmlPage extends SgmlPage {
      *         {@link WebClient#setThrowExceptionOnFailingStatusCode(boolean)} is set to <tt>true</tt>
      */
     void loadFrames() throws FailingHttpStatusCodeException {
-        for (final FrameWindow w : getFrames()) {
+        final List<FrameWindow> frames = getFrames();
+        final Map<BaseFrame, WebRequestSettings> downloadedSettings = new HashMap<BaseFrame, WebRequestSettings>();
+        final Map<BaseFrame, Future<WebResponse>> downloadedResponses = new HashMap<BaseFrame, Future<WebResponse>>();
+        if (getWebClient().getParallelDownloadsPerHost() > 0 && frames.size() > 1) {
+            // download the contents of the frames in parallel; they are still loaded one after the other below
+            final WebResponsePrefetcher prefetcher = getWebClient().getWebResponsePrefetcher();
+            for (final FrameWindow w : frames) {
+                final BaseFrame frame = w.getFrameElement();
+                if (isInitialContent(frame)) {
+                    final WebRequestSettings settings = frame.getInnerPageRequestSettings();
+                    if (settings != null && settings.getUrl().getProtocol().startsWith("http")) {
+                        downloadedSettings.put(frame, settings);
+                        downloadedResponses.put(frame, prefetcher.prefetch(settings));
+                    }
+                }
+            }
+        }
+        for (final FrameWindow w : frames) {
             final BaseFrame frame = w.getFrameElement();
             // test if the frame should really be loaded:
             // if a script has already changed its content, it should be skipped
-            // use == and not equals(...) to identify initial content (versus URL set to "about:blank")
-            if (frame.getEnclosedPage().getWebResponse().getRequestSettings().getUrl() == WebClient.URL_ABOUT_BLANK) {
-                frame.loadInnerPage();
+            if (isInitialContent(frame)) {
+                frame.loadInnerPage(downloadedSettings.get(frame), downloadedResponses.get(frame));
             }
         }
     }
 
+    /**
+     * Indicates if the specified frame still contains its initial content.
+     * @param frame the frame
+     * @return <code>true</code> if the specified frame still contains its initial content
+     */
+    private static boolean isInitialContent(final BaseFrame frame) {
+        // use == and not equals(...) to identify initial content (versus URL set to "about:blank")
+        return frame.getEnclosedPage().getWebResponse().getRequestSettings().getUrl() == WebClient.URL_ABOUT_BLANK;
+    }
+
     /**
      * Gives a basic representation for debugging purposes.
      * @return a basic representation
@@ -1935,8 +2240,8 @@ public class HtmlPage extends SgmlPage {
     protected HtmlPage clone() {
         final HtmlPage result = (HtmlPage) super.clone();
         result.elementWithFocus_ = null;
-        result.idMap_ = new HashMap<String, List<HtmlElement>>();
-        result.nameMap_ = new HashMap<String, List<HtmlElement>>();
+        result.idMap_ = new HashMap<String, Set<HtmlElement>>();
+        result.nameMap_ = new HashMap<String, Set<HtmlElement>>();
         return result;
     }
 
@@ -1999,6 +2304,7 @@ public class HtmlPage extends SgmlPage {
      * @param event the event to fire
      */
     void fireHtmlAttributeAdded(final HtmlAttributeChangeEvent event) {
+        attributeChanged(event);
         final List<HtmlAttributeChangeListener> listeners = safeGetAttributeListeners();
         if (listeners != null) {
             for (final HtmlAttributeChangeListener listener : listeners) {
@@ -2012,6 +2318,7 @@ public class HtmlPage extends SgmlPage {
      * @param event the event to fire
      */
     void fireHtmlAttributeReplaced(final HtmlAttributeChangeEvent event) {
+        attributeChanged(event);
         final List<HtmlAttributeChangeListener> listeners = safeGetAttributeListeners();
         if (listeners != null) {
             for (final HtmlAttributeChangeListener listener : listeners) {
@@ -2025,6 +2332,7 @@ public class HtmlPage extends SgmlPage {
      * @param event the event to fire
      */
     void fireHtmlAttributeRemoved(final HtmlAttributeChangeEvent event) {
+        attributeChanged(event);
         final List<HtmlAttributeChangeListener> listeners = safeGetAttributeListeners();
         if (listeners != null) {
             for (final HtmlAttributeChangeListener listener : listeners) {
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * Looks ahead in the content of an HTML page for the resources which will be downloaded while the page
+ * is parsed: external scripts, style sheets and images with an <tt>onload</tt> handler (other images are
+ * only downloaded on demand). This is a quick, approximate scan: it doesn't know about comments or
+ * scripts, and it is fine if it finds resources which won't be used. Only the start of large pages is
+ * scanned, so that the scan doesn't decode the whole content a second time.
+ *
+ * @version $Revision$
+ * @author HtmlUnit team
+ * @see HtmlPage#prefetch(List)
+ */
+final class PreloadScanner {
+
+    private static final Pattern TAG_PATTERN = Pattern.compile("<(script|link|img|base)\\s([^>]*)>",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile(
+            "([\\w:-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s\"'>]+))");
+
+    /** The maximum number of characters scanned at the start of the content of a page. */
+    static final int MAX_SCANNED_LENGTH = 64 * 1024;
+
+    /**
+     * Disallow instantiation of this class.
+     */
+    private PreloadScanner() {
+        // Empty.
+    }
+
+    /**
+     * Returns the URLs of the resources which will be downloaded while the specified content is parsed,
+     * looking at its first {@link #MAX_SCANNED_LENGTH} characters only.
+     * @param content the stream to read the content of the page from; it isn't closed
+     * @param charset the charset of the content
+     * @param pageUrl the URL of the page
+     * @return the URLs of the resources, in document order, without duplicates
+     * @throws IOException if the content can't be read
+     */
+    static List<URL> scan(final InputStream content, final String charset, final URL pageUrl) throws IOException {
+        Reader reader;
+        try {
+            reader = new InputStreamReader(content, charset);
+        }
+        catch (final UnsupportedEncodingException e) {
+            // as WebResponse.getContentAsString(String)
+            reader = new InputStreamReader(content);
+        }
+        final StringBuilder prefix = new StringBuilder();
+        final char[] buffer = new char[4096];
+        int read;
+        while (prefix.length() < MAX_SCANNED_LENGTH
+            && (read = reader.read(buffer, 0, Math.min(buffer.length, MAX_SCANNED_LENGTH - prefix.length()))) != -1) {
+            prefix.append(buffer, 0, read);
+        }
+        return scan(prefix.toString(), pageUrl);
+    }
+
+    /**
+     * Returns the URLs of the resources which will be downloaded while the specified content is parsed.
+     * @param content the content of the page
+     * @param pageUrl the URL of the page
+     * @return the URLs of the resources, in document order, without duplicates
+     */
+    static List<URL> scan(final String content, final URL pageUrl) {
+        // keyed on the string version of the URLs, as URL#hashCode() triggers DNS lookups
+        final Map<String, URL> urls = new LinkedHashMap<String, URL>();
+        URL baseUrl = pageUrl;
+        final Matcher tagMatcher = TAG_PATTERN.matcher(content);
+        while (tagMatcher.find()) {
+            final String tagName = tagMatcher.group(1).toLowerCase();
+            final Map<String, String> attributes = parseAttributes(tagMatcher.group(2));
+            final String reference;
+            if ("script".equals(tagName)) {
+                reference = attributes.get("src");
+            }
+            else if ("link".equals(tagName)) {
+                final String rel = attributes.get("rel");
+                if (rel != null && "stylesheet".equalsIgnoreCase(rel.trim())) {
+                    reference = attributes.get("href");
+                }
+                else {
+                    reference = null;
+                }
+            }
+            else if ("img".equals(tagName)) {
+                if (attributes.containsKey("onload")) {
+                    reference = attributes.get("src");
+                }
+                else {
+                    reference = null;
+                }
+            }
+            else {
+                final String href = attributes.get("href");
+                if (href != null && urls.isEmpty()) {
+                    try {
+                        baseUrl = new URL(pageUrl, href.trim());
+                    }
+                    catch (final MalformedURLException e) {
+                        // Ignore; the parser will complain about it.
+                    }
+                }
+                reference = null;
+            }
+            if (reference != null && reference.trim().length() != 0) {
+                try {
+                    final URL url = new URL(baseUrl, reference.trim());
+                    if ("http".equals(url.getProtocol()) || "https".equals(url.getProtocol())) {
+                        urls.put(url.toExternalForm(), url);
+                    }
+                }
+                catch (final MalformedURLException e) {
+                    // Ignore; the parser will complain about it.
+                }
+            }
+        }
+        return new ArrayList<URL>(urls.values());
+    }
+
+    /**
+     * Parses the attributes of a tag.
+     * @param attributes the attributes, as written in the tag
+     * @return the attribute values with their character references decoded, by lower case attribute name
+     */
+    private static Map<String, String> parseAttributes(final String attributes) {
+        final Map<String, String> values = new HashMap<String, String>();
+        final Matcher matcher = ATTRIBUTE_PATTERN.matcher(attributes);
+        while (matcher.find()) {
+            String value = matcher.group(2);
+            if (value == null) {
+                value = matcher.group(3);
+            }
+            if (value == null) {
+                value = matcher.group(4);
+            }
+            values.put(matcher.group(1).toLowerCase(), StringEscapeUtils.unescapeHtml(value));
+        }
+        return values;
+    }
+}
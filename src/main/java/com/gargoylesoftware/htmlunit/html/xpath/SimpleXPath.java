@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gargoylesoftware.htmlunit.html.DomAttr;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+
+/**
+ * Evaluates simple location paths directly on the {@link DomNode} tree, without building the
+ * Xalan DTM proxy over it. Only abbreviated paths made of child and descendant steps with element
+ * name tests, an optional final attribute step, and positional or attribute predicates are
+ * supported, for instance <tt>//a[@href]</tt>, <tt>//div[@class='x']/span</tt>, <tt>./td[3]</tt>
+ * or <tt>/html/body//img/@src</tt>. {@link #compile(String)} returns <tt>null</tt> for anything
+ * else, which is then evaluated by {@link XPathAdapter}.
+ *
+ * @version $Revision$
+ * @author HtmlUnit team
+ */
+final class SimpleXPath {
+
+    private static final Comparator<DomNode> DOCUMENT_ORDER = new Comparator<DomNode>() {
+        public int compare(final DomNode node1, final DomNode node2) {
+            return compareDocumentOrder(node1, node2);
+        }
+    };
+
+    private final boolean absolute_;
+    private final Step[] steps_;
+
+    private SimpleXPath(final boolean absolute, final Step[] steps) {
+        absolute_ = absolute;
+        steps_ = steps;
+    }
+
+    /**
+     * Compiles the specified expression, which must already be pre-processed for case-insensitive pages.
+     * @param expression the XPath expression
+     * @return the compiled expression, or <tt>null</tt> if it is not supported
+     */
+    static SimpleXPath compile(final String expression) {
+        final String s = expression.trim();
+        int pos;
+        boolean absolute = false;
+        boolean descendant = false;
+        if (s.startsWith("//")) {
+            absolute = true;
+            descendant = true;
+            pos = 2;
+        }
+        else if (s.startsWith("/")) {
+            absolute = true;
+            pos = 1;
+        }
+        else if (s.startsWith(".//")) {
+            descendant = true;
+            pos = 3;
+        }
+        else if (s.startsWith("./")) {
+            pos = 2;
+        }
+        else {
+            pos = 0;
+        }
+
+        final List<Step> steps = new ArrayList<Step>();
+        while (true) {
+            if (pos >= s.length()) {
+                return null;
+            }
+            final Step step;
+            if (s.charAt(pos) == '@') {
+                final int end = parseName(s, pos + 1);
+                if (end == pos + 1 || end != s.length()) {
+                    return null;
+                }
+                step = new Step(descendant, s.substring(pos + 1, end), true);
+                if (step.descendant_ || step.name_.startsWith("xmlns")) {
+                    return null;
+                }
+                steps.add(step);
+                break;
+            }
+            int end;
+            if (s.charAt(pos) == '*') {
+                step = new Step(descendant, null, false);
+                end = pos + 1;
+            }
+            else {
+                end = parseName(s, pos);
+                if (end == pos || (end < s.length() && s.charAt(end) == '(')) {
+                    return null;
+                }
+                step = new Step(descendant, s.substring(pos, end), false);
+            }
+            while (end < s.length() && s.charAt(end) == '[') {
+                final int close = s.indexOf(']', end);
+                if (close == -1 || !step.addPredicate(s.substring(end + 1, close).trim())) {
+                    return null;
+                }
+                end = close + 1;
+            }
+            steps.add(step);
+
+            if (end == s.length()) {
+                break;
+            }
+            if (s.startsWith("//", end)) {
+                descendant = true;
+                pos = end + 2;
+            }
+            else if (s.charAt(end) == '/') {
+                descendant = false;
+                pos = end + 1;
+            }
+            else {
+                return null;
+            }
+        }
+        return new SimpleXPath(absolute, steps.toArray(new Step[steps.size()]));
+    }
+
+    /**
+     * Returns the end index of the name (without namespace prefix) starting at the specified index.
+     */
+    private static int parseName(final String s, final int start) {
+        int i = start;
+        while (i < s.length()) {
+            final char ch = s.charAt(i);
+            final boolean nameStart = Character.isLetter(ch) || ch == '_';
+            if (!nameStart && (i == start || (!Character.isDigit(ch) && ch != '-' && ch != '.'))) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Evaluates this expression.
+     * @param contextNode the node to start searching from
+     * @param caseSensitive whether the tag names of the page are case-sensitive
+     * @return the matching nodes, in document order
+     */
+    List<Object> evaluate(final DomNode contextNode, final boolean caseSensitive) {
+        List<DomNode> contexts = Collections.singletonList(getStartNode(contextNode));
+        boolean nested = false;
+        for (final Step step : steps_) {
+            final List<DomNode> result = new ArrayList<DomNode>();
+            for (final DomNode context : contexts) {
+                step.evaluate(context, caseSensitive, result);
+            }
+            if (!step.attribute_ && ((contexts.size() > 1 && nested) || (step.descendant_ && step.positional_))) {
+                contexts = sortAndRemoveDuplicates(result);
+            }
+            else {
+                contexts = result;
+            }
+            nested |= step.descendant_;
+        }
+        return new ArrayList<Object>(contexts);
+    }
+
+    /**
+     * Evaluates this expression, stopping at the first matching node. Unlike {@link #evaluate(DomNode, boolean)},
+     * which evaluates the steps one after the other, this visits the nodes below the context node in document
+     * order and matches each one against the steps, from the last one back to the context node: the other
+     * matching nodes are neither collected nor sorted.
+     * @param contextNode the node to start searching from
+     * @param caseSensitive whether the tag names of the page are case-sensitive
+     * @return the first matching node in document order, or <tt>null</tt> if there is none
+     */
+    DomNode evaluateFirst(final DomNode contextNode, final boolean caseSensitive) {
+        final DomNode start = getStartNode(contextNode);
+        final int last = steps_.length - 1;
+        final Step lastStep = steps_[last];
+
+        // Without descendant steps, the matching elements are all at the same depth below the start node
+        int maxDepth = lastStep.attribute_ ? last : steps_.length;
+        for (final Step step : steps_) {
+            if (step.descendant_) {
+                maxDepth = Integer.MAX_VALUE;
+            }
+        }
+
+        DomNode node = start;
+        int depth = 0;
+        while (node != null) {
+            if (lastStep.attribute_) {
+                if (node instanceof DomElement && isContext(node, last, start, caseSensitive)) {
+                    final DomAttr attr = ((DomElement) node).getAttributesMap().get(lastStep.name_);
+                    if (attr != null && attr.getNamespaceURI() == null) {
+                        return attr;
+                    }
+                }
+            }
+            else if (isSelected(node, last, start, caseSensitive)) {
+                return node;
+            }
+
+            if (depth < maxDepth && node.getFirstChild() != null) {
+                node = node.getFirstChild();
+                depth++;
+            }
+            else {
+                while (node != start && node.getNextSibling() == null) {
+                    node = node.getParentNode();
+                    depth--;
+                }
+                node = (node == start) ? null : node.getNextSibling();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the specified node is selected by the steps up to the specified one.
+     * @param node the node, which can only be selected if it is below the start node
+     * @param index the index of the last step to match
+     * @param start the start node
+     * @param caseSensitive whether the tag names of the page are case-sensitive
+     * @return whether the specified node is selected by the steps up to the specified one
+     */
+    private boolean isSelected(final DomNode node, final int index, final DomNode start,
+            final boolean caseSensitive) {
+        final Step step = steps_[index];
+        if (node == start || !step.selects(node, caseSensitive)) {
+            return false;
+        }
+        final DomNode parent = node.getParentNode();
+        if (!step.descendant_) {
+            return isContext(parent, index, start, caseSensitive);
+        }
+        for (DomNode ancestor = parent; ancestor != null; ancestor = ancestor.getParentNode()) {
+            if (isContext(ancestor, index, start, caseSensitive)) {
+                return true;
+            }
+            if (ancestor == start) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the specified step is evaluated from the specified node, i.e. whether the node is
+     * the start node for the first step, or is selected by the previous steps for the other ones.
+     */
+    private boolean isContext(final DomNode node, final int index, final DomNode start,
+            final boolean caseSensitive) {
+        if (index == 0) {
+            return node == start;
+        }
+        return isSelected(node, index - 1, start, caseSensitive);
+    }
+
+    /**
+     * Returns the node from which the first step is evaluated.
+     */
+    private DomNode getStartNode(final DomNode contextNode) {
+        DomNode start = contextNode;
+        if (absolute_) {
+            while (start.getParentNode() != null) {
+                start = start.getParentNode();
+            }
+        }
+        return start;
+    }
+
+    private static List<DomNode> sortAndRemoveDuplicates(final List<DomNode> nodes) {
+        final Map<DomNode, DomNode> seen = new IdentityHashMap<DomNode, DomNode>();
+        final List<DomNode> result = new ArrayList<DomNode>(nodes.size());
+        for (final DomNode node : nodes) {
+            if (seen.put(node, node) == null) {
+                result.add(node);
+            }
+        }
+        Collections.sort(result, DOCUMENT_ORDER);
+        return result;
+    }
+
+    private static int compareDocumentOrder(final DomNode node1, final DomNode node2) {
+        if (node1 == node2) {
+            return 0;
+        }
+        final List<DomNode> ancestors1 = getAncestorsAndSelf(node1);
+        final List<DomNode> ancestors2 = getAncestorsAndSelf(node2);
+        final int length = Math.min(ancestors1.size(), ancestors2.size());
+        int i = 0;
+        while (i < length && ancestors1.get(i) == ancestors2.get(i)) {
+            i++;
+        }
+        if (i == ancestors1.size()) {
+            return -1; // node1 is an ancestor of node2
+        }
+        if (i == ancestors2.size()) {
+            return 1; // node2 is an ancestor of node1
+        }
+        final DomNode sibling2 = ancestors2.get(i);
+        for (DomNode sibling = ancestors1.get(i).getNextSibling(); sibling != null;
+                sibling = sibling.getNextSibling()) {
+            if (sibling == sibling2) {
+                return -1;
+            }
+        }
+        return 1;
+    }
+
+    private static List<DomNode> getAncestorsAndSelf(final DomNode node) {
+        final List<DomNode> ancestors = new ArrayList<DomNode>();
+        for (DomNode ancestor = node; ancestor != null; ancestor = ancestor.getParentNode()) {
+            ancestors.add(ancestor);
+        }
+        Collections.reverse(ancestors);
+        return ancestors;
+    }
+
+    /**
+     * A location step.
+     */
+    private static final class Step {
+        private final boolean descendant_;
+        private final String name_;
+        private final boolean attribute_;
+        private final List<Object> predicates_ = new ArrayList<Object>();
+        private boolean positional_;
+
+        Step(final boolean descendant, final String name, final boolean attribute) {
+            descendant_ = descendant;
+            name_ = name;
+            attribute_ = attribute;
+        }
+
+        /**
+         * Adds a predicate: an {@link Integer} position, or an {@link AttributeTest}.
+         * @return <tt>false</tt> if the predicate is not supported
+         */
+        boolean addPredicate(final String predicate) {
+            if (predicate.length() == 0) {
+                return false;
+            }
+            if (Character.isDigit(predicate.charAt(0))) {
+                for (int i = 0; i < predicate.length(); i++) {
+                    if (!Character.isDigit(predicate.charAt(i))) {
+                        return false;
+                    }
+                }
+                if (predicate.length() > 9) {
+                    return false;
+                }
+                predicates_.add(Integer.valueOf(predicate));
+                positional_ = true;
+                return true;
+            }
+            if (predicate.charAt(0) != '@') {
+                return false;
+            }
+            final int end = parseName(predicate, 1);
+            if (end == 1) {
+                return false;
+            }
+            final String name = predicate.substring(1, end);
+            if (name.startsWith("xmlns")) {
+                return false;
+            }
+            final String rest = predicate.substring(end).trim();
+            if (rest.length() == 0) {
+                predicates_.add(new AttributeTest(name, null));
+                return true;
+            }
+            if (rest.charAt(0) != '=') {
+                return false;
+            }
+            final String literal = rest.substring(1).trim();
+            if (literal.length() < 2) {
+                return false;
+            }
+            final char quote = literal.charAt(0);
+            if ((quote != '\'' && quote != '"') || literal.indexOf(quote, 1) != literal.length() - 1) {
+                return false;
+            }
+            predicates_.add(new AttributeTest(name, literal.substring(1, literal.length() - 1)));
+            return true;
+        }
+
+        void evaluate(final DomNode context, final boolean caseSensitive, final List<DomNode> result) {
+            if (attribute_) {
+                if (context instanceof DomElement) {
+                    final DomAttr attr = ((DomElement) context).getAttributesMap().get(name_);
+                    if (attr != null && attr.getNamespaceURI() == null) {
+                        result.add(attr);
+                    }
+                }
+            }
+            else if (!descendant_) {
+                evaluateChildren(context, caseSensitive, result);
+            }
+            else if (positional_) {
+                evaluateChildren(context, caseSensitive, result);
+                for (DomNode child = context.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    evaluate(child, caseSensitive, result);
+                }
+            }
+            else {
+                for (DomNode child = context.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (matches(child, caseSensitive)) {
+                        result.add(child);
+                    }
+                    evaluate(child, caseSensitive, result);
+                }
+            }
+        }
+
+        /**
+         * Returns whether this (non attribute) step selects the specified node among the children of its parent.
+         */
+        boolean selects(final DomNode node, final boolean caseSensitive) {
+            if (!positional_) {
+                return matches(node, caseSensitive);
+            }
+            final DomNode parent = node.getParentNode();
+            if (parent == null || !matchesNameTest(node, caseSensitive)) {
+                return false;
+            }
+            final List<DomNode> selected = new ArrayList<DomNode>();
+            evaluateChildren(parent, caseSensitive, selected);
+            for (final DomNode child : selected) {
+                if (child == node) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void evaluateChildren(final DomNode parent, final boolean caseSensitive, final List<DomNode> result) {
+            List<DomNode> children = new ArrayList<DomNode>();
+            for (DomNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (matchesNameTest(child, caseSensitive)) {
+                    children.add(child);
+                }
+            }
+            for (final Object predicate : predicates_) {
+                if (predicate instanceof Integer) {
+                    final int position = ((Integer) predicate).intValue();
+                    if (position >= 1 && position <= children.size()) {
+                        children = Collections.singletonList(children.get(position - 1));
+                    }
+                    else {
+                        return;
+                    }
+                }
+                else {
+                    final List<DomNode> filtered = new ArrayList<DomNode>(children.size());
+                    for (final DomNode child : children) {
+                        if (((AttributeTest) predicate).matches((DomElement) child)) {
+                            filtered.add(child);
+                        }
+                    }
+                    children = filtered;
+                }
+            }
+            result.addAll(children);
+        }
+
+        /**
+         * Returns whether the specified node passes the name test and all the (non positional) predicates.
+         */
+        private boolean matches(final DomNode node, final boolean caseSensitive) {
+            if (!matchesNameTest(node, caseSensitive)) {
+                return false;
+            }
+            for (final Object predicate : predicates_) {
+                if (!((AttributeTest) predicate).matches((DomElement) node)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesNameTest(final DomNode node, final boolean caseSensitive) {
+            if (!(node instanceof DomElement)) {
+                return false;
+            }
+            if (name_ == null) {
+                return true;
+            }
+            if (node.getNamespaceURI() != null) {
+                return false;
+            }
+            final String localName = node.getLocalName();
+            if (caseSensitive) {
+                return name_.equals(localName);
+            }
+            return name_.equalsIgnoreCase(localName);
+        }
+    }
+
+    /**
+     * An attribute existence (<tt>[@name]</tt>) or value (<tt>[@name='value']</tt>) predicate.
+     */
+    private static final class AttributeTest {
+        private final String name_;
+        private final String value_;
+
+        AttributeTest(final String name, final String value) {
+            name_ = name;
+            value_ = value;
+        }
+
+        boolean matches(final DomElement element) {
+            final DomAttr attr = element.getAttributesMap().get(name_);
+            if (attr == null || attr.getNamespaceURI() != null) {
+                return false;
+            }
+            return value_ == null || value_.equals(attr.getValue());
+        }
+    }
+}
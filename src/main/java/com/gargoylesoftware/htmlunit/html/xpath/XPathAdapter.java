@@ -96,7 +96,7 @@ class XPathAdapter {
      * @param xpath the XPath expression to pre-process
      * @return the processed XPath expression
      */
-    private static String preProcessXPath(String xpath) {
+    static String preProcessXPath(String xpath) {
         final char[] charArray = xpath.toCharArray();
         processOutsideBrackets(charArray);
         xpath = new String(charArray);
@@ -15,7 +15,10 @@
 package com.gargoylesoftware.htmlunit.html.xpath;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.transform.TransformerException;
 
@@ -29,6 +32,7 @@ import org.apache.xpath.objects.XString;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.w3c.dom.traversal.NodeIterator;
 
 import com.gargoylesoftware.htmlunit.html.DomNode;
 
@@ -40,6 +44,23 @@ import com.gargoylesoftware.htmlunit.html.DomNode;
  */
 public final class XPathUtils {
 
+    /** The maximum number of compiled expressions kept in {@link #COMPILED_EXPRESSIONS_}. */
+    private static final int MAX_COMPILED_EXPRESSIONS = 500;
+
+    /**
+     * The compiled expressions ({@link SimpleXPath} or {@link XPathAdapter}), keyed by case sensitivity
+     * and expression string, in LRU order. Compiled expressions hold no evaluation state and can be
+     * shared between threads.
+     */
+    private static final Map<String, Object> COMPILED_EXPRESSIONS_ = Collections.synchronizedMap(
+        new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = -3441786153244516428L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+                return size() > MAX_COMPILED_EXPRESSIONS;
+            }
+        });
+
     private static ThreadLocal<Boolean> PROCESS_XPATH_ = new ThreadLocal<Boolean>() {
         @Override
         protected synchronized Boolean initialValue() {
@@ -66,6 +87,12 @@ public final class XPathUtils {
             throw new NullPointerException("Null is not a valid XPath expression");
         }
 
+        final boolean caseSensitive = node.getPage().hasCaseSensitiveTagNames();
+        final SimpleXPath simpleXPath = getSimpleXPath(xpathExpr, caseSensitive);
+        if (simpleXPath != null) {
+            return simpleXPath.evaluate(node, caseSensitive);
+        }
+
         PROCESS_XPATH_.set(true);
         final List<Object> list = new ArrayList<Object>();
         try {
@@ -77,17 +104,8 @@ public final class XPathUtils {
                     list.add(nodelist.item(i));
                 }
             }
-            else if (result instanceof XNumber) {
-                list.add(result.num());
-            }
-            else if (result instanceof XBoolean) {
-                list.add(result.bool());
-            }
-            else if (result instanceof XString) {
-                list.add(result.str());
-            }
             else {
-                throw new RuntimeException("Unproccessed " + result.getClass().getName());
+                list.add(toJavaObject(result));
             }
         }
         catch (final Exception e) {
@@ -99,6 +117,56 @@ public final class XPathUtils {
         return list;
     }
 
+    /**
+     * Evaluates an XPath expression from the specified node, returning the first resultant node.
+     * Unlike {@link #getByXPath(DomNode, String)}, the other matching nodes are not collected.
+     *
+     * @param node the node to start searching from
+     * @param xpathExpr the XPath expression
+     * @return the first object found, or <tt>null</tt> if no node matches the expression
+     */
+    public static Object getFirstByXPath(final DomNode node, final String xpathExpr) {
+        if (xpathExpr == null) {
+            throw new NullPointerException("Null is not a valid XPath expression");
+        }
+
+        final boolean caseSensitive = node.getPage().hasCaseSensitiveTagNames();
+        final SimpleXPath simpleXPath = getSimpleXPath(xpathExpr, caseSensitive);
+        if (simpleXPath != null) {
+            return simpleXPath.evaluateFirst(node, caseSensitive);
+        }
+
+        PROCESS_XPATH_.set(true);
+        try {
+            final XObject result = evaluateXPath(node, xpathExpr);
+
+            if (result instanceof XNodeSet) {
+                final NodeIterator iterator = ((XNodeSet) result).nodeset();
+                return iterator.nextNode();
+            }
+            return toJavaObject(result);
+        }
+        catch (final Exception e) {
+            throw new RuntimeException("Could not retrieve XPath >" + xpathExpr + "< on " + node, e);
+        }
+        finally {
+            PROCESS_XPATH_.set(false);
+        }
+    }
+
+    private static Object toJavaObject(final XObject result) throws TransformerException {
+        if (result instanceof XNumber) {
+            return result.num();
+        }
+        else if (result instanceof XBoolean) {
+            return result.bool();
+        }
+        else if (result instanceof XString) {
+            return result.str();
+        }
+        throw new RuntimeException("Unproccessed " + result.getClass().getName());
+    }
+
     /**
      * Returns whether the thread is currently evaluating XPath expression or no.
      * @return whether the thread is currently evaluating XPath expression or no
@@ -125,9 +193,63 @@ public final class XPathUtils {
         }
         final PrefixResolver prefixResolver = new HtmlUnitPrefixResolver(xpathExpressionContext);
         final boolean caseSensitive = contextNode.getPage().hasCaseSensitiveTagNames();
-        final XPathAdapter xpath = new XPathAdapter(str, null, prefixResolver, null, caseSensitive);
+        final XPathAdapter xpath = getCompiledXPath(str, prefixResolver, caseSensitive);
         final int ctxtNode = xpathSupport.getDTMHandleFromNode(contextNode);
         return xpath.execute(xpathSupport, ctxtNode, prefixResolver);
     }
 
+    /**
+     * Returns the compiled form of the specified expression, compiling it if it isn't cached yet.
+     * Namespace prefixes are resolved at compile time against the context node, so expressions
+     * using them are compiled at each call.
+     * @param str a valid XPath string
+     * @param prefixResolver the prefix resolver of the context node
+     * @param caseSensitive whether or not the XPath expression should be case-sensitive
+     * @return the compiled expression
+     * @throws TransformerException if a syntax or other error occurs
+     */
+    private static XPathAdapter getCompiledXPath(final String str, final PrefixResolver prefixResolver,
+            final boolean caseSensitive) throws TransformerException {
+        if (str.replace("::", "").indexOf(':') != -1) {
+            return new XPathAdapter(str, null, prefixResolver, null, caseSensitive);
+        }
+        final String key = (caseSensitive ? 'S' : 'I') + str;
+        final Object compiled = COMPILED_EXPRESSIONS_.get(key);
+        if (compiled instanceof XPathAdapter) {
+            return (XPathAdapter) compiled;
+        }
+        final XPathAdapter xpath = new XPathAdapter(str, null, prefixResolver, null, caseSensitive);
+        COMPILED_EXPRESSIONS_.put(key, xpath);
+        return xpath;
+    }
+
+    /**
+     * Returns the native form of the specified expression, if it is simple enough to be evaluated
+     * without Xalan (see {@link SimpleXPath}).
+     * @param str the XPath expression
+     * @param caseSensitive whether or not the XPath expression should be case-sensitive
+     * @return the native form of the expression, or <tt>null</tt> if it has to be evaluated by Xalan
+     */
+    private static SimpleXPath getSimpleXPath(final String str, final boolean caseSensitive) {
+        final String key = (caseSensitive ? 'S' : 'I') + str;
+        final Object compiled = COMPILED_EXPRESSIONS_.get(key);
+        if (compiled != null) {
+            if (compiled instanceof SimpleXPath) {
+                return (SimpleXPath) compiled;
+            }
+            return null;
+        }
+        final SimpleXPath simpleXPath;
+        if (caseSensitive) {
+            simpleXPath = SimpleXPath.compile(str);
+        }
+        else {
+            simpleXPath = SimpleXPath.compile(XPathAdapter.preProcessXPath(str));
+        }
+        if (simpleXPath != null) {
+            COMPILED_EXPRESSIONS_.put(key, simpleXPath);
+        }
+        return simpleXPath;
+    }
+
 }
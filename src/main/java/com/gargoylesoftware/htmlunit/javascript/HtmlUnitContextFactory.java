@@ -15,6 +15,9 @@
 package com.gargoylesoftware.htmlunit.javascript;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import net.sourceforge.htmlunit.corejs.javascript.Callable;
 import net.sourceforge.htmlunit.corejs.javascript.Context;
@@ -27,6 +30,8 @@ import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
 import net.sourceforge.htmlunit.corejs.javascript.WrapFactory;
 import net.sourceforge.htmlunit.corejs.javascript.debug.Debugger;
 
+import org.apache.commons.codec.digest.DigestUtils;
+
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.BrowserVersionFeatures;
 import com.gargoylesoftware.htmlunit.ScriptPreProcessor;
@@ -51,6 +56,23 @@ public class HtmlUnitContextFactory extends ContextFactory implements Serializab
 
     private static final int INSTRUCTION_COUNT_THRESHOLD = 10000;
 
+    /** The maximum number of compiled scripts kept in {@link #COMPILED_SCRIPTS_}. */
+    private static final int MAX_COMPILED_SCRIPTS = 200;
+
+    /**
+     * The compiled scripts, shared by all the WebClients, keyed by {@link #getCompiledScriptKey} and kept
+     * in LRU order. Compiled scripts hold no scope and can be executed in different pages and threads,
+     * so that the same library is compiled only once, whatever the HTTP caching headers of its response.
+     */
+    private static final Map<String, Script> COMPILED_SCRIPTS_ = Collections.synchronizedMap(
+        new LinkedHashMap<String, Script>(16, 0.75f, true) {
+            private static final long serialVersionUID = 3542658519328727410L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Script> eldest) {
+                return size() > MAX_COMPILED_SCRIPTS;
+            }
+        });
+
     private final BrowserVersion browserVersion_;
     private final WebClient webClient_;
     private long timeout_;
@@ -170,11 +192,38 @@ public class HtmlUnitContextFactory extends ContextFactory implements Serializab
                 }
             }
 
-            return super.compileString(source, compiler, compilationErrorReporter,
-                    sourceName, lineno, securityDomain);
+            // the scripts compiled with debug information or for a specific evaluator can't be shared
+            if (compiler != null || securityDomain != null || getDebugger() != null || isGeneratingDebug()) {
+                return super.compileString(source, compiler, compilationErrorReporter,
+                        sourceName, lineno, securityDomain);
+            }
+            final String key = getCompiledScriptKey(this, source, sourceName, lineno);
+            Script script = COMPILED_SCRIPTS_.get(key);
+            if (script == null) {
+                script = super.compileString(source, compiler, compilationErrorReporter,
+                        sourceName, lineno, securityDomain);
+                COMPILED_SCRIPTS_.put(key, script);
+            }
+            return script;
         }
     }
 
+    /**
+     * Returns the key of the specified script in the compiled script cache. The source code is the one
+     * resulting from all the pre processing, which already depends on the browser version, so that
+     * the same script is shared between the browser versions that process it in the same way.
+     * @param cx the context compiling the script
+     * @param source the pre processed source code
+     * @param sourceName the name of the script
+     * @param lineno the line at which the script source starts
+     * @return the key of the specified script
+     */
+    private static String getCompiledScriptKey(final Context cx, final String source, final String sourceName,
+            final int lineno) {
+        return DigestUtils.shaHex(source) + ' ' + cx.getLanguageVersion() + ' ' + cx.getOptimizationLevel()
+            + ' ' + lineno + ' ' + sourceName;
+    }
+
     /**
      * Pre process the specified source code in the context of the given page using the processor specified
      * in the webclient. This method delegates to the pre processor handler specified in the
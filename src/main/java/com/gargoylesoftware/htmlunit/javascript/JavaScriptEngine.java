@@ -19,6 +19,7 @@ import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +42,8 @@ import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManagerImpl;
 import com.gargoylesoftware.htmlunit.javascript.configuration.ClassConfiguration;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JavaScriptConfiguration;
 import com.gargoylesoftware.htmlunit.javascript.host.Element;
@@ -73,6 +76,13 @@ public class JavaScriptEngine implements Serializable {
     private final WebClient webClient_;
     private final HtmlUnitContextFactory contextFactory_;
 
+    /**
+     * The host functions shared by the windows (when {@link WebClient#isJavaScriptFunctionSharingEnabled()}),
+     * by configuration, by JavaScript class name and by function name.
+     */
+    private static final Map<JavaScriptConfiguration, Map<String, Map<String, FunctionObject>>> SHARED_FUNCTIONS
+        = new IdentityHashMap<JavaScriptConfiguration, Map<String, Map<String, FunctionObject>>>();
+
     private static final ThreadLocal<Boolean> javaScriptRunning_ = new ThreadLocal<Boolean>();
     private static final ThreadLocal<List<PostponedAction>> postponedActions_
         = new ThreadLocal<List<PostponedAction>>();
@@ -154,6 +164,10 @@ public class JavaScriptEngine implements Serializable {
         final Map<String, Scriptable> prototypesPerJSName = new HashMap<String, Scriptable>();
         final Window window = new Window(this);
         final JavaScriptConfiguration jsConfig = JavaScriptConfiguration.getInstance(webClient.getBrowserVersion());
+        Map<String, Map<String, FunctionObject>> sharedFunctions = null;
+        if (webClient.isJavaScriptFunctionSharingEnabled()) {
+            sharedFunctions = getSharedFunctions(jsConfig, context);
+        }
         context.initStandardObjects(window);
 
         // remove some objects, that Rhino defines in top scope but that we don't want
@@ -170,6 +184,13 @@ public class JavaScriptEngine implements Serializable {
             }
         }
 
+        // on virtual time, the current date is the one of the job manager
+        final JavaScriptJobManager jobManager = webWindow.getJobManager();
+        if (jobManager instanceof JavaScriptJobManagerImpl
+                && ((JavaScriptJobManagerImpl) jobManager).isVirtualTime()) {
+            VirtualTimeDateConstructor.install(window, (JavaScriptJobManagerImpl) jobManager);
+        }
+
         // put custom object to be called as very last prototype to call the fallback getter (if any)
         final Scriptable fallbackCaller = new ScriptableObject() {
             private static final long serialVersionUID = -7124423159070941606L;
@@ -192,11 +213,15 @@ public class JavaScriptEngine implements Serializable {
         for (final String jsClassName : jsConfig.keySet()) {
             final ClassConfiguration config = jsConfig.getClassConfiguration(jsClassName);
             final boolean isWindow = Window.class.getName().equals(config.getLinkedClass().getName());
+            Map<String, FunctionObject> functions = null;
+            if (sharedFunctions != null) {
+                functions = sharedFunctions.get(jsClassName);
+            }
             if (isWindow) {
-                configureConstantsPropertiesAndFunctions(config, window);
+                configureConstantsPropertiesAndFunctions(config, window, functions);
             }
             else {
-                final ScriptableObject prototype = configureClass(config, window);
+                final ScriptableObject prototype = configureClass(config, window, functions);
                 if (config.isJsObject()) {
                     // for FF, place object with prototype property in Window scope
                     if (!getWebClient().getBrowserVersion().isIE()) {
@@ -285,22 +310,68 @@ public class JavaScriptEngine implements Serializable {
         }
     }
 
+    /**
+     * Returns the host functions shared by the windows using the specified configuration, building them
+     * the first time. The functions are sealed: the windows only share the function objects, each window
+     * still has its own prototypes, so that scripts redefining a function only affect their own window.
+     * @param jsConfig the configuration
+     * @param context the current context
+     * @return the shared functions, by JavaScript class name and by function name
+     * @throws Exception if something goes wrong
+     */
+    private static Map<String, Map<String, FunctionObject>> getSharedFunctions(
+            final JavaScriptConfiguration jsConfig, final Context context) throws Exception {
+        synchronized (SHARED_FUNCTIONS) {
+            Map<String, Map<String, FunctionObject>> sharedFunctions = SHARED_FUNCTIONS.get(jsConfig);
+            if (sharedFunctions == null) {
+                sharedFunctions = new HashMap<String, Map<String, FunctionObject>>();
+                final ScriptableObject scope = context.initStandardObjects(null, true);
+                for (final String jsClassName : jsConfig.keySet()) {
+                    final ClassConfiguration config = jsConfig.getClassConfiguration(jsClassName);
+                    // the functions called without "this" are called on their parent scope, as they are
+                    // on the prototypes when not shared
+                    final ScriptableObject parentScope;
+                    if (Window.class.getName().equals(config.getLinkedClass().getName())) {
+                        parentScope = scope;
+                    }
+                    else {
+                        parentScope = config.getLinkedClass().newInstance();
+                        parentScope.setParentScope(scope);
+                        parentScope.sealObject();
+                    }
+                    final Map<String, FunctionObject> functions = new HashMap<String, FunctionObject>();
+                    for (final String functionName : config.functionKeys()) {
+                        final Method method = config.getFunctionMethod(functionName);
+                        final FunctionObject functionObject = new FunctionObject(functionName, method, parentScope);
+                        functionObject.sealObject();
+                        functions.put(functionName, functionObject);
+                    }
+                    sharedFunctions.put(jsClassName, functions);
+                }
+                SHARED_FUNCTIONS.put(jsConfig, sharedFunctions);
+            }
+            return sharedFunctions;
+        }
+    }
+
     /**
      * Configures the specified class for access via JavaScript.
      * @param config the configuration settings for the class to be configured
      * @param window the scope within which to configure the class
+     * @param sharedFunctions the shared function objects to use, or <code>null</code> to create new ones
      * @throws InstantiationException if the new class cannot be instantiated
      * @throws IllegalAccessException if we don't have access to create the new instance
      * @return the created prototype
      */
-    private ScriptableObject configureClass(final ClassConfiguration config, final Scriptable window)
+    private ScriptableObject configureClass(final ClassConfiguration config, final Scriptable window,
+            final Map<String, FunctionObject> sharedFunctions)
         throws InstantiationException, IllegalAccessException {
 
         final Class< ? > jsHostClass = config.getLinkedClass();
         final ScriptableObject prototype = (ScriptableObject) jsHostClass.newInstance();
         prototype.setParentScope(window);
 
-        configureConstantsPropertiesAndFunctions(config, prototype);
+        configureConstantsPropertiesAndFunctions(config, prototype, sharedFunctions);
 
         return prototype;
     }
@@ -309,9 +380,10 @@ public class JavaScriptEngine implements Serializable {
      * Configures constants, properties and functions on the object.
      * @param config the configuration for the object
      * @param scriptable the object to configure
+     * @param sharedFunctions the shared function objects to use, or <code>null</code> to create new ones
      */
     private void configureConstantsPropertiesAndFunctions(final ClassConfiguration config,
-            final ScriptableObject scriptable) {
+            final ScriptableObject scriptable, final Map<String, FunctionObject> sharedFunctions) {
 
         // the constants
         configureConstants(config, scriptable);
@@ -329,8 +401,14 @@ public class JavaScriptEngine implements Serializable {
         }
         // the functions
         for (final String functionName : config.functionKeys()) {
-            final Method method = config.getFunctionMethod(functionName);
-            final FunctionObject functionObject = new FunctionObject(functionName, method, scriptable);
+            final FunctionObject functionObject;
+            if (sharedFunctions != null) {
+                functionObject = sharedFunctions.get(functionName);
+            }
+            else {
+                final Method method = config.getFunctionMethod(functionName);
+                functionObject = new FunctionObject(functionName, method, scriptable);
+            }
             scriptable.defineProperty(functionName, functionObject, attributes);
         }
     }
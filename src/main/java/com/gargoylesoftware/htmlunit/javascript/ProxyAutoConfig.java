@@ -18,19 +18,25 @@ import java.net.InetAddress;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TimeZone;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
+import net.sourceforge.htmlunit.corejs.javascript.Function;
 import net.sourceforge.htmlunit.corejs.javascript.FunctionObject;
-import net.sourceforge.htmlunit.corejs.javascript.NativeFunction;
-import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
 import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
 import net.sourceforge.htmlunit.corejs.javascript.Undefined;
 
 /**
  * Provides an implementation of Proxy Auto-Config (PAC).
  *
+ * <p>An instance compiles and executes the PAC content once, and then only calls its <tt>FindProxyForURL</tt>
+ * function, whose results are reused for the URLs with the same scheme, host and port during
+ * {@link #RESULT_TTL} milliseconds. The DNS lookups done by the helper functions are reused during
+ * {@link #DNS_TTL} milliseconds.</p>
+ *
  * @see <a href="http://lib.ru/WEBMASTER/proxy-live.txt">PAC file format</a>
  *
  * @version $Revision: 4619 $
@@ -38,7 +44,80 @@ import net.sourceforge.htmlunit.corejs.javascript.Undefined;
  */
 public final class ProxyAutoConfig {
 
-    private ProxyAutoConfig() {
+    /** The time during which the result for a given scheme, host and port is reused, in milliseconds. */
+    public static final long RESULT_TTL = 60 * 1000;
+
+    /** The time during which the result of a DNS lookup is reused, in milliseconds. */
+    public static final long DNS_TTL = 60 * 1000;
+
+    /** The maximum number of results and DNS lookups kept. */
+    private static final int MAX_CACHE_SIZE = 1000;
+
+    private static final String[] HELPER_FUNCTIONS = {"isPlainHostName", "dnsDomainIs", "localHostOrDomainIs",
+        "isResolvable", "isInNet", "dnsResolve", "myIpAddress", "dnsDomainLevels", "shExpMatch", "weekdayRange",
+        "dateRange", "timeRange"};
+
+    /** The results of the DNS lookups, by host. */
+    private static final Map<String, CachedValue> DNS_CACHE = new BoundedMap();
+
+    /** The scope in which the PAC content has been executed, on top of the sealed standard objects. */
+    private final ScriptableObject scope_;
+    private final Function findProxyForURL_;
+
+    /** The results of <tt>FindProxyForURL</tt>, by scheme, host and port. */
+    private final Map<String, CachedValue> results_ = new BoundedMap();
+
+    /**
+     * A value, with the time it has been computed.
+     */
+    private static final class CachedValue {
+        private final String value_;
+        private final long time_;
+
+        private CachedValue(final String value) {
+            value_ = value;
+            time_ = System.currentTimeMillis();
+        }
+
+        private boolean isExpired(final long ttl) {
+            return System.currentTimeMillis() - time_ >= ttl;
+        }
+    }
+
+    /**
+     * A map keeping at most {@link ProxyAutoConfig#MAX_CACHE_SIZE} entries, the eldest ones being removed first.
+     */
+    private static final class BoundedMap extends LinkedHashMap<String, CachedValue> {
+        private static final long serialVersionUID = 3590417420848089538L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedValue> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    }
+
+    /**
+     * Compiles and executes the specified PAC content.
+     * @param content the JavaScript content
+     */
+    public ProxyAutoConfig(final String content) {
+        final Context cx = ContextFactory.getGlobal().enterContext();
+        try {
+            final ScriptableObject standardObjects = cx.initStandardObjects(null, true);
+            scope_ = (ScriptableObject) cx.newObject(standardObjects);
+            scope_.setPrototype(standardObjects);
+            scope_.setParentScope(null);
+            for (final String functionName : HELPER_FUNCTIONS) {
+                defineMethod(functionName, scope_);
+            }
+
+            cx.evaluateString(scope_, "var ProxyConfig = function() {}; ProxyConfig.bindings = {}", "<init>", 1, null);
+            cx.evaluateString(scope_, content, "<Proxy Auto-Config>", 1, null);
+            findProxyForURL_ = (Function) scope_.get("FindProxyForURL", scope_);
+        }
+        finally {
+            Context.exit();
+        }
     }
 
     /**
@@ -48,43 +127,40 @@ public final class ProxyAutoConfig {
      * @return semicolon-separated result
      */
     public static String evaluate(final String content, final URL url) {
+        return new ProxyAutoConfig(content).evaluate(url);
+    }
+
+    /**
+     * Evaluates the <tt>FindProxyForURL</tt> method of the PAC content, or reuses its previous result for
+     * the same scheme, host and port.
+     * @param url the URL to be retrieved
+     * @return semicolon-separated result
+     */
+    public synchronized String evaluate(final URL url) {
+        final String key = url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+        final CachedValue cached = results_.get(key);
+        if (cached != null && !cached.isExpired(RESULT_TTL)) {
+            return cached.value_;
+        }
+
         final Context cx = ContextFactory.getGlobal().enterContext();
         try {
-            final ProxyAutoConfig config = new ProxyAutoConfig();
-            final Scriptable scope = cx.initStandardObjects();
-
-            config.defineMethod("isPlainHostName", scope);
-            config.defineMethod("dnsDomainIs", scope);
-            config.defineMethod("localHostOrDomainIs", scope);
-            config.defineMethod("isResolvable", scope);
-            config.defineMethod("isInNet", scope);
-            config.defineMethod("dnsResolve", scope);
-            config.defineMethod("myIpAddress", scope);
-            config.defineMethod("dnsDomainLevels", scope);
-            config.defineMethod("shExpMatch", scope);
-            config.defineMethod("weekdayRange", scope);
-            config.defineMethod("dateRange", scope);
-            config.defineMethod("timeRange", scope);
-
-            cx.evaluateString(scope, "var ProxyConfig = function() {}; ProxyConfig.bindings = {}", "<init>", 1, null);
-            cx.evaluateString(scope, content, "<Proxy Auto-Config>", 1, null);
-            final Object functionArgs[] = {url.toExternalForm(), url.getHost()};
-            final Object fObj = scope.get("FindProxyForURL", scope);
-
-            final NativeFunction f = (NativeFunction) fObj;
-            final Object result = f.call(cx, scope, scope, functionArgs);
-            return Context.toString(result);
+            final Object[] functionArgs = {url.toExternalForm(), url.getHost()};
+            final Object result = findProxyForURL_.call(cx, scope_, scope_, functionArgs);
+            final String value = Context.toString(result);
+            results_.put(key, new CachedValue(value));
+            return value;
         }
         finally {
             Context.exit();
         }
     }
 
-    private void defineMethod(final String methodName, final Scriptable scope) {
-        for (Method method : getClass().getMethods()) {
+    private static void defineMethod(final String methodName, final ScriptableObject scope) {
+        for (Method method : ProxyAutoConfig.class.getMethods()) {
             if (method.getName().equals(methodName)) {
                 final FunctionObject functionObject = new FunctionObject(methodName, method, scope);
-                ((ScriptableObject) scope).defineProperty(methodName, functionObject, ScriptableObject.EMPTY);
+                scope.defineProperty(methodName, functionObject, ScriptableObject.EMPTY);
             }
         }
     }
@@ -152,16 +228,28 @@ public final class ProxyAutoConfig {
 
     /**
      * Resolves the given DNS hostname into an IP address, and returns it in the dot separated format as a string.
+     * The result is reused during {@link #DNS_TTL} milliseconds.
      * @param host the hostname to resolve
      * @return the resolved IP address
      */
     public static String dnsResolve(final String host) {
+        synchronized (DNS_CACHE) {
+            final CachedValue cached = DNS_CACHE.get(host);
+            if (cached != null && !cached.isExpired(DNS_TTL)) {
+                return cached.value_;
+            }
+        }
+        String address;
         try {
-            return InetAddress.getByName(host).getHostAddress();
+            address = InetAddress.getByName(host).getHostAddress();
         }
         catch (final Exception e) {
-            return null;
+            address = null;
+        }
+        synchronized (DNS_CACHE) {
+            DNS_CACHE.put(host, new CachedValue(address));
         }
+        return address;
     }
 
     /**
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import net.sourceforge.htmlunit.corejs.javascript.BaseFunction;
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Function;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
+
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManagerImpl;
+
+/**
+ * Replacement for the standard <tt>Date</tt> constructor, used when the jobs of a window are executed
+ * on virtual time: the current date is the one of the job manager's clock, not the system one.
+ *
+ * @version $Revision$
+ * @author HtmlUnit team
+ * @see JavaScriptJobManagerImpl#setVirtualTime(boolean)
+ */
+final class VirtualTimeDateConstructor extends BaseFunction {
+
+    private static final long serialVersionUID = -1806311981519543306L;
+
+    private final Function date_;
+    private final JavaScriptJobManagerImpl jobManager_;
+
+    /**
+     * Creates a new instance.
+     * @param date the standard <tt>Date</tt> constructor
+     * @param jobManager the job manager whose clock is used
+     */
+    private VirtualTimeDateConstructor(final Function date, final JavaScriptJobManagerImpl jobManager) {
+        date_ = date;
+        jobManager_ = jobManager;
+    }
+
+    /**
+     * Replaces the <tt>Date</tt> constructor of the specified scope.
+     * @param scope the top level scope
+     * @param jobManager the job manager whose clock is used
+     */
+    static void install(final ScriptableObject scope, final JavaScriptJobManagerImpl jobManager) {
+        final Function date = (Function) ScriptableObject.getProperty(scope, "Date");
+        final VirtualTimeDateConstructor constructor = new VirtualTimeDateConstructor(date, jobManager);
+        constructor.setParentScope(scope);
+        constructor.setPrototype(date.getPrototype());
+        ScriptableObject.putProperty(constructor, "prototype", ScriptableObject.getProperty(date, "prototype"));
+        for (final String name : new String[] {"parse", "UTC"}) {
+            constructor.defineProperty(name, ScriptableObject.getProperty(date, name), ScriptableObject.DONTENUM);
+        }
+        if (ScriptableObject.hasProperty(date, "now")) {
+            final BaseFunction now = new BaseFunction() {
+                private static final long serialVersionUID = 5396384935658718604L;
+
+                @Override
+                public Object call(final Context cx, final Scriptable scope,
+                        final Scriptable thisObj, final Object[] args) {
+                    return Double.valueOf(jobManager.getCurrentTime());
+                }
+            };
+            now.setPrototype(date.getPrototype());
+            now.setParentScope(scope);
+            constructor.defineProperty("now", now, ScriptableObject.DONTENUM);
+        }
+        scope.defineProperty("Date", constructor, ScriptableObject.DONTENUM);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Scriptable construct(final Context cx, final Scriptable scope, final Object[] args) {
+        if (args.length == 0) {
+            return date_.construct(cx, scope, new Object[] {Double.valueOf(jobManager_.getCurrentTime())});
+        }
+        return date_.construct(cx, scope, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object call(final Context cx, final Scriptable scope, final Scriptable thisObj, final Object[] args) {
+        // Date() called as a function ignores its arguments and returns the current date as a string
+        return Context.toString(construct(cx, scope, new Object[0]));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFunctionName() {
+        return "Date";
+    }
+}
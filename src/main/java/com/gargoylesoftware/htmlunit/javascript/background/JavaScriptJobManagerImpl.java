@@ -15,23 +15,15 @@
 package com.gargoylesoftware.htmlunit.javascript.background;
 
 import static java.lang.Thread.currentThread;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
@@ -47,6 +39,16 @@ import com.gargoylesoftware.htmlunit.WebWindow;
  *
  * <p>This job manager is serializable, but any running jobs are transient and are not serialized.</p>
  *
+ * <p>The jobs are executed by the threads of a {@link JavaScriptJobScheduler}, which is shared with the
+ * job managers of the other windows; the jobs of a given window are nevertheless executed one at a time,
+ * in the order in which they become due.</p>
+ *
+ * <p>Optionally, the jobs can be executed on virtual time (see {@link #setVirtualTime(boolean)}): they are then
+ * only executed by the threads waiting for them, without actually waiting for their delays to elapse.</p>
+ *
+ * <p>The jobs can also be suspended (see {@link #suspend()}) while the page which created them is kept
+ * in the page cache of the window's navigation history.</p>
+ *
  * @version $Revision: 4756 $
  * @author Daniel Gredler
  * @see MemoryLeakTest
@@ -59,109 +61,152 @@ public class JavaScriptJobManagerImpl implements JavaScriptJobManager {
     /** The window to which this job manager belongs (weakly referenced, so as not to leak memory). */
     private transient WeakReference<WebWindow> window_;
 
-    /** Single-threaded scheduled executor which executes the {@link JavaScriptJob}s behind the scenes. */
-    private transient ScheduledThreadPoolExecutor executor_;
+    /** The scheduler which executes the {@link JavaScriptJob}s behind the scenes. */
+    private transient JavaScriptJobScheduler scheduler_;
 
-    /** The job IDs and their corresponding {@link Future}s, which can be used to cancel the associated jobs. */
-    private transient Map<Integer, ScheduledFuture< ? >> futures_;
+    /** The job IDs and their corresponding scheduled jobs, which can be used to cancel the associated jobs. */
+    private transient Map<Integer, ScheduledJob> jobs_;
 
-    /** The job(s) which are currently running. */
-    private transient List<JavaScriptJob> currentlyRunningJobs_;
+    /** The jobs which are due, in the order in which they have to be executed. */
+    private transient LinkedList<ScheduledJob> readyJobs_;
 
-    /** A counter used to generate the IDs assigned to {@link JavaScriptJob}s. */
-    private static final AtomicInteger NEXT_JOB_ID = new AtomicInteger(1);
+    /** The job which is currently running, if any. */
+    private transient ScheduledJob runningJob_;
+
+    /** The thread executing {@link #runningJob_}, if any. */
+    private transient Thread runningThread_;
+
+    /**
+     * Whether or not {@link #runningThread_} is a thread of the scheduler. On virtual time, jobs run
+     * on the caller's thread, which must never be interrupted.
+     */
+    private transient boolean runningOnScheduler_;
+
+    /** Whether or not a {@link JobRunner} has been handed to the scheduler and has not finished yet. */
+    private transient boolean runnerScheduled_;
+
+    /** Whether or not this job manager has been shut down. */
+    private transient boolean shutdown_;
 
-    /** A counter used to generate the IDs assigned to threads. */
-    private static final AtomicInteger NEXT_THREAD_ID = new AtomicInteger(1);
+    /** The number of jobs executed so far (each execution of a periodic job counts). */
+    private transient long executedJobCount_;
 
-    /** Priority to use for background threads (bigger than the current thread's so that JS jobs execute ASAP). */
-    private static final int PRIORITY = Math.min(Thread.MAX_PRIORITY, currentThread().getPriority() + 1);
+    /** The number of job executions which ended with an exception. */
+    private transient long failedJobCount_;
+
+    /** The total time spent executing jobs, in milliseconds. */
+    private transient long jobExecutionTime_;
+
+    /** Whether or not the jobs are executed on virtual time. */
+    private transient boolean virtualTime_;
+
+    /** The current virtual time, in milliseconds. */
+    private transient long virtualCurrentTime_;
+
+    /** A counter used to order the jobs due at the same time, as the scheduler would. */
+    private transient long nextSequenceNumber_;
+
+    /** Whether or not the jobs are suspended; see {@link #suspend()}. */
+    private transient boolean suspended_;
+
+    /** The system time at which the jobs have been suspended, in milliseconds. */
+    private transient long suspensionTime_;
+
+    /** A counter used to generate the IDs assigned to {@link JavaScriptJob}s. */
+    private static final AtomicInteger NEXT_JOB_ID = new AtomicInteger(1);
 
     /** Logging support. */
     private static final Log LOG = LogFactory.getLog(JavaScriptJobManagerImpl.class);
 
     /**
-     * Helper to track the job being executed.
+     * A job along with the time of its next execution. Handed to the timer of the scheduler,
+     * which notifies us when the job is due.
      */
-    class ExecutingJobTracker implements Runnable {
+    private final class ScheduledJob implements Runnable {
         private final JavaScriptJob job_;
-        ExecutingJobTracker(final JavaScriptJob job) {
+        private long nextExecutionTime_;
+        private long sequenceNumber_;
+        private ScheduledFuture< ? > timer_;
+        ScheduledJob(final JavaScriptJob job, final long nextExecutionTime) {
             job_ = job;
+            nextExecutionTime_ = nextExecutionTime;
         }
         public void run() {
-            LOG.debug("Running job " + job_);
-            synchronized (currentlyRunningJobs_) {
-                currentlyRunningJobs_.add(job_);
-                currentlyRunningJobs_.notifyAll();
+            jobDue(this);
+        }
+    }
+
+    /**
+     * Executes the next due job on a thread of the scheduler, and hands itself back to the scheduler
+     * if other jobs are due: this way, windows with many due jobs do not starve the other windows.
+     */
+    private final class JobRunner implements Runnable {
+        public void run() {
+            final ScheduledJob scheduledJob;
+            synchronized (JavaScriptJobManagerImpl.this) {
+                scheduledJob = readyJobs_.poll();
+                if (scheduledJob == null) {
+                    runnerScheduled_ = false;
+                    JavaScriptJobManagerImpl.this.notifyAll();
+                    return;
+                }
+                runningJob_ = scheduledJob;
+                runningThread_ = currentThread();
+                runningOnScheduler_ = true;
             }
             try {
-                job_.run();
+                execute(scheduledJob);
             }
             finally {
-                synchronized (currentlyRunningJobs_) {
-                    currentlyRunningJobs_.remove(job_);
-                    currentlyRunningJobs_.notifyAll();
+                synchronized (JavaScriptJobManagerImpl.this) {
+                    if (readyJobs_.isEmpty()) {
+                        runnerScheduled_ = false;
+                    }
+                    else {
+                        scheduler_.execute(this);
+                    }
+                    JavaScriptJobManagerImpl.this.notifyAll();
                 }
             }
         }
     }
 
     /**
-     * Creates a new instance.
+     * Creates a new instance, using the default {@link JavaScriptJobScheduler}.
      * @param window the window associated with the new job manager
      */
     public JavaScriptJobManagerImpl(final WebWindow window) {
-        init(window);
+        this(window, JavaScriptJobScheduler.getDefault());
+    }
+
+    /**
+     * Creates a new instance.
+     * @param window the window associated with the new job manager
+     * @param scheduler the scheduler which executes the jobs
+     */
+    public JavaScriptJobManagerImpl(final WebWindow window, final JavaScriptJobScheduler scheduler) {
+        init(window, scheduler);
     }
 
     /**
      * Initializes this job manager, using the specified window.
      * @param window the window associated with this job manager
+     * @param scheduler the scheduler which executes the jobs
      */
-    private void init(final WebWindow window) {
+    private void init(final WebWindow window, final JavaScriptJobScheduler scheduler) {
         window_ = new WeakReference<WebWindow>(window);
-        executor_ = new ScheduledThreadPoolExecutor(1);
-        futures_ = new TreeMap<Integer, ScheduledFuture< ? >>();
-        currentlyRunningJobs_ = new ArrayList<JavaScriptJob>();
-        executor_.setThreadFactory(new ThreadFactory() {
-            public Thread newThread(final Runnable r) {
-                // Make sure the thread is a daemon thread so that it doesn't keep the JVM
-                // running unnecessarily; we also bump up the thread's priority so that
-                // JavaScript jobs execute ASAP.
-                final String name = "JavaScript Job Thread " + NEXT_THREAD_ID.getAndIncrement();
-                final Thread t = new Thread(r, name);
-                t.setDaemon(true);
-                t.setPriority(PRIORITY);
-                return t;
-            }
-        });
+        scheduler_ = scheduler;
+        jobs_ = new TreeMap<Integer, ScheduledJob>();
+        readyJobs_ = new LinkedList<ScheduledJob>();
     }
 
     /** {@inheritDoc} */
-    public int getJobCount() {
-        // This method reads the job count a couple of times, to make sure that the count returned
-        // is stable; the underlying ThreadPoolExecutor API only guarantees approximate results, so
-        // we need to do a little bit of extra work to ensure that we return results that are as
-        // reliable as possible.
-        int count1 = Integer.MIN_VALUE;
-        int count2 = Integer.MAX_VALUE;
-        while (count1 != count2) {
-            count1 = getJobCountInner();
-            sleep(10);
-            count2 = getJobCountInner();
+    public synchronized int getJobCount() {
+        int count = jobs_.size();
+        if (runningJob_ != null && !isScheduled(runningJob_)) {
+            count++;
         }
-        return count1;
-    }
-
-    /**
-     * Returns the approximate number of jobs currently executing and waiting to be executed. This
-     * method can only guarantee approximate results, because these are the only guarantees provided
-     * by the {@link ScheduledThreadPoolExecutor} API which this method is built on.
-     * @return the approximate number of jobs currently executing and waiting to be executed
-     */
-    private synchronized int getJobCountInner() {
-        executor_.purge();
-        return (int) (executor_.getTaskCount() - executor_.getCompletedTaskCount());
+        return count;
     }
 
     /** {@inheritDoc} */
@@ -177,66 +222,81 @@ public class JavaScriptJobManagerImpl implements JavaScriptJobManager {
             // Don't let it spawn any more jobs.
             return 0;
         }
+        if (shutdown_) {
+            return 0;
+        }
 
         final int id = NEXT_JOB_ID.getAndIncrement();
         job.setId(id);
 
-        final ExecutingJobTracker jobWrapper = new ExecutingJobTracker(job);
-        final ScheduledFuture< ? > future;
-        if (job.isPeriodic()) {
-            future = executor_.scheduleAtFixedRate(jobWrapper, job.getInitialDelay(), job.getPeriod(), MILLISECONDS);
-        }
-        else {
-            future = executor_.schedule(jobWrapper, job.getInitialDelay(), MILLISECONDS);
-        }
+        final ScheduledJob scheduledJob = new ScheduledJob(job, getCurrentTime() + job.getInitialDelay());
+        jobs_.put(id, scheduledJob);
+        schedule(scheduledJob);
 
-        futures_.put(id, future);
         LOG.debug("Added job: " + job + ".");
         return id;
     }
 
     /** {@inheritDoc} */
     public synchronized void removeJob(final int id) {
-        final ScheduledFuture< ? > future = futures_.remove(id);
-        if (future != null) {
+        final ScheduledJob scheduledJob = jobs_.get(id);
+        if (scheduledJob != null) {
             LOG.debug("Removing job " + id + ".");
-            future.cancel(false);
+            cancel(scheduledJob);
             LOG.debug("Removed job " + id + ".");
+            notifyAll();
         }
     }
 
     /** {@inheritDoc} */
     public synchronized void stopJob(final int id) {
-        final Future< ? > future = futures_.remove(id);
-        if (future != null) {
+        final ScheduledJob scheduledJob = jobs_.get(id);
+        if (scheduledJob != null) {
             LOG.debug("Stopping job " + id + ".");
-            future.cancel(true);
+            cancel(scheduledJob);
+            if (runningJob_ == scheduledJob && runningOnScheduler_) {
+                runningThread_.interrupt();
+            }
             LOG.debug("Stopped job " + id + ".");
+            notifyAll();
         }
     }
 
     /** {@inheritDoc} */
     public synchronized void removeAllJobs() {
         LOG.debug("Removing all jobs.");
-        int count = 0;
-        for (final Future< ? > future : futures_.values()) {
-            future.cancel(false);
-            ++count;
-        }
-        futures_.clear();
-        if (count > 0) {
-            LOG.debug("Removed all jobs (" + count + ").");
+        final int count = jobs_.size();
+        for (final ScheduledJob scheduledJob : jobs_.values()) {
+            cancelTimer(scheduledJob);
         }
+        jobs_.clear();
+        readyJobs_.clear();
+        LOG.debug("Removed all jobs (" + count + ").");
+        notifyAll();
     }
 
     /** {@inheritDoc} */
     public int waitForJobs(final long timeoutMillis) {
         LOG.debug("Waiting for all jobs to finish (will wait max " + timeoutMillis + " millis).");
-        if (timeoutMillis > 0) {
-            final long start = System.currentTimeMillis();
-            final long interval = Math.min(timeoutMillis, 100);
-            while (getJobCount() > 0 && System.currentTimeMillis() - start < timeoutMillis) {
-                sleep(interval);
+        if (!executeJobsOnVirtualTime(timeoutMillis, false)) {
+            synchronized (this) {
+                final long end = System.currentTimeMillis() + timeoutMillis;
+                long remaining = timeoutMillis;
+                while (remaining > 0 && getJobCount() > 0) {
+                    if (suspended_) {
+                        // The jobs won't run anymore: the page is kept in the page cache.
+                        break;
+                    }
+                    try {
+                        wait(remaining);
+                    }
+                    catch (final InterruptedException e) {
+                        // Stop waiting, but keep the interrupted status for our caller.
+                        currentThread().interrupt();
+                        break;
+                    }
+                    remaining = end - System.currentTimeMillis();
+                }
             }
         }
         final int jobs = getJobCount();
@@ -247,21 +307,28 @@ public class JavaScriptJobManagerImpl implements JavaScriptJobManager {
     /** {@inheritDoc} */
     public int waitForJobsStartingBefore(final long delayMillis) {
         LOG.debug("Waiting for all jobs to finish that start within " + delayMillis + " millis.");
-        final long maxStartTime = System.currentTimeMillis() + delayMillis;
-        try {
-            ScheduledFuture< ? > lastJobWithinDelay = getLastJobStartingBefore(maxStartTime);
-            if (lastJobWithinDelay == null) {
-                waitForCurrentlyRunningJobs();
-                lastJobWithinDelay = getLastJobStartingBefore(maxStartTime);
-            }
-            while (lastJobWithinDelay != null) {
-                waitForCompletion(lastJobWithinDelay);
-                waitForCurrentlyRunningJobs();
-                lastJobWithinDelay = getLastJobStartingBefore(maxStartTime);
+        if (!executeJobsOnVirtualTime(delayMillis, false)) {
+            final long maxStartTime = System.currentTimeMillis() + delayMillis;
+            synchronized (this) {
+                try {
+                    // Every job starting before maxStartTime either is running or will run, and we are
+                    // notified each time a job finishes or is removed, and when the jobs are suspended
+                    // or switched to virtual time.
+                    while (runningJob_ != null || hasJobStartingBefore(maxStartTime)) {
+                        if (runningJob_ == null && (suspended_ || virtualTime_)) {
+                            // The jobs won't run in the background anymore.
+                            break;
+                        }
+                        wait();
+                    }
+                }
+                catch (final InterruptedException e) {
+                    currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
             }
-        }
-        catch (final InterruptedException e) {
-            throw new RuntimeException(e);
+            // If the jobs have been switched to virtual time in the meantime, execute the remaining ones here.
+            executeJobsOnVirtualTime(Math.max(0, maxStartTime - System.currentTimeMillis()), false);
         }
         final int jobs = getJobCount();
         LOG.debug("Finished waiting for all jobs to finish (final job count is " + jobs + ").");
@@ -269,97 +336,382 @@ public class JavaScriptJobManagerImpl implements JavaScriptJobManager {
     }
 
     /**
-     * Waits until currently running jobs (if any) are finished.
+     * Returns whether or not some job is scheduled to start before <tt>maxStartTime</tt>.
+     * @param maxStartTime the maximum start time to look for
+     * @return whether or not some job is scheduled to start before <tt>maxStartTime</tt>
      */
-    private void waitForCurrentlyRunningJobs() throws InterruptedException {
-        synchronized (currentlyRunningJobs_) {
-            while (!currentlyRunningJobs_.isEmpty()) {
-                final JavaScriptJob job = currentlyRunningJobs_.get(0);
-                while (currentlyRunningJobs_.contains(job)) {
-                    currentlyRunningJobs_.wait();
-                }
+    private boolean hasJobStartingBefore(final long maxStartTime) {
+        for (final ScheduledJob scheduledJob : jobs_.values()) {
+            if (scheduledJob.nextExecutionTime_ <= maxStartTime) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void shutdown() {
+        removeAllJobs();
+        shutdown_ = true;
+        if (runningThread_ != null) {
+            LOG.debug("Job still running after shutdown: " + runningJob_.job_);
+            if (runningOnScheduler_) {
+                runningThread_.interrupt();
             }
         }
     }
 
     /**
-     * Returns the last job starting before <tt>maxStartTime</tt>.
-     * @param maxStartTime the maximum start time to look for
-     * @return the last job starting before <tt>maxStartTime</tt>
+     * Returns the number of jobs executed so far by this job manager; each execution of a periodic job counts.
+     * @return the number of jobs executed so far by this job manager
+     */
+    public synchronized long getExecutedJobCount() {
+        return executedJobCount_;
+    }
+
+    /**
+     * Returns the number of job executions which ended with an exception.
+     * @return the number of job executions which ended with an exception
      */
-    private synchronized ScheduledFuture< ? > getLastJobStartingBefore(final long maxStartTime) {
-        long currentDelay = Long.MIN_VALUE;
-        ScheduledFuture< ? > job = null;
-        final long maxAllowedDelay = maxStartTime - System.currentTimeMillis();
-        for (final ScheduledFuture< ? > future : futures_.values()) {
-            final long delay = future.getDelay(TimeUnit.MILLISECONDS);
-            if (!future.isDone() && delay > currentDelay && (delay < maxAllowedDelay || delay <= 0)) {
-                currentDelay = delay;
-                job = future;
+    public synchronized long getFailedJobCount() {
+        return failedJobCount_;
+    }
+
+    /**
+     * Returns the total time spent executing the jobs of this job manager.
+     * @return the total time spent executing the jobs of this job manager, in milliseconds
+     */
+    public synchronized long getJobExecutionTime() {
+        return jobExecutionTime_;
+    }
+
+    /**
+     * Returns whether or not the jobs are executed on virtual time.
+     * @return whether or not the jobs are executed on virtual time
+     * @see #setVirtualTime(boolean)
+     */
+    public synchronized boolean isVirtualTime() {
+        return virtualTime_;
+    }
+
+    /**
+     * <p>Sets whether or not the jobs are executed on virtual time.</p>
+     *
+     * <p>On virtual time, the jobs are not executed in the background anymore: they are executed in order by the
+     * threads calling {@link #waitForJobs(long)}, {@link #waitForJobsStartingBefore(long)} or
+     * {@link #advanceTime(long)}, which return as soon as the jobs are done, no matter their delays. The clock
+     * of this job manager ({@link #getCurrentTime()}) starts at the current system time, and is set to the
+     * scheduled time of each job before its execution.</p>
+     *
+     * <p>Pages loaded while this job manager is on virtual time get a <tt>Date</tt> constructor using
+     * this clock.</p>
+     *
+     * @param virtualTime whether or not the jobs should be executed on virtual time
+     */
+    public synchronized void setVirtualTime(final boolean virtualTime) {
+        if (virtualTime == virtualTime_) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if (virtualTime) {
+            virtualCurrentTime_ = now;
+        }
+        else {
+            // Keep the remaining delays of the jobs
+            for (final ScheduledJob scheduledJob : jobs_.values()) {
+                scheduledJob.nextExecutionTime_ += now - virtualCurrentTime_;
             }
         }
-        LOG.debug("Last job starting before " + maxStartTime + ": " + job + ".");
-        return job;
+        virtualTime_ = virtualTime;
+        rescheduleAll();
     }
 
     /**
-     * Blocks until the specified job finishes running.
-     * @param job the job that will be executed
-     * @return <tt>true</tt> if the job finished running normally
+     * Returns whether or not the jobs are suspended.
+     * @return whether or not the jobs are suspended
+     * @see #suspend()
      */
-    private boolean waitForCompletion(final ScheduledFuture< ? > job) {
-        try {
-            LOG.debug("Waiting for completion of job: " + job + ".");
-            job.get();
-            LOG.debug("Job done: " + job.isDone() + ".");
+    public synchronized boolean isSuspended() {
+        return suspended_;
+    }
+
+    /**
+     * Suspends the jobs: they are not executed anymore, and their remaining delays are frozen, until
+     * {@link #resume()} is called. A job which is running when this method is called is not interrupted.
+     */
+    public synchronized void suspend() {
+        if (suspended_) {
+            return;
+        }
+        LOG.debug("Suspending jobs.");
+        suspended_ = true;
+        suspensionTime_ = System.currentTimeMillis();
+        rescheduleAll();
+        // Wake up the threads waiting for the jobs, which won't run until the jobs are resumed
+        notifyAll();
+    }
+
+    /**
+     * Resumes the jobs suspended by {@link #suspend()}, keeping their remaining delays.
+     */
+    public synchronized void resume() {
+        if (!suspended_) {
+            return;
+        }
+        LOG.debug("Resuming jobs.");
+        suspended_ = false;
+        if (!virtualTime_) {
+            // The virtual clock doesn't move while the jobs are suspended, but the system one does
+            final long suspensionDuration = System.currentTimeMillis() - suspensionTime_;
+            for (final ScheduledJob scheduledJob : jobs_.values()) {
+                scheduledJob.nextExecutionTime_ += suspensionDuration;
+            }
         }
-        catch (final CancellationException e) {
-            LOG.debug("Job cancelled: " + job + ".");
-            return false;
+        rescheduleAll();
+    }
+
+    /**
+     * Cancels the timers of all the jobs, and schedules them again according to the current mode.
+     */
+    private void rescheduleAll() {
+        readyJobs_.clear();
+        for (final ScheduledJob scheduledJob : jobs_.values()) {
+            cancelTimer(scheduledJob);
+            // The running job is rescheduled, if needed, once it is done
+            if (scheduledJob != runningJob_) {
+                schedule(scheduledJob);
+            }
         }
-        catch (final InterruptedException e) {
-            LOG.debug(e.getMessage(), e);
-            return false;
+        notifyAll();
+    }
+
+    /**
+     * Returns the current time according to this job manager: the virtual time if the jobs are executed
+     * on virtual time, the system time otherwise.
+     * @return the current time according to this job manager, in milliseconds
+     */
+    public synchronized long getCurrentTime() {
+        if (virtualTime_) {
+            return virtualCurrentTime_;
         }
-        catch (final ExecutionException e) {
-            LOG.debug(e.getMessage(), e);
-            return false;
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Advances the virtual time by the specified amount, executing in order the jobs which become due.
+     * @param millis the amount of time to advance, in milliseconds
+     * @return the number of jobs still waiting to be executed
+     * @throws IllegalStateException if the jobs are not executed on virtual time
+     */
+    public int advanceTime(final long millis) {
+        if (!executeJobsOnVirtualTime(millis, true)) {
+            throw new IllegalStateException("Jobs are not executed on virtual time");
+        }
+        return getJobCount();
+    }
+
+    /**
+     * If the jobs are executed on virtual time, executes on the current thread, in order, the jobs due within
+     * the specified delay. Jobs are not executed while another thread, or the current one, is already executing
+     * a job of this job manager.
+     * @param millis the delay, in milliseconds
+     * @param advanceClock whether or not the clock has to be advanced by the full delay, rather than
+     *        being left at the time of the last executed job
+     * @return <tt>false</tt> if the jobs are not executed on virtual time
+     */
+    private boolean executeJobsOnVirtualTime(final long millis, final boolean advanceClock) {
+        final long maxTime;
+        ScheduledJob next;
+        synchronized (this) {
+            if (!virtualTime_) {
+                return false;
+            }
+            if (millis > Long.MAX_VALUE - virtualCurrentTime_) {
+                maxTime = Long.MAX_VALUE;
+            }
+            else {
+                maxTime = virtualCurrentTime_ + millis;
+            }
+            next = startNextJob(maxTime);
+        }
+        while (next != null) {
+            execute(next);
+            synchronized (this) {
+                next = startNextJob(maxTime);
+            }
+        }
+        synchronized (this) {
+            if (advanceClock && virtualTime_ && runningJob_ == null) {
+                virtualCurrentTime_ = Math.max(virtualCurrentTime_, maxTime);
+            }
         }
         return true;
     }
 
-    /** {@inheritDoc} */
-    public synchronized void shutdown() {
-        executor_.purge();
-        final List<Runnable> jobsStillRunning = executor_.shutdownNow();
-        futures_.clear();
-        if (jobsStillRunning.size() > 0) {
-            LOG.debug("Jobs still running after shutdown: " + jobsStillRunning.size());
+    /**
+     * On virtual time, marks the first job due at or before the specified time as running, and sets the clock
+     * to its scheduled time.
+     * @param maxTime the maximum time
+     * @return the job to execute, or <tt>null</tt> if there is none
+     */
+    private ScheduledJob startNextJob(final long maxTime) {
+        if (!virtualTime_ || suspended_ || runningJob_ != null) {
+            return null;
+        }
+        final ScheduledJob next = getNextJob(maxTime);
+        if (next != null) {
+            virtualCurrentTime_ = Math.max(virtualCurrentTime_, next.nextExecutionTime_);
+            runningJob_ = next;
+            runningThread_ = currentThread();
+            runningOnScheduler_ = false;
         }
+        return next;
     }
 
     /**
-     * Returns the window to which this job manager belongs, or <tt>null</tt> if it has been garbage collected.
-     * @return the window to which this job manager belongs, or <tt>null</tt> if it has been garbage collected
+     * Returns the first job due at or before the specified time, or <tt>null</tt> if there is none.
+     * @param maxTime the maximum time
+     * @return the first job due at or before the specified time, or <tt>null</tt> if there is none
      */
-    private WebWindow getWindow() {
-        return window_.get();
+    private ScheduledJob getNextJob(final long maxTime) {
+        ScheduledJob next = null;
+        for (final ScheduledJob scheduledJob : jobs_.values()) {
+            if (scheduledJob.nextExecutionTime_ <= maxTime
+                && (next == null || scheduledJob.nextExecutionTime_ < next.nextExecutionTime_
+                    || (scheduledJob.nextExecutionTime_ == next.nextExecutionTime_
+                        && scheduledJob.sequenceNumber_ < next.sequenceNumber_))) {
+                next = scheduledJob;
+            }
+        }
+        return next;
     }
 
     /**
-     * Does a best effort attempt at sleeping the specified number of milliseconds. This method may
-     * return early if the current thread is interrupted while it is sleeping.
-     * @param millis the number of milliseconds to try to sleep
+     * Executes the specified job on the current thread, and updates the job bookkeeping once it is done.
+     * The job must already have been marked as running.
+     * @param scheduledJob the job to execute
      */
-    private void sleep(final long millis) {
+    private void execute(final ScheduledJob scheduledJob) {
+        final JavaScriptJob job = scheduledJob.job_;
+        LOG.debug("Running job " + job);
+        final long start = System.currentTimeMillis();
+        boolean failed = true;
         try {
-            Thread.sleep(millis);
+            job.run();
+            failed = false;
+        }
+        catch (final RuntimeException e) {
+            LOG.error("Job " + job + " failed.", e);
         }
-        catch (final InterruptedException e) {
-            // Ignore; we did our best.
+        finally {
+            synchronized (this) {
+                runningJob_ = null;
+                runningThread_ = null;
+                if (runningOnScheduler_) {
+                    // Don't let a stopJob() call interrupt whatever this thread does next.
+                    Thread.interrupted();
+                }
+                executedJobCount_++;
+                if (failed) {
+                    failedJobCount_++;
+                }
+                jobExecutionTime_ += System.currentTimeMillis() - start;
+                jobExecuted(scheduledJob, failed);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Called by the timer of the scheduler when the specified job is due: queues it and makes sure that
+     * a {@link JobRunner} will execute it.
+     * @param scheduledJob the job which is due
+     */
+    private synchronized void jobDue(final ScheduledJob scheduledJob) {
+        if (!isScheduled(scheduledJob) || virtualTime_ || suspended_) {
+            // The job has been removed, switched to virtual time or suspended in the meantime.
+            return;
+        }
+        readyJobs_.add(scheduledJob);
+        if (!runnerScheduled_) {
+            runnerScheduled_ = true;
+            scheduler_.execute(new JobRunner());
+        }
+    }
+
+    /**
+     * Called once the specified job has been executed: schedules its next execution if it is periodic,
+     * and forgets about it otherwise. Like {@link java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate},
+     * a periodic job which fails is not executed anymore.
+     * @param scheduledJob the job which has been executed
+     * @param failed whether or not the job ended with an exception
+     */
+    private void jobExecuted(final ScheduledJob scheduledJob, final boolean failed) {
+        if (!isScheduled(scheduledJob)) {
+            return;
+        }
+        final JavaScriptJob job = scheduledJob.job_;
+        if (job.isPeriodic() && !failed) {
+            scheduledJob.nextExecutionTime_ += Math.max(1, job.getPeriod());
+            schedule(scheduledJob);
+        }
+        else {
+            jobs_.remove(job.getId());
         }
     }
 
+    /**
+     * Removes the specified job, which will not be executed anymore (it may however be running).
+     * @param scheduledJob the job to remove
+     */
+    private void cancel(final ScheduledJob scheduledJob) {
+        jobs_.remove(scheduledJob.job_.getId());
+        cancelTimer(scheduledJob);
+        readyJobs_.remove(scheduledJob);
+    }
+
+    /**
+     * Schedules the next execution of the specified job, at its <tt>nextExecutionTime_</tt>. On virtual time,
+     * the job will be found by {@link #getNextJob(long)}; otherwise, the timer of the scheduler notifies us
+     * when it is due. Suspended jobs are scheduled again by {@link #resume()}.
+     * @param scheduledJob the job to schedule
+     */
+    private void schedule(final ScheduledJob scheduledJob) {
+        scheduledJob.sequenceNumber_ = nextSequenceNumber_++;
+        if (!virtualTime_ && !suspended_) {
+            final long delay = Math.max(0, scheduledJob.nextExecutionTime_ - System.currentTimeMillis());
+            scheduledJob.timer_ = scheduler_.schedule(scheduledJob, delay);
+        }
+    }
+
+    /**
+     * Cancels the timer notifying us when the specified job is due, if any.
+     * @param scheduledJob the job
+     */
+    private void cancelTimer(final ScheduledJob scheduledJob) {
+        if (scheduledJob.timer_ != null) {
+            scheduler_.cancel(scheduledJob.timer_);
+            scheduledJob.timer_ = null;
+        }
+    }
+
+    /**
+     * Returns whether or not the specified job is still known by this job manager.
+     * @param scheduledJob the job to check
+     * @return whether or not the specified job is still known by this job manager
+     */
+    private boolean isScheduled(final ScheduledJob scheduledJob) {
+        return jobs_.get(scheduledJob.job_.getId()) == scheduledJob;
+    }
+
+    /**
+     * Returns the window to which this job manager belongs, or <tt>null</tt> if it has been garbage collected.
+     * @return the window to which this job manager belongs, or <tt>null</tt> if it has been garbage collected
+     */
+    private WebWindow getWindow() {
+        return window_.get();
+    }
+
     /**
      * The only thing we want to keep when we serialize is the reference to the window.
      */
@@ -372,7 +724,7 @@ public class JavaScriptJobManagerImpl implements JavaScriptJobManager {
      */
     private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
         final WebWindow window = (WebWindow) in.readObject();
-        init(window);
+        init(window, JavaScriptJobScheduler.getDefault());
     }
 
 }
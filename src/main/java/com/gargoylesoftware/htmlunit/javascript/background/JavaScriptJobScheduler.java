@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Timer and worker threads shared by {@link JavaScriptJobManagerImpl} instances.</p>
+ *
+ * <p>A single timer thread keeps track of the delays of the jobs of all the job managers using this
+ * scheduler; when a job is due, it is handed to its job manager, which executes it on one of a bounded
+ * number of worker threads. The job managers take care of running the jobs of a window one at a time,
+ * so the number of threads used does not depend on the number of windows.</p>
+ *
+ * <p>By default, all job managers use the instance returned by {@link #getDefault()}.</p>
+ *
+ * @version $Revision$
+ * @author HtmlUnit team
+ */
+public class JavaScriptJobScheduler {
+
+    /** A counter used to generate the IDs assigned to threads. */
+    private static final AtomicInteger NEXT_THREAD_ID = new AtomicInteger(1);
+
+    /** Priority to use for background threads (bigger than the current thread's so that JS jobs execute ASAP). */
+    private static final int PRIORITY = Math.min(Thread.MAX_PRIORITY, currentThread().getPriority() + 1);
+
+    /** The default number of worker threads. */
+    private static final int DEFAULT_WORKER_COUNT = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    /** The minimum number of cancelled tasks removed at once from the timer queue. */
+    private static final int MIN_PURGE_COUNT = 64;
+
+    /** The scheduler used by new job managers. */
+    private static JavaScriptJobScheduler DefaultScheduler_;
+
+    /** The thread which waits for the jobs to be due. */
+    private final ScheduledThreadPoolExecutor timer_;
+
+    /** The number of tasks cancelled since the timer queue was last purged. */
+    private final AtomicInteger cancelledCount_ = new AtomicInteger();
+
+    /** The threads which execute the jobs. */
+    private final ThreadPoolExecutor workers_;
+
+    /**
+     * Creates a new scheduler using a default number of worker threads.
+     */
+    public JavaScriptJobScheduler() {
+        this(DEFAULT_WORKER_COUNT);
+    }
+
+    /**
+     * Creates a new scheduler.
+     * @param workerCount the maximum number of jobs (of different windows) which may run at the same time
+     */
+    public JavaScriptJobScheduler(final int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+        }
+        timer_ = new ScheduledThreadPoolExecutor(1, new JobThreadFactory("JavaScript Job Timer "));
+        workers_ = new ThreadPoolExecutor(workerCount, workerCount, 0, MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new JobThreadFactory("JavaScript Job Thread "));
+    }
+
+    /**
+     * Returns the scheduler used by job managers which have not been given a specific one.
+     * @return the scheduler used by job managers which have not been given a specific one
+     */
+    public static synchronized JavaScriptJobScheduler getDefault() {
+        if (DefaultScheduler_ == null) {
+            DefaultScheduler_ = new JavaScriptJobScheduler();
+        }
+        return DefaultScheduler_;
+    }
+
+    /**
+     * Sets the scheduler used by job managers created from now on which have not been given a specific one.
+     * @param scheduler the new default scheduler
+     */
+    public static synchronized void setDefault(final JavaScriptJobScheduler scheduler) {
+        DefaultScheduler_ = scheduler;
+    }
+
+    /**
+     * Returns the maximum number of jobs which may run at the same time.
+     * @return the maximum number of jobs which may run at the same time
+     */
+    public int getWorkerCount() {
+        return workers_.getMaximumPoolSize();
+    }
+
+    /**
+     * Runs the specified task on the timer thread once the specified delay has elapsed.
+     * The task is expected to return quickly.
+     * @param task the task to run
+     * @param delayMillis the delay, in milliseconds
+     * @return the future which may be used to cancel the task
+     */
+    public ScheduledFuture< ? > schedule(final Runnable task, final long delayMillis) {
+        return timer_.schedule(task, delayMillis, MILLISECONDS);
+    }
+
+    /**
+     * Runs the specified task on one of the worker threads.
+     * @param task the task to run
+     */
+    public void execute(final Runnable task) {
+        workers_.execute(task);
+    }
+
+    /**
+     * Cancels a task scheduled through {@link #schedule(Runnable, long)}, if it hasn't run yet. The cancelled
+     * tasks are removed from the timer queue in batches, once they make up a good part of it: this way,
+     * they don't keep their job managers in memory until their delays elapse, and cancelling a task
+     * doesn't cost a pass over the whole queue.
+     * @param future the future returned when the task was scheduled
+     */
+    public void cancel(final ScheduledFuture< ? > future) {
+        if (future.cancel(false)) {
+            final int count = cancelledCount_.incrementAndGet();
+            if (count >= MIN_PURGE_COUNT && count >= timer_.getQueue().size() / 2
+                && cancelledCount_.compareAndSet(count, 0)) {
+                timer_.purge();
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads with a raised priority.
+     */
+    private static final class JobThreadFactory implements ThreadFactory {
+        private final String prefix_;
+        JobThreadFactory(final String prefix) {
+            prefix_ = prefix;
+        }
+        public Thread newThread(final Runnable r) {
+            // Make sure the thread is a daemon thread so that it doesn't keep the JVM
+            // running unnecessarily; we also bump up the thread's priority so that
+            // JavaScript jobs execute ASAP.
+            final Thread t = new Thread(r, prefix_ + NEXT_THREAD_ID.getAndIncrement());
+            t.setDaemon(true);
+            t.setPriority(PRIORITY);
+            return t;
+        }
+    }
+}
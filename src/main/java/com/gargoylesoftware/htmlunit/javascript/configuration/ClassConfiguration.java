@@ -36,6 +36,13 @@ public final class ClassConfiguration {
     private static final String SETTER_PREFIX = "jsxSet_";
     private static final String FUNCTION_PREFIX = "jsxFunction_";
 
+    /**
+     * The public methods of the host classes, by class and by name. Shared by the configurations of all the
+     * browser versions, so that the methods of each class are only looked up once.
+     */
+    private static final Map<Class< ? >, Map<String, List<Method>>> METHODS_BY_CLASS =
+        new HashMap<Class< ? >, Map<String, List<Method>>>();
+
     private Map<String, PropertyInfo> propertyMap_ = new HashMap<String, PropertyInfo>();
     private Map<String, FunctionInfo> functionMap_ = new HashMap<String, FunctionInfo>();
     private List<String> constants_ = new ArrayList<String>();
@@ -71,13 +78,7 @@ public final class ClassConfiguration {
         extendedClass_ = extendedClass;
         linkedClass_ = (Class< ? extends SimpleScriptable>) Class.forName(implementingClass);
         if (jsConstructor != null && jsConstructor.length() != 0) {
-            Method foundCtor = null;
-            for (final Method method : linkedClass_.getMethods()) {
-                if (method.getName().equals(jsConstructor)) {
-                    foundCtor = method;
-                    break;
-                }
-            }
+            final Method foundCtor = findMethod(jsConstructor, -1);
             if (foundCtor == null) {
                 throw new IllegalStateException("Constructor method \"" + jsConstructor
                         + "\" in class \"" + implementingClass + " is not found.");
@@ -113,25 +114,17 @@ public final class ClassConfiguration {
         final PropertyInfo info = new PropertyInfo();
         info.setReadable(readable);
         info.setWriteable(writeable);
-        try {
-            if (readable) {
-                info.setReadMethod(linkedClass_.getMethod(GETTER_PREFIX + name, (Class []) null));
+        if (readable) {
+            info.setReadMethod(findMethod(GETTER_PREFIX + name, 0));
+            if (info.getReadMethod() == null) {
+                throw new IllegalStateException("Method '" + GETTER_PREFIX + name + "' was not found for "
+                    + name + " property in " + linkedClass_.getName());
             }
         }
-        catch (final NoSuchMethodException e) {
-            throw new IllegalStateException("Method '" + GETTER_PREFIX + name + "' was not found for "
-                + name + " property in " + linkedClass_.getName());
-        }
-        // For the setters, we have to loop through the methods since we do not know what type of argument
+        // For the setters, we have to look for the methods by name since we do not know what type of argument
         // the method takes.
         if (writeable) {
-            final String setMethodName = SETTER_PREFIX + name;
-            for (final Method method : linkedClass_.getMethods()) {
-                if (method.getName().equals(setMethodName) && method.getParameterTypes().length == 1) {
-                    info.setWriteMethod(method);
-                    break;
-                }
-            }
+            info.setWriteMethod(findMethod(SETTER_PREFIX + name, 1));
             if (info.getWriteMethod() == null) {
                 throw new IllegalStateException("Method '" + SETTER_PREFIX + name + "' was not found for " + name
                     + " property in " + linkedClass_.getName());
@@ -178,13 +171,7 @@ public final class ClassConfiguration {
      */
     public void addFunction(final String name) {
         final FunctionInfo info = new FunctionInfo();
-        final String setMethodName = FUNCTION_PREFIX + name;
-        for (final Method method : linkedClass_.getMethods()) {
-            if (method.getName().equals(setMethodName)) {
-                info.setFunctionMethod(method);
-                break;
-            }
-        }
+        info.setFunctionMethod(findMethod(FUNCTION_PREFIX + name, -1));
         if (info.getFunctionMethod() == null) {
             throw new IllegalStateException("Method '" + FUNCTION_PREFIX + name + "' was not found for " + name
                 + " function in " + linkedClass_.getName());
@@ -192,6 +179,50 @@ public final class ClassConfiguration {
         functionMap_.put(name, info);
     }
 
+    /**
+     * Returns the first public method of the linked class with the specified name and number of parameters.
+     * @param name the name of the method
+     * @param parameterCount the number of parameters of the method, or <tt>-1</tt> for any number
+     * @return the method, or <tt>null</tt> if it does not exist
+     */
+    private Method findMethod(final String name, final int parameterCount) {
+        final List<Method> methods = getMethodsByName(linkedClass_).get(name);
+        if (methods != null) {
+            for (final Method method : methods) {
+                // like Class#getMethod(), ignore the bridge methods generated for covariant return types
+                if (!method.isBridge()
+                    && (parameterCount == -1 || method.getParameterTypes().length == parameterCount)) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the public methods of the specified class, by name, in the order of {@link Class#getMethods()}.
+     * @param clazz the class
+     * @return the public methods of the specified class, by name
+     */
+    private static Map<String, List<Method>> getMethodsByName(final Class< ? > clazz) {
+        synchronized (METHODS_BY_CLASS) {
+            Map<String, List<Method>> methodsByName = METHODS_BY_CLASS.get(clazz);
+            if (methodsByName == null) {
+                methodsByName = new HashMap<String, List<Method>>();
+                for (final Method method : clazz.getMethods()) {
+                    List<Method> methods = methodsByName.get(method.getName());
+                    if (methods == null) {
+                        methods = new ArrayList<Method>(1);
+                        methodsByName.put(method.getName(), methods);
+                    }
+                    methods.add(method);
+                }
+                METHODS_BY_CLASS.put(clazz, methodsByName);
+            }
+            return methodsByName;
+        }
+    }
+
     /**
      * Sets the browser information for this named property.
      * @param propertyName - Name of the property to set
@@ -125,11 +125,18 @@ public final class JavaScriptConfiguration {
 
     private static Map<BrowserVersion, JavaScriptConfiguration> ConfigurationMap_ =
         new HashMap<BrowserVersion, JavaScriptConfiguration>(11);
+
+    /**
+     * Incremented by {@link #resetClassForTesting()}, so that the configurations cached by the
+     * {@link BrowserVersion} instances before are not used anymore.
+     */
+    private static int Generation_;
     private static Map<String, String> ClassnameMap_ = new HashMap<String, String>();
     private static Map<Class < ? extends HtmlElement>, Class < ? extends SimpleScriptable>> HtmlJavaScriptMap_;
 
     private final Map<String, ClassConfiguration> configuration_;
     private final BrowserVersion browser_;
+    private final int generation_;
 
     /**
      * Constructor is only called from {@link #getInstance(BrowserVersion)} which is synchronized.
@@ -137,6 +144,7 @@ public final class JavaScriptConfiguration {
      */
     private JavaScriptConfiguration(final BrowserVersion browser) {
         browser_ = browser;
+        generation_ = Generation_;
         if (XmlDocument_ == null) {
             loadConfiguration();
         }
@@ -164,6 +172,7 @@ public final class JavaScriptConfiguration {
     protected static void resetClassForTesting() {
         XmlDocument_ = null;
         ConfigurationMap_ = new HashMap<BrowserVersion, JavaScriptConfiguration>(11);
+        Generation_++;
     }
 
     /**
@@ -233,11 +242,17 @@ public final class JavaScriptConfiguration {
         if (browserVersion == null) {
             throw new IllegalStateException("BrowserVersion must be defined");
         }
-        JavaScriptConfiguration configuration = ConfigurationMap_.get(browserVersion);
-
-        if (configuration == null) {
-            configuration = new JavaScriptConfiguration(browserVersion);
-            ConfigurationMap_.put(browserVersion, configuration);
+        // BrowserVersion's hashCode() and equals() use reflection, and are too slow for this method,
+        // which is called for each window and from some host objects: the configuration is cached
+        // by the BrowserVersion instance itself, and the map is only used once per instance.
+        JavaScriptConfiguration configuration = browserVersion.getCachedJavaScriptConfiguration();
+        if (configuration == null || configuration.generation_ != Generation_) {
+            configuration = ConfigurationMap_.get(browserVersion);
+            if (configuration == null) {
+                configuration = new JavaScriptConfiguration(browserVersion);
+                ConfigurationMap_.put(browserVersion, configuration);
+            }
+            browserVersion.setCachedJavaScriptConfiguration(configuration);
         }
         return configuration;
     }
@@ -78,6 +78,7 @@ public class EventListenersContainer implements Serializable {
      * @return <code>true</code> if the listener has been added
      */
     public boolean addEventListener(final String type, final Function listener, final boolean useCapture) {
+        addEventHandlerType(type);
         final List<Function> listeners = getHandlersOrCreateIt(type).getHandlers(useCapture);
         if (listeners.contains(listener)) {
             LOG.debug(type + " listener already registered, skipping it (" + listener + ")");
@@ -87,6 +88,31 @@ public class EventListenersContainer implements Serializable {
         return true;
     }
 
+    /**
+     * Records in the page of the node that events of the specified type may now be handled.
+     * @param type the event type
+     * @see HtmlPage#mayHaveEventHandlers(String)
+     */
+    private void addEventHandlerType(final String type) {
+        final DomNode node = jsNode_.getDomNodeOrNull();
+        if (node instanceof HtmlPage) {
+            ((HtmlPage) node).addEventHandlerType(type);
+        }
+        else if (node != null && node.getPage() instanceof HtmlPage) {
+            ((HtmlPage) node.getPage()).addEventHandlerType(type);
+        }
+    }
+
+    /**
+     * Records in the page of the node all the event types for which a handler or a listener is registered,
+     * what is needed when the node has been moved to another page.
+     */
+    void addEventHandlerTypes() {
+        for (final String type : eventHandlers_.keySet()) {
+            addEventHandlerType(type);
+        }
+    }
+
     private Handlers getHandlersOrCreateIt(final String type) {
         Handlers handlers = eventHandlers_.get(type.toLowerCase());
         if (handlers == null) {
@@ -123,6 +149,7 @@ public class EventListenersContainer implements Serializable {
      * @param value the new property
      */
     public void setEventHandlerProp(final String eventName, final Object value) {
+        addEventHandlerType(eventName);
         final Handlers handlers = getHandlersOrCreateIt(eventName);
         handlers.handler_ = value;
     }
@@ -141,6 +168,17 @@ public class EventListenersContainer implements Serializable {
         return handlers.handler_;
     }
 
+    /**
+     * Returns whether or not an event handler or a listener is registered for the specified event.
+     * @param eventName the event name (like "click")
+     * @return whether or not an event handler or a listener is registered for the specified event
+     */
+    public boolean hasEventHandlers(final String eventName) {
+        final Handlers handlers = eventHandlers_.get(eventName.toLowerCase());
+        return handlers != null && (handlers.handler_ instanceof Function
+            || !handlers.capturingHandlers_.isEmpty() || !handlers.bubblingHandlers_.isEmpty());
+    }
+
     private ScriptResult executeEventListeners(final boolean useCapture, final Event event, final Object[] args) {
         final boolean ie = jsNode_.getWindow().getWebWindow().getWebClient().getBrowserVersion().isIE();
         ScriptResult allResult = null;
@@ -277,6 +315,7 @@ public class EventListenersContainer implements Serializable {
         for (final Map.Entry<String, Handlers> entry : eventListenersContainer.eventHandlers_.entrySet()) {
             final Handlers handlers = entry.getValue().clone();
             eventHandlers_.put(entry.getKey(), handlers);
+            addEventHandlerType(entry.getKey());
         }
     }
 
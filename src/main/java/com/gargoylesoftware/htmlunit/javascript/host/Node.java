@@ -479,6 +479,19 @@ public class Node extends SimpleScriptable {
         getEventListenersContainer().addEventListener(type, listener, useCapture);
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Records in the page of the DOM node the types of the events handled by the listeners and the handlers
+     * of this node. Called when the DOM node has been moved to another page.
+     * @see HtmlPage#mayHaveEventHandlers(String)
+     */
+    public void addEventHandlerTypes() {
+        if (eventListenersContainer_ != null) {
+            eventListenersContainer_.addEventHandlerTypes();
+        }
+    }
+
     /**
      * Gets the container for event listeners.
      * @return the container (newly created if needed)
@@ -639,6 +652,18 @@ public class Node extends SimpleScriptable {
         return eventListenersContainer_.getEventHandler(StringUtils.substring(eventName, 2));
     }
 
+    /**
+     * Returns whether or not an event handler or a listener is registered on this node for the specified event.
+     * @param eventName the event name (ex: "onclick")
+     * @return whether or not an event handler or a listener is registered for the specified event
+     */
+    public boolean hasEventHandlers(final String eventName) {
+        if (eventListenersContainer_ == null) {
+            return false;
+        }
+        return eventListenersContainer_.hasEventHandlers(StringUtils.substring(eventName, 2));
+    }
+
     /**
      * Defines an event handler.
      * @param eventName the event name (like "onclick")
@@ -18,8 +18,14 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 
@@ -98,6 +104,16 @@ public class Stylesheet extends SimpleScriptable {
     /** This stylesheet's URI (used to resolved contained @import rules). */
     private String uri_;
 
+    /** The compiled form of the rules of this stylesheet, built when first needed. */
+    private transient RuleIndex ruleIndex_;
+
+    /** Orders matching rules by specificity; the sort is stable, so source order is kept for equal ones. */
+    private static final Comparator<MatchingRule> SPECIFICITY_COMPARATOR = new Comparator<MatchingRule>() {
+        public int compare(final MatchingRule rule1, final MatchingRule rule2) {
+            return rule1.specificity_ - rule2.specificity_;
+        }
+    };
+
     /**
      * Creates a new empty stylesheet.
      */
@@ -153,44 +169,327 @@ public class Stylesheet extends SimpleScriptable {
      *        the specified style
      */
     void modifyIfNecessary(final ComputedCSSStyleDeclaration style, final HTMLElement element) {
+        final List<MatchingRule> matchingRules = new ArrayList<MatchingRule>();
+        collectMatchingRules(element, matchingRules);
+        applyMatchingRules(style, matchingRules);
+    }
+
+    /**
+     * Adds to the specified list, in source order, the style rules of this stylesheet (and of the
+     * stylesheets it imports) which apply to the specified element. Only the rules indexed under the
+     * element's id, classes and tag name, and the rules without any of them, are tested.
+     *
+     * @param element the element to which style rules must apply
+     * @param matchingRules the list to which the matching rules are added
+     */
+    void collectMatchingRules(final HTMLElement element, final List<MatchingRule> matchingRules) {
         final HtmlElement e = element.getDomNodeOrDie();
+        final RuleIndex index = getRuleIndex();
+        if (index == null) {
+            return;
+        }
+
+        final List<RuleEntry> matching = new ArrayList<RuleEntry>();
+        addMatching(index.get('#' + e.getId()), e, matching);
+        final Set<String> classNames = new HashSet<String>();
+        for (final String className : e.getAttribute("class").split("\\s+")) {
+            if (className.length() != 0 && classNames.add(className)) {
+                addMatching(index.get('.' + className), e, matching);
+            }
+        }
+        addMatching(index.get(e.getTagName().toLowerCase()), e, matching);
+        addMatching(index.universal_, e, matching);
+        Collections.sort(matching);
+
+        int i = 0;
+        for (final ImportEntry importEntry : index.imports_) {
+            for ( ; i < matching.size() && matching.get(i).position_ < importEntry.position_; i++) {
+                matchingRules.add(new MatchingRule(matching.get(i)));
+            }
+            Stylesheet sheet = imports_.get(importEntry.rule_);
+            if (sheet == null) {
+                // TODO: surely wrong: in which case is it null and why?
+                final String uri = (uri_ != null) ? uri_
+                    : e.getPage().getWebResponse().getRequestSettings().getUrl().toExternalForm();
+                final String href = importEntry.rule_.getHref();
+                final String url = UrlUtils.resolveUrl(uri, href);
+                sheet = loadStylesheet(getWindow(), ownerNode_, null, url);
+                imports_.put(importEntry.rule_, sheet);
+            }
+            sheet.collectMatchingRules(element, matchingRules);
+        }
+        for ( ; i < matching.size(); i++) {
+            matchingRules.add(new MatchingRule(matching.get(i)));
+        }
+    }
+
+    private void addMatching(final List<RuleEntry> candidates, final HtmlElement element,
+            final List<RuleEntry> matching) {
+        if (candidates != null) {
+            for (final RuleEntry entry : candidates) {
+                if (selects(entry.selector_, element)) {
+                    matching.add(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the specified matching rules (in source order, typically collected from all the stylesheets
+     * of the document by {@link #collectMatchingRules(HTMLElement, List)}) to the specified style:
+     * declarations of rules with a higher specificity win over the ones of rules with a lower specificity,
+     * the last one wins for equal specificities, and <tt>!important</tt> declarations win over normal ones.
+     *
+     * @param style the style to modify
+     * @param matchingRules the matching rules, in source order
+     */
+    static void applyMatchingRules(final ComputedCSSStyleDeclaration style, final List<MatchingRule> matchingRules) {
+        Collections.sort(matchingRules, SPECIFICITY_COMPARATOR);
+        boolean hasImportant = false;
+        for (final MatchingRule rule : matchingRules) {
+            final org.w3c.dom.css.CSSStyleDeclaration dec = rule.rule_.getStyle();
+            for (int k = 0; k < dec.getLength(); k++) {
+                final String name = dec.item(k);
+                if (isImportant(dec, name)) {
+                    hasImportant = true;
+                }
+                else {
+                    style.setLocalStyleAttribute(name, dec.getPropertyValue(name));
+                }
+            }
+        }
+        if (hasImportant) {
+            for (final MatchingRule rule : matchingRules) {
+                final org.w3c.dom.css.CSSStyleDeclaration dec = rule.rule_.getStyle();
+                for (int k = 0; k < dec.getLength(); k++) {
+                    final String name = dec.item(k);
+                    if (isImportant(dec, name)) {
+                        style.setLocalStyleAttribute(name, dec.getPropertyValue(name));
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isImportant(final org.w3c.dom.css.CSSStyleDeclaration dec, final String name) {
+        return "important".equalsIgnoreCase(dec.getPropertyPriority(name));
+    }
+
+    /**
+     * Returns the compiled form of the rules of this stylesheet, building it if needed.
+     * @return the compiled form of the rules, or <tt>null</tt> if this stylesheet has no rules
+     */
+    private RuleIndex getRuleIndex() {
         final CSSRuleList rules = getWrappedSheet().getCssRules();
         if (rules == null) {
-            return;
+            return null;
+        }
+        RuleIndex index = ruleIndex_;
+        if (index == null || index.ruleCount_ != rules.getLength()) {
+            index = new RuleIndex(rules);
+            ruleIndex_ = index;
+        }
+        return index;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     * Discards the compiled form of the rules of this stylesheet; must be called when a rule is modified.
+     */
+    public void clearRuleIndex() {
+        ruleIndex_ = null;
+    }
+
+    /**
+     * Returns the specificity of the specified selector, as <tt>a * 10000 + b * 100 + c</tt>, where
+     * <tt>a</tt> is the number of id conditions, <tt>b</tt> the number of other conditions
+     * and <tt>c</tt> the number of element names and pseudo-elements.
+     * @param selector the selector
+     * @return the specificity of the selector
+     * @see <a href="http://www.w3.org/TR/CSS21/cascade.html#specificity">CSS 2.1 specificity</a>
+     */
+    static int getSpecificity(final Selector selector) {
+        switch (selector.getSelectorType()) {
+            case Selector.SAC_CHILD_SELECTOR:
+            case Selector.SAC_DESCENDANT_SELECTOR:
+                final DescendantSelector ds = (DescendantSelector) selector;
+                return getSpecificity(ds.getAncestorSelector()) + getSpecificity(ds.getSimpleSelector());
+            case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+                final SiblingSelector ss = (SiblingSelector) selector;
+                return getSpecificity(ss.getSelector()) + getSpecificity(ss.getSiblingSelector());
+            case Selector.SAC_CONDITIONAL_SELECTOR:
+                final ConditionalSelector cs = (ConditionalSelector) selector;
+                return getSpecificity(cs.getSimpleSelector()) + getSpecificity(cs.getCondition());
+            case Selector.SAC_NEGATIVE_SELECTOR:
+                return getSpecificity(((NegativeSelector) selector).getSimpleSelector());
+            case Selector.SAC_ELEMENT_NODE_SELECTOR:
+                return ((ElementSelector) selector).getLocalName() == null ? 0 : 1;
+            case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private static int getSpecificity(final Condition condition) {
+        switch (condition.getConditionType()) {
+            case Condition.SAC_ID_CONDITION:
+                return 10000;
+            case Condition.SAC_AND_CONDITION:
+                final CombinatorCondition and = (CombinatorCondition) condition;
+                return getSpecificity(and.getFirstCondition()) + getSpecificity(and.getSecondCondition());
+            case Condition.SAC_OR_CONDITION:
+                final CombinatorCondition or = (CombinatorCondition) condition;
+                return Math.max(getSpecificity(or.getFirstCondition()), getSpecificity(or.getSecondCondition()));
+            case Condition.SAC_NEGATIVE_CONDITION:
+                return getSpecificity(((NegativeCondition) condition).getCondition());
+            default:
+                return 100;
+        }
+    }
+
+    /**
+     * Returns the key under which the specified selector is indexed: <tt>#id</tt>, <tt>.class</tt> or the
+     * lower case tag name required by its rightmost simple selector, in this order of preference.
+     * @param selector the selector
+     * @return the key, or <tt>null</tt> if the rightmost simple selector requires none of them
+     */
+    private static String getIndexKey(final Selector selector) {
+        switch (selector.getSelectorType()) {
+            case Selector.SAC_CHILD_SELECTOR:
+            case Selector.SAC_DESCENDANT_SELECTOR:
+                return getIndexKey(((DescendantSelector) selector).getSimpleSelector());
+            case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+                return getIndexKey(((SiblingSelector) selector).getSiblingSelector());
+            case Selector.SAC_CONDITIONAL_SELECTOR:
+                final ConditionalSelector cs = (ConditionalSelector) selector;
+                final String key = getIndexKey(cs.getCondition());
+                if (key != null) {
+                    return key;
+                }
+                return getIndexKey(cs.getSimpleSelector());
+            case Selector.SAC_ELEMENT_NODE_SELECTOR:
+                final String name = ((ElementSelector) selector).getLocalName();
+                if (name == null) {
+                    return null;
+                }
+                return name.toLowerCase();
+            default:
+                return null;
+        }
+    }
+
+    private static String getIndexKey(final Condition condition) {
+        switch (condition.getConditionType()) {
+            case Condition.SAC_ID_CONDITION:
+                return '#' + ((AttributeCondition) condition).getValue();
+            case Condition.SAC_CLASS_CONDITION:
+                return '.' + ((AttributeCondition) condition).getValue();
+            case Condition.SAC_AND_CONDITION:
+                final CombinatorCondition cc = (CombinatorCondition) condition;
+                final String first = getIndexKey(cc.getFirstCondition());
+                final String second = getIndexKey(cc.getSecondCondition());
+                if (first == null || (second != null && second.charAt(0) == '#')) {
+                    return second;
+                }
+                return first;
+            default:
+                return null;
         }
-        for (int i = 0; i < rules.getLength(); i++) {
-            final CSSRule rule = rules.item(i);
-            if (rule.getType() == CSSRule.STYLE_RULE) {
-                final CSSStyleRuleImpl styleRule = (CSSStyleRuleImpl) rule;
-                final SelectorList selectors = styleRule.getSelectors();
-                for (int j = 0; j < selectors.getLength(); j++) {
-                    final Selector selector = selectors.item(j);
-                    final boolean selected = selects(selector, e);
-                    if (selected) {
-                        final org.w3c.dom.css.CSSStyleDeclaration dec = styleRule.getStyle();
-                        for (int k = 0; k < dec.getLength(); k++) {
-                            final String name = dec.item(k);
-                            final String value = dec.getPropertyValue(name);
-                            style.setLocalStyleAttribute(name, value);
+    }
+
+    /**
+     * The style rules of a stylesheet, bucketed by the id, class or tag name required by the rightmost
+     * simple selector of each of their selectors, as browsers do, so that only the rules which can
+     * possibly apply to an element are tested against it.
+     */
+    private static final class RuleIndex {
+        private final int ruleCount_;
+        private final Map<String, List<RuleEntry>> buckets_ = new HashMap<String, List<RuleEntry>>();
+        private final List<RuleEntry> universal_ = new ArrayList<RuleEntry>();
+        private final List<ImportEntry> imports_ = new ArrayList<ImportEntry>();
+
+        RuleIndex(final CSSRuleList rules) {
+            ruleCount_ = rules.getLength();
+            int position = 0;
+            for (int i = 0; i < ruleCount_; i++) {
+                final CSSRule rule = rules.item(i);
+                if (rule.getType() == CSSRule.STYLE_RULE) {
+                    final CSSStyleRuleImpl styleRule = (CSSStyleRuleImpl) rule;
+                    final SelectorList selectors = styleRule.getSelectors();
+                    for (int j = 0; j < selectors.getLength(); j++) {
+                        final Selector selector = selectors.item(j);
+                        final RuleEntry entry = new RuleEntry(styleRule, selector, position++);
+                        final String key = getIndexKey(selector);
+                        if (key == null) {
+                            universal_.add(entry);
+                        }
+                        else {
+                            List<RuleEntry> bucket = buckets_.get(key);
+                            if (bucket == null) {
+                                bucket = new ArrayList<RuleEntry>();
+                                buckets_.put(key, bucket);
+                            }
+                            bucket.add(entry);
                         }
                     }
                 }
-            }
-            else if (rule.getType() == CSSRule.IMPORT_RULE) {
-                final CSSImportRuleImpl importRule = (CSSImportRuleImpl) rule;
-                Stylesheet sheet = imports_.get(importRule);
-                if (sheet == null) {
-                    // TODO: surely wrong: in which case is it null and why?
-                    final String uri = (uri_ != null) ? uri_
-                        : e.getPage().getWebResponse().getRequestSettings().getUrl().toExternalForm();
-                    final String href = importRule.getHref();
-                    final String url = UrlUtils.resolveUrl(uri, href);
-                    sheet = loadStylesheet(getWindow(), ownerNode_, null, url);
-                    imports_.put(importRule, sheet);
+                else if (rule.getType() == CSSRule.IMPORT_RULE) {
+                    imports_.add(new ImportEntry((CSSImportRuleImpl) rule, position++));
                 }
-                sheet.modifyIfNecessary(style, element);
             }
         }
+
+        List<RuleEntry> get(final String key) {
+            return buckets_.get(key);
+        }
+    }
+
+    /**
+     * One selector of a style rule, with its position in the stylesheet.
+     */
+    private static final class RuleEntry implements Comparable<RuleEntry> {
+        private final CSSStyleRuleImpl rule_;
+        private final Selector selector_;
+        private final int specificity_;
+        private final int position_;
+
+        RuleEntry(final CSSStyleRuleImpl rule, final Selector selector, final int position) {
+            rule_ = rule;
+            selector_ = selector;
+            specificity_ = getSpecificity(selector);
+            position_ = position;
+        }
+
+        public int compareTo(final RuleEntry other) {
+            return position_ - other.position_;
+        }
+    }
+
+    /**
+     * An import rule, with its position in the stylesheet.
+     */
+    private static final class ImportEntry {
+        private final CSSImportRuleImpl rule_;
+        private final int position_;
+
+        ImportEntry(final CSSImportRuleImpl rule, final int position) {
+            rule_ = rule;
+            position_ = position;
+        }
+    }
+
+    /**
+     * A style rule which applies to an element, with the specificity of the selector through which it applies.
+     */
+    static final class MatchingRule {
+        private final CSSStyleRuleImpl rule_;
+        private final int specificity_;
+
+        MatchingRule(final RuleEntry entry) {
+            rule_ = entry.rule_;
+            specificity_ = entry.specificity_;
+        }
     }
 
     /**
@@ -228,7 +527,7 @@ public class Stylesheet extends SimpleScriptable {
                 sheet = new Stylesheet(element, (CSSStyleSheet) fromCache, uri);
             }
             else {
-                final WebResponse response = client.loadWebResponse(request);
+                final WebResponse response = page.loadWebResponse(request);
                 uri = response.getRequestSettings().getUrl().toExternalForm();
                 client.printContentIfNecessary(response);
                 client.throwFailingHttpStatusCodeExceptionIfNecessary(response);
@@ -558,6 +857,7 @@ public class Stylesheet extends SimpleScriptable {
      * @return the position of the inserted rule
      */
     public int jsxFunction_insertRule(final String rule, final int position) {
+        clearRuleIndex();
         return wrapped_.insertRule(rule.trim(), position);
     }
 
@@ -570,6 +870,7 @@ public class Stylesheet extends SimpleScriptable {
      */
     public int jsxFunction_addRule(final String selector, final String rule) {
         final String completeRule = selector.trim() + " {" + rule + "}";
+        clearRuleIndex();
         wrapped_.insertRule(completeRule, wrapped_.getCssRules().getLength());
         return -1;
     }
@@ -19,6 +19,7 @@ import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -1300,12 +1301,15 @@ public class Window extends SimpleScriptable implements ScriptableWithFallbackGe
         final CSSStyleDeclaration original = element.jsxGet_style();
         style = new ComputedCSSStyleDeclaration(original);
 
+        // the rules of all the stylesheets cascade together, so that specificity applies across them
+        final List<Stylesheet.MatchingRule> matchingRules = new ArrayList<Stylesheet.MatchingRule>();
         final StyleSheetList sheets = document_.jsxGet_styleSheets();
         for (int i = 0; i < sheets.jsxGet_length(); i++) {
             final Stylesheet sheet = (Stylesheet) sheets.jsxFunction_item(i);
-            LOG.debug("modifyIfNecessary: " + sheet + ", " + style + ", " + element);
-            sheet.modifyIfNecessary(style, element);
+            LOG.debug("collectMatchingRules: " + sheet + ", " + element);
+            sheet.collectMatchingRules(element, matchingRules);
         }
+        Stylesheet.applyMatchingRules(style, matchingRules);
 
         synchronized (computedStyles_) {
             computedStyles_.put(element, style);
@@ -15,23 +15,24 @@
 package com.gargoylesoftware.htmlunit.javascript.host;
 
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
-import org.w3c.dom.NodeList;
 
 import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.html.DomDocumentFragment;
+import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.DomText;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
@@ -50,7 +51,27 @@ public class XSLTProcessor extends SimpleScriptable {
 
     private static final long serialVersionUID = -5870183094839129375L;
 
+    /** The maximum number of entries in {@link #TEMPLATES}. */
+    private static final int MAX_CACHE_SIZE = 100;
+
+    /**
+     * The compiled stylesheets, keyed by their exact serialization (see {@link #getKey(DomNode)}), the least
+     * recently used one being evicted first. Templates are thread safe, unlike the factory which compiles them.
+     */
+    @SuppressWarnings("serial")
+    private static final Map<String, Templates> TEMPLATES = Collections.synchronizedMap(
+        new LinkedHashMap<String, Templates>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Templates> eldest) {
+                return size() > MAX_CACHE_SIZE;
+            }
+        });
+
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
     private Node style_;
+    /** The compiled version of {@link #style_}, kept until another stylesheet is imported. */
+    private transient Templates templates_;
     private Node input_;
     private Object output_;
     private Map<String, Object> parameters_ = new HashMap<String, Object>();
@@ -72,6 +93,13 @@ public class XSLTProcessor extends SimpleScriptable {
      */
     public void jsxFunction_importStylesheet(final Node style) {
         style_ = style;
+        templates_ = null;
+        try {
+            getTemplates();
+        }
+        catch (final TransformerException e) {
+            throw Context.reportRuntimeError("Exception: " + e);
+        }
     }
 
     /**
@@ -87,55 +115,79 @@ public class XSLTProcessor extends SimpleScriptable {
         doc.setPrototype(getPrototype(doc.getClass()));
         doc.setParentScope(getParentScope());
 
-        final Object transformResult = transform(source);
-        final org.w3c.dom.Node node;
-        if (transformResult instanceof org.w3c.dom.Node) {
-            final org.w3c.dom.Node transformedDoc = (org.w3c.dom.Node) transformResult;
-            node = transformedDoc.getFirstChild();
+        final XmlPage page = new XmlPage((org.w3c.dom.Node) null, getWindow().getWebWindow());
+        try {
+            final DomDocumentFragment fragment = page.createDomDocumentFragment();
+            final List<DomNode> nodes = XmlUtil.transform(newTransformer(), createSource(source), fragment);
+            // a text output leaves the document empty
+            if (!nodes.isEmpty() && nodes.get(0) instanceof DomElement) {
+                page.appendChild(nodes.get(0));
+            }
         }
-        else {
-            node = null;
+        catch (final Exception e) {
+            throw Context.reportRuntimeError("Exception: " + e);
         }
-        final XmlPage page = new XmlPage(node, getWindow().getWebWindow());
         doc.setDomNode(page);
         return doc;
     }
 
     /**
-     * @return {@link Node} or {@link String}
+     * Returns a transformer for the stylesheet given by the importStylesheet() function, configured with
+     * the current parameters.
+     * @return the transformer
+     * @throws TransformerException if the stylesheet can't be compiled
      */
-    private Object transform(final Node source) {
-        try {
-            Source xmlSource = new DOMSource(source.getDomNodeOrDie());
-            final Source xsltSource = new DOMSource(style_.getDomNodeOrDie());
-
-            final org.w3c.dom.Document containerDocument =
-                DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            final org.w3c.dom.Element containerElement = containerDocument.createElement("container");
-            containerDocument.appendChild(containerElement);
-
-            final DOMResult result = new DOMResult(containerElement);
-
-            final Transformer transformer = TransformerFactory.newInstance().newTransformer(xsltSource);
-            for (final String qualifiedName : parameters_.keySet()) {
-                transformer.setParameter(qualifiedName, parameters_.get(qualifiedName));
-            }
-            transformer.transform(xmlSource, result);
+    private Transformer newTransformer() throws TransformerException {
+        final Transformer transformer = getTemplates().newTransformer();
+        for (final String qualifiedName : parameters_.keySet()) {
+            transformer.setParameter(qualifiedName, parameters_.get(qualifiedName));
+        }
+        return transformer;
+    }
 
-            final org.w3c.dom.Node transformedNode = result.getNode();
-            if (transformedNode.getFirstChild().getNodeType() == Node.ELEMENT_NODE) {
-                return transformedNode;
+    /**
+     * Returns the compiled version of the stylesheet given by the importStylesheet() function. The stylesheet
+     * is compiled only if no identical one has been compiled before, and is then kept until another stylesheet
+     * is imported.
+     * @return the compiled stylesheet
+     * @throws TransformerException if the stylesheet can't be compiled
+     */
+    private Templates getTemplates() throws TransformerException {
+        if (templates_ == null) {
+            final DomNode style = style_.getDomNodeOrDie();
+            final String key = getKey(style);
+            Templates templates = TEMPLATES.get(key);
+            if (templates == null) {
+                synchronized (TRANSFORMER_FACTORY) {
+                    templates = TRANSFORMER_FACTORY.newTemplates(new DOMSource(style));
+                }
+                TEMPLATES.put(key, templates);
             }
-            //output is not DOM (text)
-            xmlSource = new DOMSource(source.getDomNodeOrDie());
-            final StringWriter writer = new StringWriter();
-            final Result streamResult = new StreamResult(writer);
-            transformer.transform(xmlSource, streamResult);
-            return writer.toString();
+            templates_ = templates;
         }
-        catch (final Exception e) {
-            throw Context.reportRuntimeError("Exception: " + e);
+        return templates_;
+    }
+
+    /**
+     * Returns the exact serialization of the specified stylesheet, which identifies its compiled version.
+     * {@link DomNode#asXml()} can't be used, as it skips the whitespace-only text nodes, which may be
+     * significant (like in <tt>&lt;xsl:text&gt; &lt;/xsl:text&gt;</tt>).
+     * @param style the stylesheet
+     * @return the serialization of the stylesheet
+     * @throws TransformerException if the stylesheet can't be serialized
+     */
+    private static String getKey(final DomNode style) throws TransformerException {
+        final Transformer identity;
+        synchronized (TRANSFORMER_FACTORY) {
+            identity = TRANSFORMER_FACTORY.newTransformer();
         }
+        final StringWriter writer = new StringWriter();
+        identity.transform(new DOMSource(style), new StreamResult(writer));
+        return writer.toString();
+    }
+
+    private DOMSource createSource(final Node source) {
+        return new DOMSource(source.getDomNodeOrDie());
     }
 
     /**
@@ -160,17 +212,21 @@ public class XSLTProcessor extends SimpleScriptable {
     }
 
     private void transform(final Node source, final DomNode parent) {
-        final Object result = transform(source);
-        if (result instanceof org.w3c.dom.Node) {
-            final SgmlPage parentPage = parent.getPage();
-            final NodeList children = ((org.w3c.dom.Node) result).getChildNodes();
-            for (int i = 0; i < children.getLength(); i++) {
-                XmlUtil.appendChild(parentPage, parent, children.item(i));
+        try {
+            final Transformer transformer = newTransformer();
+            final List<DomNode> nodes = XmlUtil.transform(transformer, createSource(source), parent);
+            if (nodes.isEmpty() || !(nodes.get(0) instanceof DomElement)) {
+                //output is not DOM (text)
+                for (final DomNode node : nodes) {
+                    node.remove();
+                }
+                final StringWriter writer = new StringWriter();
+                transformer.transform(createSource(source), new StreamResult(writer));
+                parent.appendChild(new DomText(parent.getPage(), writer.toString()));
             }
         }
-        else {
-            final DomText text = new DomText(parent.getPage(), (String) result);
-            parent.appendChild(text);
+        catch (final Exception e) {
+            throw Context.reportRuntimeError("Exception: " + e);
         }
     }
 
@@ -122,6 +122,16 @@ public class CSSRule extends SimpleScriptable {
      */
     public void jsxSet_cssText(final String cssText) {
         rule_.setCssText(cssText);
+        ruleChanged();
+    }
+
+    /**
+     * Notifies the parent style sheet that this rule has been modified.
+     */
+    protected void ruleChanged() {
+        if (stylesheet_ != null) {
+            stylesheet_.clearRuleIndex();
+        }
     }
 
     /**
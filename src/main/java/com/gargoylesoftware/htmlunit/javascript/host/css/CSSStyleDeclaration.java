@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.text.MessageFormat;
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -95,6 +96,15 @@ public class CSSStyleDeclaration extends SimpleScriptable {
     /** The current style element index. */
     private long currentElementIndex_;
 
+    /** The value of the element's "style" attribute from which the style maps have been parsed. */
+    private transient String styleMapSource_;
+
+    /** The style elements of the element's "style" attribute, keyed on delimiter-separated name. */
+    private transient Map<String, StyleElement> styleMap_;
+
+    /** The style elements of the element's "style" attribute, keyed on camel-cased name. */
+    private transient Map<String, StyleElement> camelCaseStyleMap_;
+
     static {
         CSSColors_.put("aqua", "rgb(0, 255, 255)");
         CSSColors_.put("black", "rgb(0, 0, 0)");
@@ -309,10 +319,13 @@ public class CSSStyleDeclaration extends SimpleScriptable {
             removeStyleAttribute(name);
         }
         else {
-            final Map<String, StyleElement> styleMap = getStyleMap(false);
+            final Map<String, StyleElement> styleMap = getParsedStyleMap(false);
             final StyleElement old = styleMap.get(name);
             final Long index;
             if (old != null) {
+                if (value.equals(old.getValue())) {
+                    return;
+                }
                 index = old.getIndex();
             }
             else {
@@ -330,7 +343,7 @@ public class CSSStyleDeclaration extends SimpleScriptable {
      * @return the style element index of the removed attribute, or <tt>null</tt> if no attribute was removed
      */
     private Long removeStyleAttribute(final String name) {
-        final Map<String, StyleElement> styleMap = getStyleMap(false);
+        final Map<String, StyleElement> styleMap = getParsedStyleMap(false);
         if (!styleMap.containsKey(name)) {
             return null;
         }
@@ -342,14 +355,45 @@ public class CSSStyleDeclaration extends SimpleScriptable {
     /**
      * Returns a sorted map containing style elements, keyed on style element name. We use a
      * {@link LinkedHashMap} map so that results are deterministic and are thus testable.
+     * The returned map can't be modified.
      *
      * @param camelCase if <tt>true</tt>, the keys are camel cased (i.e. <tt>fontSize</tt>),
      *        if <tt>false</tt>, the keys are delimiter-separated (i.e. <tt>font-size</tt>).
      * @return a sorted map containing style elements, keyed on style element name
      */
     protected Map<String, StyleElement> getStyleMap(final boolean camelCase) {
-        final Map<String, StyleElement> styleMap = new LinkedHashMap<String, StyleElement>();
+        return Collections.unmodifiableMap(getParsedStyleMap(camelCase));
+    }
+
+    /**
+     * Returns the style elements of the element's "style" attribute. The attribute is parsed only
+     * when it has been changed since the last call, otherwise the maps parsed (or updated and
+     * written back to the attribute by this object) previously are reused.
+     *
+     * @param camelCase whether the keys are camel cased or delimiter-separated
+     * @return the style elements of the element's "style" attribute, keyed on style element name
+     */
+    private Map<String, StyleElement> getParsedStyleMap(final boolean camelCase) {
         final String styleAttribute = jsElement_.getDomNodeOrDie().getAttribute("style");
+        if (!styleAttribute.equals(styleMapSource_)) {
+            styleMapSource_ = styleAttribute;
+            styleMap_ = null;
+            camelCaseStyleMap_ = null;
+        }
+        if (camelCase) {
+            if (camelCaseStyleMap_ == null) {
+                camelCaseStyleMap_ = parseStyleAttribute(styleAttribute, true);
+            }
+            return camelCaseStyleMap_;
+        }
+        if (styleMap_ == null) {
+            styleMap_ = parseStyleAttribute(styleAttribute, false);
+        }
+        return styleMap_;
+    }
+
+    private Map<String, StyleElement> parseStyleAttribute(final String styleAttribute, final boolean camelCase) {
+        final Map<String, StyleElement> styleMap = new LinkedHashMap<String, StyleElement>();
         for (final String token : styleAttribute.split(";")) {
             final int index = token.indexOf(":");
             if (index != -1) {
@@ -365,6 +409,12 @@ public class CSSStyleDeclaration extends SimpleScriptable {
         return styleMap;
     }
 
+    /**
+     * Writes the specified style elements (keyed on delimiter-separated name) back to the element's
+     * "style" attribute. The specified map stays valid for the new attribute value, but the camel-cased
+     * one has to be parsed again.
+     * @param styleMap the style elements
+     */
     private void writeToElement(final Map<String, StyleElement> styleMap) {
         final StringBuilder buffer = new StringBuilder();
         final SortedSet<StyleElement> sortedValues = new TreeSet<StyleElement>(styleMap.values());
@@ -377,7 +427,11 @@ public class CSSStyleDeclaration extends SimpleScriptable {
             buffer.append(e.getValue());
             buffer.append(";");
         }
-        jsElement_.getDomNodeOrDie().setAttribute("style", buffer.toString());
+        final String styleAttribute = buffer.toString();
+        jsElement_.getDomNodeOrDie().setAttribute("style", styleAttribute);
+        styleMapSource_ = styleAttribute;
+        styleMap_ = styleMap;
+        camelCaseStyleMap_ = null;
     }
 
     /**
@@ -81,6 +81,7 @@ public class CSSStyleRule extends CSSRule {
      */
     public void jsxSet_selectorText(final String selectorText) {
         ((org.w3c.dom.css.CSSStyleRule) getRule()).setSelectorText(selectorText);
+        ruleChanged();
     }
 
     /**
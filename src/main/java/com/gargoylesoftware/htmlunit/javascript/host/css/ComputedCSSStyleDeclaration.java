@@ -18,6 +18,7 @@ import static org.apache.commons.lang.StringUtils.defaultIfEmpty;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -175,7 +176,11 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      */
     @Override
     protected Map<String, StyleElement> getStyleMap(final boolean camelCase) {
-        final Map<String, StyleElement> styleMap = super.getStyleMap(camelCase);
+        // the style elements of the "style" attribute take precedence over the local modifications
+        final Map<String, StyleElement> styleMap = new LinkedHashMap<String, StyleElement>();
+        for (final StyleElement e : super.getStyleMap(camelCase).values()) {
+            styleMap.put(e.getName(), new StyleElement(e.getName(), e.getValue(), getCurrentElementIndex()));
+        }
         if (localModifications_ != null) {
             for (final StyleElement e : localModifications_.values()) {
                 String key = e.getName();
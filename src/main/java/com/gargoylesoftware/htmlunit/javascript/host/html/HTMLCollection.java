@@ -15,7 +15,9 @@
 package com.gargoylesoftware.htmlunit.javascript.host.html;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 import net.sourceforge.htmlunit.corejs.javascript.Function;
@@ -83,6 +85,11 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
      */
     private List<Object> cachedElements_;
 
+    /**
+     * The native form of the XPath expression, or <tt>null</tt> if it has to be evaluated through XPath.
+     */
+    private HTMLCollectionFilter filter_;
+
     /**
      * IE provides a way of enumerating through some element collections; this counter supports that functionality.
      */
@@ -154,6 +161,7 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
             node_ = node;
             xpath_ = xpath;
             transformer_ = transformer;
+            filter_ = HTMLCollectionFilter.parse(xpath, isCaseSensitive());
             final DomHtmlAttributeChangeListenerImpl listener = new DomHtmlAttributeChangeListenerImpl();
             node_.addDomChangeListener(listener);
             if (node_ instanceof HtmlElement) {
@@ -243,6 +251,10 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
      * @return the elements whose associated host objects are available through this collection
      */
     protected List<Object> computeElements() {
+        if (filter_ != null) {
+            return filter_.collect(node_, isCaseSensitive());
+        }
+
         final List<Object> response;
         if (node_ != null) {
             if (xpath_ != null) {
@@ -289,6 +301,50 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
         return response;
     }
 
+    private boolean isCaseSensitive() {
+        return node_.getPage().hasCaseSensitiveTagNames();
+    }
+
+    /**
+     * Returns whether the addition or removal of the specified node can change the content of this collection.
+     * @param parent the parent to which the node has been added or from which it has been removed
+     * @param changed the added or removed node
+     * @return whether the change is relevant for this collection
+     */
+    private boolean isAffectedBy(final DomNode parent, final DomNode changed) {
+        if (changed == node_) {
+            return false;
+        }
+        if (filter_ != null) {
+            return filter_.isAffectedBy(node_, parent, changed, isCaseSensitive());
+        }
+        if (xpath_ == null) {
+            return parent == node_;
+        }
+        return true;
+    }
+
+    /**
+     * Removes from the cached elements the ones of the specified (already detached) subtree,
+     * keeping the others in document order.
+     * @param subtree the removed subtree
+     */
+    private void removeFromCache(final DomNode subtree) {
+        final List<Object> removed = new ArrayList<Object>();
+        filter_.collectSubtree(subtree, isCaseSensitive(), removed);
+        final Map<Object, Object> removedSet = new IdentityHashMap<Object, Object>();
+        for (final Object o : removed) {
+            removedSet.put(o, o);
+        }
+        final List<Object> elements = new ArrayList<Object>(cachedElements_.size());
+        for (final Object o : cachedElements_) {
+            if (!removedSet.containsKey(o)) {
+                elements.add(o);
+            }
+        }
+        cachedElements_ = elements;
+    }
+
     /**
      * Recursively checks whether "xml:space" attribute is set to "default".
      * @param node node to start checking from
@@ -614,35 +670,59 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
          * {@inheritDoc}
          */
         public void nodeAdded(final DomChangeEvent event) {
-            cachedElements_ = null;
+            final DomNode changed = event.getChangedNode();
+            if (cachedElements_ != null && isAffectedBy(changed.getParentNode(), changed)) {
+                cachedElements_ = null;
+            }
         }
 
         /**
          * {@inheritDoc}
          */
         public void nodeDeleted(final DomChangeEvent event) {
-            cachedElements_ = null;
+            final DomNode changed = event.getChangedNode();
+            if (cachedElements_ == null) {
+                return;
+            }
+            if (changed.getParentNode() != null) {
+                // the node has been moved elsewhere (see DomNode.insertBefore()): the event doesn't tell enough
+                cachedElements_ = null;
+            }
+            else if (isAffectedBy(event.getParentNode(), changed)) {
+                if (filter_ != null && transformer_ == NOPTransformer.INSTANCE) {
+                    removeFromCache(changed);
+                }
+                else {
+                    cachedElements_ = null;
+                }
+            }
         }
 
         /**
          * {@inheritDoc}
          */
         public void attributeAdded(final HtmlAttributeChangeEvent event) {
-            cachedElements_ = null;
+            attributeChanged(event);
         }
 
         /**
          * {@inheritDoc}
          */
         public void attributeRemoved(final HtmlAttributeChangeEvent event) {
-            cachedElements_ = null;
+            attributeChanged(event);
         }
 
         /**
          * {@inheritDoc}
          */
         public void attributeReplaced(final HtmlAttributeChangeEvent event) {
-            cachedElements_ = null;
+            attributeChanged(event);
+        }
+
+        private void attributeChanged(final HtmlAttributeChangeEvent event) {
+            if (xpath_ != null && (filter_ == null || filter_.dependsOnAttribute(event.getName()))) {
+                cachedElements_ = null;
+            }
         }
     }
 
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.html;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlNoScript;
+
+/**
+ * The natively evaluated form of the simple XPath expressions used by most {@link HTMLCollection}s
+ * (<tt>.//form</tt>, <tt>./tbody</tt>, <tt>.//a[@href] | .//area[@href]</tt>, <tt>.//*[@name='x']</tt>,
+ * <tt>.//*[name() = 'input' or name() = 'select']</tt>, class name lookups, ...).
+ * <p>
+ * It allows a collection to compute its elements by walking the DOM tree directly instead of going
+ * through Xalan, and to find out whether a given DOM or attribute change can affect its content at all,
+ * so that unrelated changes don't invalidate the cached elements. Expressions that can't be parsed
+ * here are still evaluated as XPath by the collection.
+ *
+ * @version $Revision$
+ * @author HtmlUnit team
+ */
+final class HTMLCollectionFilter implements Serializable {
+
+    private static final long serialVersionUID = 6207413893719393781L;
+
+    private static final Pattern STEP_PATTERN
+        = Pattern.compile("\\s*(\\.//?)(\\*|[a-zA-Z][\\w\\-]*)(?:\\[(.*)\\])?\\s*");
+    private static final Pattern ATTRIBUTE_EXISTS_PATTERN = Pattern.compile("\\s*@([a-zA-Z][\\w\\-]*)\\s*");
+    private static final Pattern ATTRIBUTE_EQUALS_PATTERN
+        = Pattern.compile("\\s*@([a-zA-Z][\\w\\-]*)\\s*=\\s*'([^']*)'\\s*");
+    private static final Pattern NAME_PATTERN = Pattern.compile("\\s*name\\(\\)\\s*=\\s*'([^']*)'\\s*");
+    private static final Pattern LOCAL_NAME_PATTERN
+        = Pattern.compile("\\s*local-name\\(\\)\\s*=\\s*'([^']*)'\\s*");
+    private static final Pattern LOWER_CASE_LOCAL_NAME_PATTERN
+        = Pattern.compile("\\s*lower-case\\(local-name\\(\\)\\)\\s*=\\s*'([^']*)'\\s*");
+    private static final Pattern CLASS_PATTERN
+        = Pattern.compile("\\s*contains\\(concat\\(' ', @class, ' '\\), ' ([^' ]+) '\\)\\s*");
+
+    private final boolean descendants_;
+    private final Step[] steps_;
+
+    private HTMLCollectionFilter(final boolean descendants, final Step[] steps) {
+        descendants_ = descendants;
+        steps_ = steps;
+    }
+
+    /**
+     * Parses the specified XPath expression.
+     * @param xpath the XPath expression of the collection
+     * @param caseSensitive whether the tag and attribute names of the page are case-sensitive
+     * @return the corresponding filter, or <tt>null</tt> if the expression is not supported
+     */
+    static HTMLCollectionFilter parse(final String xpath, final boolean caseSensitive) {
+        Boolean descendants = null;
+        final List<Step> steps = new ArrayList<Step>();
+        for (final String alternative : xpath.split("\\|")) {
+            final Matcher matcher = STEP_PATTERN.matcher(alternative);
+            if (!matcher.matches()) {
+                return null;
+            }
+            final boolean stepDescendants = matcher.group(1).length() == 3;
+            if (descendants == null) {
+                descendants = Boolean.valueOf(stepDescendants);
+            }
+            else if (descendants.booleanValue() != stepDescendants) {
+                return null;
+            }
+            String tagName = matcher.group(2);
+            if ("*".equals(tagName)) {
+                tagName = null;
+            }
+            else if (!caseSensitive) {
+                tagName = tagName.toLowerCase();
+            }
+            final Step step = new Step(tagName);
+            final String predicate = matcher.group(3);
+            if (predicate != null && !parsePredicate(predicate, step, caseSensitive)) {
+                return null;
+            }
+            steps.add(step);
+        }
+        return new HTMLCollectionFilter(descendants.booleanValue(), steps.toArray(new Step[steps.size()]));
+    }
+
+    private static boolean parsePredicate(String predicate, final Step step, final boolean caseSensitive) {
+        predicate = predicate.trim();
+        if (predicate.startsWith("(") && predicate.endsWith(")")) {
+            predicate = predicate.substring(1, predicate.length() - 1);
+        }
+
+        Matcher matcher = ATTRIBUTE_EQUALS_PATTERN.matcher(predicate);
+        if (matcher.matches()) {
+            step.attributeName_ = caseSensitive ? matcher.group(1) : matcher.group(1).toLowerCase();
+            step.attributeValue_ = matcher.group(2);
+            return true;
+        }
+        matcher = ATTRIBUTE_EXISTS_PATTERN.matcher(predicate);
+        if (matcher.matches()) {
+            step.attributeName_ = caseSensitive ? matcher.group(1) : matcher.group(1).toLowerCase();
+            return true;
+        }
+        matcher = LOCAL_NAME_PATTERN.matcher(predicate);
+        if (matcher.matches()) {
+            step.localName_ = matcher.group(1);
+            return true;
+        }
+        matcher = LOWER_CASE_LOCAL_NAME_PATTERN.matcher(predicate);
+        if (matcher.matches()) {
+            step.localName_ = matcher.group(1);
+            step.lowerCaseLocalName_ = true;
+            return true;
+        }
+
+        final List<String> names = new ArrayList<String>();
+        for (final String part : predicate.split(" or ")) {
+            matcher = NAME_PATTERN.matcher(part);
+            if (!matcher.matches()) {
+                names.clear();
+                break;
+            }
+            names.add(matcher.group(1));
+        }
+        if (!names.isEmpty()) {
+            step.nodeNames_ = names.toArray(new String[names.size()]);
+            return true;
+        }
+
+        final List<String> classNames = new ArrayList<String>();
+        for (final String part : predicate.split(" and ")) {
+            matcher = CLASS_PATTERN.matcher(part);
+            if (!matcher.matches()) {
+                return false;
+            }
+            classNames.add(' ' + matcher.group(1) + ' ');
+        }
+        step.attributeName_ = "class";
+        step.classNames_ = classNames.toArray(new String[classNames.size()]);
+        return true;
+    }
+
+    /**
+     * Returns whether the specified node is selected by this filter, provided it is at the right
+     * place relative to the collection root.
+     * @param node the node to test
+     * @param caseSensitive whether the tag names of the page are case-sensitive
+     * @return whether the specified node is selected by this filter
+     */
+    boolean matches(final DomNode node, final boolean caseSensitive) {
+        if (!(node instanceof DomElement)) {
+            return false;
+        }
+        final DomElement element = (DomElement) node;
+        for (final Step step : steps_) {
+            if (step.matches(element, caseSensitive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects, in document order, the elements under the specified root which are selected by this filter.
+     * Elements nested in a <tt>noscript</tt> element are ignored, as they are not part of any collection.
+     * @param root the collection root
+     * @param caseSensitive whether the tag names of the page are case-sensitive
+     * @return the selected elements
+     */
+    List<Object> collect(final DomNode root, final boolean caseSensitive) {
+        final List<Object> response = new ArrayList<Object>();
+        for (DomNode parent = root; parent != null; parent = parent.getParentNode()) {
+            if (parent instanceof HtmlNoScript) {
+                return response;
+            }
+        }
+        collect(root, caseSensitive, response);
+        return response;
+    }
+
+    private void collect(final DomNode parent, final boolean caseSensitive, final List<Object> response) {
+        for (DomNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (matches(child, caseSensitive)) {
+                response.add(child);
+            }
+            if (descendants_ && !(child instanceof HtmlNoScript)) {
+                collect(child, caseSensitive, response);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the addition or removal of the specified node under the specified parent can
+     * change the content of a collection with the specified root.
+     * @param root the collection root
+     * @param parent the node to which the changed node has been added or from which it has been removed
+     * @param changed the added or removed node
+     * @param caseSensitive whether the tag names of the page are case-sensitive
+     * @return whether the change is relevant for the collection
+     */
+    boolean isAffectedBy(final DomNode root, final DomNode parent, final DomNode changed,
+            final boolean caseSensitive) {
+        if (!descendants_) {
+            return parent == root && matches(changed, caseSensitive);
+        }
+        return containsMatch(changed, caseSensitive);
+    }
+
+    /**
+     * Collects the nodes selected by this filter in the specified subtree, including its root.
+     * @param subtree the subtree to search
+     * @param caseSensitive whether the tag names of the page are case-sensitive
+     * @param response the list to which the selected nodes are added
+     */
+    void collectSubtree(final DomNode subtree, final boolean caseSensitive, final List<Object> response) {
+        if (matches(subtree, caseSensitive)) {
+            response.add(subtree);
+        }
+        if (descendants_) {
+            collect(subtree, caseSensitive, response);
+        }
+    }
+
+    private boolean containsMatch(final DomNode subtree, final boolean caseSensitive) {
+        if (matches(subtree, caseSensitive)) {
+            return true;
+        }
+        for (DomNode child = subtree.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (containsMatch(child, caseSensitive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a change of the specified attribute can change the content of the collection.
+     * @param attributeName the name of the changed attribute
+     * @return whether a change of the specified attribute is relevant for the collection
+     */
+    boolean dependsOnAttribute(final String attributeName) {
+        for (final Step step : steps_) {
+            if (step.attributeName_ != null && step.attributeName_.equalsIgnoreCase(attributeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One alternative of the expression: a node test and an optional predicate.
+     */
+    private static final class Step implements Serializable {
+
+        private static final long serialVersionUID = -1489146917330525474L;
+
+        private final String tagName_;
+        private String[] nodeNames_;
+        private String localName_;
+        private boolean lowerCaseLocalName_;
+        private String attributeName_;
+        private String attributeValue_;
+        private String[] classNames_;
+
+        Step(final String tagName) {
+            tagName_ = tagName;
+        }
+
+        boolean matches(final DomElement element, final boolean caseSensitive) {
+            if (tagName_ != null) {
+                if (element.getNamespaceURI() != null) {
+                    return false;
+                }
+                String localName = element.getLocalName();
+                if (!caseSensitive) {
+                    localName = localName.toLowerCase();
+                }
+                if (!tagName_.equals(localName)) {
+                    return false;
+                }
+            }
+            if (localName_ != null) {
+                String localName = element.getLocalName();
+                if (!caseSensitive || lowerCaseLocalName_) {
+                    localName = localName.toLowerCase();
+                }
+                if (!localName_.equals(localName)) {
+                    return false;
+                }
+            }
+            if (nodeNames_ != null) {
+                final String nodeName = element.getNodeName();
+                boolean found = false;
+                for (final String name : nodeNames_) {
+                    if (name.equals(nodeName)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            if (classNames_ != null) {
+                final String classes = ' ' + element.getAttribute("class") + ' ';
+                for (final String className : classNames_) {
+                    if (!classes.contains(className)) {
+                        return false;
+                    }
+                }
+            }
+            else if (attributeName_ != null) {
+                if (!element.hasAttribute(attributeName_)) {
+                    return false;
+                }
+                if (attributeValue_ != null && !attributeValue_.equals(element.getAttribute(attributeName_))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
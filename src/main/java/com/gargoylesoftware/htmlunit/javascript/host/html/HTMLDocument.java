@@ -19,6 +19,7 @@ import static com.gargoylesoftware.htmlunit.util.UrlUtils.getUrlWithNewHost;
 import static com.gargoylesoftware.htmlunit.util.UrlUtils.getUrlWithNewPort;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
@@ -168,6 +169,8 @@ public class HTMLDocument extends Document implements ScriptableWithFallbackGett
 
     /** The buffer that will be used for calls to document.write(). */
     private final StringBuilder writeBuffer_ = new StringBuilder();
+    /** Keeps track of the tags of {@link #writeBuffer_}, so that each write() only scans the new content. */
+    private final WriteBufferScanner writeBufferScanner_ = new WriteBufferScanner();
     private boolean writeInCurrentDocument_ = true;
     private String domain_;
     private String uniqueID_;
@@ -437,91 +440,131 @@ public class HTMLDocument extends Document implements ScriptableWithFallbackGett
             LOG.debug("wrote content to buffer");
             return;
         }
-        final String bufferedContent = writeBuffer_.toString();
-        if (!canAlreadyBeParsed(bufferedContent)) {
+        if (!writeBufferScanner_.canAlreadyBeParsed(writeBuffer_)) {
             LOG.debug("write: not enough content to parsed it now");
             return;
         }
 
+        final String bufferedContent = writeBuffer_.toString();
         writeBuffer_.setLength(0);
-        page.writeInParsedStream(bufferedContent.toString());
-    }
-
-    /**
-     * Indicates if the content is a well formed HTML snippet that can already be parsed to be added
-     * to the DOM.
-     *
-     * @param content the HTML snippet
-     * @return <code>false</code> if it not well formed
-     */
-    private static boolean canAlreadyBeParsed(final String content) {
-        // all <script> must have their </script> because the parser doesn't close automatically this tag
-        // All tags must be complete, that is from '<' to '>'.
-        final int tagOutside = 0;
-        final int tagStart = 1;
-        final int tagInName = 2;
-        final int tagInside = 3;
-        int tagState = tagOutside;
-        int tagNameBeginIndex = 0;
-        int scriptTagCount = 0;
-        boolean tagIsOpen = true;
-        int index = 0;
-        for (final char currentChar : content.toCharArray()) {
-            switch (tagState) {
-                case tagOutside:
-                    if (currentChar == '<') {
-                        tagState = tagStart;
-                        tagIsOpen = true;
-                    }
-                    break;
-                case tagStart:
-                    if (currentChar == '/') {
-                        tagIsOpen = false;
-                        tagNameBeginIndex = index + 1;
-                    }
-                    else {
-                        tagNameBeginIndex = index;
-                    }
-                    tagState = tagInName;
-                    break;
-                case tagInName:
-                    if (Character.isWhitespace(currentChar) || currentChar == '>') {
-                        final String tagName = content.substring(tagNameBeginIndex, index);
-                        if (tagName.equalsIgnoreCase("script")) {
-                            if (tagIsOpen) {
-                                scriptTagCount++;
+        writeBufferScanner_.reset();
+        page.writeInParsedStream(bufferedContent);
+    }
+
+    /**
+     * Scans the content written with <tt>document.write</tt> to find out if it is a well formed HTML snippet
+     * that can already be parsed to be added to the DOM. The state of the scan is kept between the calls,
+     * so that only the newly written content is scanned each time.
+     */
+    private static final class WriteBufferScanner implements Serializable {
+        private static final long serialVersionUID = 2463950412829624315L;
+
+        private static final int TAG_OUTSIDE = 0;
+        private static final int TAG_START = 1;
+        private static final int TAG_IN_NAME = 2;
+        private static final int TAG_INSIDE = 3;
+
+        private int tagState_ = TAG_OUTSIDE;
+        private int tagNameBeginIndex_;
+        private int scriptTagCount_;
+        private boolean tagIsOpen_ = true;
+        private int scannedLength_;
+
+        /**
+         * Forgets the scanned content, which has been handed to the parser.
+         */
+        void reset() {
+            tagState_ = TAG_OUTSIDE;
+            tagNameBeginIndex_ = 0;
+            scriptTagCount_ = 0;
+            tagIsOpen_ = true;
+            scannedLength_ = 0;
+        }
+
+        /**
+         * Indicates if the content is a well formed HTML snippet that can already be parsed to be added
+         * to the DOM. The content must start with the content given in the previous calls since the last reset.
+         *
+         * @param content the HTML snippet
+         * @return <code>false</code> if it not well formed
+         */
+        boolean canAlreadyBeParsed(final CharSequence content) {
+            // all <script> must have their </script> because the parser doesn't close automatically this tag
+            // All tags must be complete, that is from '<' to '>'.
+            final int length = content.length();
+            for (int index = scannedLength_; index < length; index++) {
+                final char currentChar = content.charAt(index);
+                switch (tagState_) {
+                    case TAG_OUTSIDE:
+                        if (currentChar == '<') {
+                            tagState_ = TAG_START;
+                            tagIsOpen_ = true;
+                        }
+                        break;
+                    case TAG_START:
+                        if (currentChar == '/') {
+                            tagIsOpen_ = false;
+                            tagNameBeginIndex_ = index + 1;
+                        }
+                        else {
+                            tagNameBeginIndex_ = index;
+                        }
+                        tagState_ = TAG_IN_NAME;
+                        break;
+                    case TAG_IN_NAME:
+                        if (Character.isWhitespace(currentChar) || currentChar == '>') {
+                            if (isScriptTagName(content, tagNameBeginIndex_, index)) {
+                                if (tagIsOpen_) {
+                                    scriptTagCount_++;
+                                }
+                                else if (scriptTagCount_ > 0) {
+                                    // Ignore extra close tags for now. Let the parser deal with them.
+                                    scriptTagCount_--;
+                                }
+                            }
+                            if (currentChar == '>') {
+                                tagState_ = TAG_OUTSIDE;
                             }
-                            else if (scriptTagCount > 0) {
-                                // Ignore extra close tags for now. Let the parser deal with them.
-                                scriptTagCount--;
+                            else {
+                                tagState_ = TAG_INSIDE;
                             }
                         }
-                        if (currentChar == '>') {
-                            tagState = tagOutside;
+                        else if (!Character.isLetter(currentChar)) {
+                            tagState_ = TAG_OUTSIDE;
                         }
-                        else {
-                            tagState = tagInside;
+                        break;
+                    case TAG_INSIDE:
+                        if (currentChar == '>') {
+                            tagState_ = TAG_OUTSIDE;
                         }
-                    }
-                    else if (!Character.isLetter(currentChar)) {
-                        tagState = tagOutside;
-                    }
-                    break;
-                case tagInside:
-                    if (currentChar == '>') {
-                        tagState = tagOutside;
-                    }
-                    break;
-                default:
-                    // nothing
+                        break;
+                    default:
+                        // nothing
+                }
             }
-            index++;
-        }
-        if (scriptTagCount > 0 || tagState != tagOutside) {
-            return false;
+            scannedLength_ = length;
+            return scriptTagCount_ == 0 && tagState_ == TAG_OUTSIDE;
+        }
+
+        /**
+         * Indicates if the specified part of the content is "script", ignoring case.
+         * @param content the content
+         * @param begin the index of the first character of the tag name
+         * @param end the index following the last character of the tag name
+         * @return <code>true</code> if the tag name is "script"
+         */
+        private static boolean isScriptTagName(final CharSequence content, final int begin, final int end) {
+            final String script = "script";
+            if (end - begin != script.length()) {
+                return false;
+            }
+            for (int i = 0; i < script.length(); i++) {
+                if (Character.toLowerCase(content.charAt(begin + i)) != script.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
         }
-
-        return true;
     }
 
     /**
@@ -821,6 +864,7 @@ public class HTMLDocument extends Document implements ScriptableWithFallbackGett
 
             writeInCurrentDocument_ = true;
             writeBuffer_.setLength(0);
+            writeBufferScanner_.reset();
         }
     }
 
@@ -15,7 +15,10 @@
 package com.gargoylesoftware.htmlunit.javascript.regexp;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -43,6 +46,22 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
 
     private static final Log LOG = LogFactory.getLog(HtmlUnitRegExpProxy.class);
 
+    /** The maximum number of entries in {@link #REGEXP_DATA}. */
+    private static final int MAX_CACHE_SIZE = 500;
+
+    /**
+     * The translated and compiled regular expressions, keyed by JavaScript flags and source,
+     * the least recently used one being evicted first.
+     */
+    @SuppressWarnings("serial")
+    private static final Map<String, RegExpData> REGEXP_DATA = Collections.synchronizedMap(
+        new LinkedHashMap<String, RegExpData>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, RegExpData> eldest) {
+                return size() > MAX_CACHE_SIZE;
+            }
+        });
+
     private final RegExpProxy wrapped_;
 
     /**
@@ -83,15 +102,11 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
                 return StringUtils.replaceOnce(thisString, (String) arg0, replacement);
             }
             else if (arg0 instanceof NativeRegExp) {
-                replacement = replacement.replaceAll("\\\\", "\\\\\\\\");
+                replacement = StringUtils.replace(replacement, "\\", "\\\\");
                 try {
-                    final NativeRegExp regexp = (NativeRegExp) arg0;
-                    final RegExpData reData = new RegExpData(regexp);
-                    final String regex = reData.getJavaPattern();
-                    final int flags = reData.getJavaFlags();
-                    final Pattern pattern = Pattern.compile(regex, flags);
-                    final Matcher matcher = pattern.matcher(thisString);
-                    replacement = escapeInvalidBackReferences(regex, replacement);
+                    final RegExpData reData = getRegExpData((NativeRegExp) arg0);
+                    final Matcher matcher = reData.getPattern().matcher(thisString);
+                    replacement = escapeInvalidBackReferences(matcher.groupCount(), replacement);
                     if (reData.hasFlag('g')) {
                         return matcher.replaceAll(replacement);
                     }
@@ -110,14 +125,13 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
             final String thisString = Context.toString(thisObj);
             final RegExpData reData;
             if (arg0 instanceof NativeRegExp) {
-                reData = new RegExpData((NativeRegExp) arg0);
+                reData = getRegExpData((NativeRegExp) arg0);
             }
             else {
-                reData = new RegExpData(Context.toString(arg0));
+                reData = getRegExpData(Context.toString(arg0), "");
             }
 
-            final Pattern pattern = Pattern.compile(reData.getJavaPattern(), reData.getJavaFlags());
-            final Matcher matcher = pattern.matcher(thisString);
+            final Matcher matcher = reData.getPattern().matcher(thisString);
             if (!matcher.find()) {
                 return null;
             }
@@ -152,12 +166,9 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
      * Escapes all invalid back references (<tt>$n</tt>, where <tt>n</tt> is the index of the back reference),
      * because invalid back references in JavaScript regex are treated as if they were escaped.
      */
-    private String escapeInvalidBackReferences(final String regex, final String replacement) {
+    private String escapeInvalidBackReferences(final int groups, final String replacement) {
         final StringBuilder ret = new StringBuilder();
 
-        final Matcher m = Pattern.compile(regex).matcher(replacement);
-        final int groups = m.groupCount();
-
         int prevIndex = 0;
         final char[] rep = replacement.toCharArray();
         for (int i = ArrayUtils.indexOf(rep, '$'); i != -1; i = ArrayUtils.indexOf(rep, '$', i + 1)) {
@@ -245,24 +256,47 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
         return wrapped_.wrapRegExp(cx, scope, compiled);
     }
 
-    private static class RegExpData {
-        private final String jsSource_;
-        private final String jsFlags_;
+    private static RegExpData getRegExpData(final NativeRegExp re) {
+        final String str = re.toString(); // the form is /regex/flags
+        final String source = StringUtils.substringBeforeLast(str.substring(1), "/");
+        final String flags = StringUtils.substringAfterLast(str, "/");
+        return getRegExpData(source, flags);
+    }
 
-        RegExpData(final NativeRegExp re) {
-            final String str = re.toString(); // the form is /regex/flags
-            jsSource_ = StringUtils.substringBeforeLast(str.substring(1), "/");
-            jsFlags_ = StringUtils.substringAfterLast(str, "/");
+    /**
+     * Returns the translated and compiled form of the specified JavaScript regular expression,
+     * reusing the one of a previous call if possible.
+     * @param source the JavaScript regular expression
+     * @param flags the JavaScript flags
+     * @return the translated and compiled regular expression
+     */
+    static RegExpData getRegExpData(final String source, final String flags) {
+        final String key = flags + '/' + source; // flags never contain '/'
+        RegExpData reData = REGEXP_DATA.get(key);
+        if (reData == null) {
+            reData = new RegExpData(source, flags);
+            REGEXP_DATA.put(key, reData);
         }
-        public RegExpData(final String string) {
-            jsSource_ = string;
-            jsFlags_ = "";
+        return reData;
+    }
+
+    /**
+     * A JavaScript regular expression and its Java counterpart. Instances are immutable
+     * and can be shared between threads.
+     */
+    static final class RegExpData {
+        private final String jsFlags_;
+        private final Pattern pattern_;
+
+        private RegExpData(final String jsSource, final String jsFlags) {
+            jsFlags_ = jsFlags;
+            pattern_ = Pattern.compile(jsRegExpToJavaRegExp(jsSource), getJavaFlags());
         }
         /**
          * Converts the current JavaScript RegExp flags to Java Pattern flags.
          * @return the Java Pattern flags
          */
-        public int getJavaFlags() {
+        private int getJavaFlags() {
             int flags = 0;
             if (jsFlags_.contains("i")) {
                 flags |= Pattern.CASE_INSENSITIVE;
@@ -272,8 +306,12 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
             }
             return flags;
         }
-        public String getJavaPattern() {
-            return jsRegExpToJavaRegExp(jsSource_);
+        /**
+         * Returns the compiled Java pattern.
+         * @return the compiled Java pattern
+         */
+        Pattern getPattern() {
+            return pattern_;
         }
 
         boolean hasFlag(final char c) {
@@ -15,9 +15,12 @@
 package com.gargoylesoftware.htmlunit.xml;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.logging.Log;
@@ -103,15 +106,8 @@ public class XmlPage extends SgmlPage {
         super(webResponse, enclosingWindow);
 
         try {
-            if (webResponse == null || webResponse.getContentAsString() == null
-                    || webResponse.getContentAsString().trim().length() == 0) {
-                node_ = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument().getDocumentElement();
-            }
-            else {
-                node_ = XmlUtil.buildDocument(webResponse).getDocumentElement();
-            }
-            if (node_ != null) {
-                XmlUtil.appendChild(this, this, node_);
+            if (webResponse != null && !isEmpty(webResponse)) {
+                XmlUtil.buildDomNodes(webResponse, this);
             }
         }
         catch (final SAXException e) {
@@ -131,6 +127,41 @@ public class XmlPage extends SgmlPage {
         }
     }
 
+    /**
+     * Indicates if the content of the specified response is empty or only made of whitespace, without
+     * decoding it as a whole.
+     * @param webResponse the response
+     * @return <code>true</code> if the content is empty or only made of whitespace
+     * @throws IOException if the content can't be read
+     */
+    private static boolean isEmpty(final WebResponse webResponse) throws IOException {
+        final InputStream stream = webResponse.getContentAsStream();
+        if (stream == null) {
+            final String content = webResponse.getContentAsString();
+            return content == null || content.trim().length() == 0;
+        }
+        try {
+            Reader reader;
+            try {
+                reader = new InputStreamReader(stream, webResponse.getContentCharset());
+            }
+            catch (final UnsupportedEncodingException e) {
+                // as WebResponse.getContentAsString()
+                reader = new InputStreamReader(stream);
+            }
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        finally {
+            stream.close();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -149,9 +180,24 @@ public class XmlPage extends SgmlPage {
 
     /**
      * Returns the DOM representation of the XML content.
+     * The content of a response is parsed again the first time this method is called.
      * @return <code>null</code> if the content couldn't be parsed
      */
     public Document getXmlDocument() {
+        if (node_ == null && getWebResponse() != null && getDocumentElement() != null) {
+            try {
+                node_ = XmlUtil.buildDocument(getWebResponse()).getDocumentElement();
+            }
+            catch (final IOException e) {
+                LOG.warn("Failed parsing XML document " + getWebResponse().getRequestSettings().getUrl(), e);
+            }
+            catch (final SAXException e) {
+                LOG.warn("Failed parsing XML document " + getWebResponse().getRequestSettings().getUrl(), e);
+            }
+            catch (final ParserConfigurationException e) {
+                LOG.warn("Failed parsing XML document " + getWebResponse().getRequestSettings().getUrl(), e);
+            }
+        }
         if (node_ != null) {
             return node_.getOwnerDocument();
         }
@@ -15,13 +15,24 @@
 package com.gargoylesoftware.htmlunit.xml;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXResult;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,7 +47,10 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
 import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
 
 import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.WebResponse;
@@ -86,6 +100,12 @@ public final class XmlUtil {
         }
     };
 
+    private static final EntityResolver EMPTY_ENTITY_RESOLVER = new EntityResolver() {
+        public InputSource resolveEntity(final String publicId, final String systemId) {
+            return new InputSource(new StringReader(""));
+        }
+    };
+
     /**
      * Utility class, hide constructor.
      */
@@ -109,16 +129,98 @@ public final class XmlUtil {
 
         final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         factory.setNamespaceAware(true);
-        final InputSource source = new InputSource(new StringReader(webResponse.getContentAsString()));
         final DocumentBuilder builder = factory.newDocumentBuilder();
         builder.setErrorHandler(DISCARD_MESSAGES_HANDLER);
-        builder.setEntityResolver(new EntityResolver() {
-            public InputSource resolveEntity(final String publicId, final String systemId)
-                throws SAXException, IOException {
-                return new InputSource(new StringReader(""));
+        builder.setEntityResolver(EMPTY_ENTITY_RESOLVER);
+        final InputStream stream = webResponse.getContentAsStream();
+        try {
+            return builder.parse(createInputSource(webResponse, stream));
+        }
+        finally {
+            if (stream != null) {
+                stream.close();
             }
-        });
-        return builder.parse(source);
+        }
+    }
+
+    /**
+     * Transforms the source and appends the resulting nodes to the specified parent, without any
+     * intermediate W3C DOM. If the parent is a page, only elements are appended to it.
+     *
+     * @param transformer the transformer
+     * @param source the source to transform
+     * @param parent the node to which the result is appended
+     * @return the nodes appended to the parent
+     * @throws TransformerException if the transformation fails, in which case nothing is appended
+     */
+    public static List<DomNode> transform(final Transformer transformer, final Source source, final DomNode parent)
+        throws TransformerException {
+
+        final DomNodeBuilder builder = new DomNodeBuilder(parent);
+        final SAXResult result = new SAXResult(builder);
+        result.setLexicalHandler(builder);
+        boolean transformed = false;
+        try {
+            transformer.transform(source, result);
+            transformed = true;
+        }
+        finally {
+            if (!transformed) {
+                builder.discard();
+            }
+        }
+        return builder.getTopLevelNodes();
+    }
+
+    /**
+     * Parses the content of the web response and appends the resulting nodes to the specified page.
+     * Unlike {@link #buildDocument(WebResponse)} followed by {@link #appendChild(SgmlPage, DomNode, Node)},
+     * the nodes are created while the content is parsed, without any intermediate W3C DOM.
+     * If the parsing fails, the page is left without document element.
+     *
+     * @param webResponse the response from the server
+     * @param page the page to which the document element is appended
+     * @throws IOException if the content could not be read
+     * @throws SAXException if the parsing fails
+     * @throws ParserConfigurationException if a SAX parser cannot be created
+     */
+    public static void buildDomNodes(final WebResponse webResponse, final SgmlPage page)
+        throws IOException, SAXException, ParserConfigurationException {
+
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final XMLReader reader = factory.newSAXParser().getXMLReader();
+        // reports the namespace declarations as attributes, as the DOM does
+        reader.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+        final DomNodeBuilder builder = new DomNodeBuilder(page);
+        reader.setContentHandler(builder);
+        reader.setProperty("http://xml.org/sax/properties/lexical-handler", builder);
+        reader.setErrorHandler(DISCARD_MESSAGES_HANDLER);
+        reader.setEntityResolver(EMPTY_ENTITY_RESOLVER);
+        final InputStream stream = webResponse.getContentAsStream();
+        boolean parsed = false;
+        try {
+            reader.parse(createInputSource(webResponse, stream));
+            parsed = true;
+        }
+        finally {
+            if (stream != null) {
+                stream.close();
+            }
+            if (!parsed) {
+                builder.discard();
+            }
+        }
+        builder.setDocumentType();
+    }
+
+    private static InputSource createInputSource(final WebResponse webResponse, final InputStream stream)
+        throws IOException {
+        if (stream == null) {
+            return new InputSource(new StringReader(webResponse.getContentAsString()));
+        }
+        // the content is decoded while it is parsed, not as a whole in advance
+        return new InputSource(new InputStreamReader(stream, webResponse.getContentCharset()));
     }
 
     /**
@@ -229,6 +331,272 @@ public final class XmlUtil {
         }
     }
 
+    /**
+     * Consumes SAX events, from an XML parser or an XSLT transformation, to build {@link DomNode}s
+     * the same way {@link #appendChild(SgmlPage, DomNode, Node)} copies a W3C DOM.
+     */
+    private static final class DomNodeBuilder extends DefaultHandler implements LexicalHandler {
+        private final SgmlPage page_;
+        private final DomNode parent_;
+        private final List<DomNode> topLevelNodes_ = new ArrayList<DomNode>();
+        private final Map<String, String> prefixMappings_ = new HashMap<String, String>();
+        private final StringBuilder characters_ = new StringBuilder();
+        private DomNode currentNode_;
+        private DomDocumentType documentType_;
+
+        DomNodeBuilder(final DomNode parent) {
+            page_ = parent.getPage();
+            parent_ = parent;
+            currentNode_ = parent;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) {
+            prefixMappings_.put(prefix, uri);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                final Attributes atts) {
+            handleCharacters();
+            final DomElement element = createElement(uri, localName, qName, atts);
+            prefixMappings_.clear();
+            append(element);
+            currentNode_ = element;
+        }
+
+        private DomElement createElement(final String uri, final String localName, final String qName,
+                final Attributes atts) {
+            final String namespaceURI;
+            if (uri.length() == 0) {
+                namespaceURI = null;
+            }
+            else {
+                namespaceURI = uri;
+            }
+            String name = localName;
+            if (name.length() == 0) {
+                name = qName.substring(qName.indexOf(':') + 1);
+            }
+            final Map<String, DomAttr> attributes = createAttributes(atts);
+            if (HTMLParser.XHTML_NAMESPACE.equals(namespaceURI)) {
+                final IElementFactory factory = HTMLParser.getFactory(name);
+                return factory.createElementNS(page_, namespaceURI, name, toSaxAttributes(attributes));
+            }
+            String qualifiedName = qName;
+            if (page_ instanceof HtmlPage) {
+                final int index = qName.indexOf(':');
+                qualifiedName = qName.substring(0, index + 1) + name.toUpperCase();
+            }
+            return new DomElement(namespaceURI, qualifiedName, page_, attributes);
+        }
+
+        /**
+         * Creates the attributes of an element, with the namespace URIs the DOM gives them: <tt>null</tt> for
+         * unqualified attributes, and {@link XMLConstants#XMLNS_ATTRIBUTE_NS_URI} for namespace declarations,
+         * whether they are reported as attributes or not.
+         */
+        private Map<String, DomAttr> createAttributes(final Attributes atts) {
+            final Map<String, DomAttr> attributes = new LinkedHashMap<String, DomAttr>();
+            for (int i = 0; i < atts.getLength(); i++) {
+                final String attributeName = atts.getQName(i);
+                String attributeNamespaceURI = atts.getURI(i);
+                if (attributeNamespaceURI.length() == 0) {
+                    if (isNamespaceDeclaration(attributeName)) {
+                        attributeNamespaceURI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+                    }
+                    else {
+                        attributeNamespaceURI = null;
+                    }
+                }
+                final DomAttr attribute = new DomAttr(page_, attributeNamespaceURI, attributeName, atts.getValue(i));
+                attributes.put(attributeName, attribute);
+            }
+            // the namespace declarations which are not reported as attributes
+            for (final Map.Entry<String, String> mapping : prefixMappings_.entrySet()) {
+                final String attributeName;
+                if (mapping.getKey().length() == 0) {
+                    attributeName = "xmlns";
+                }
+                else {
+                    attributeName = "xmlns:" + mapping.getKey();
+                }
+                if (!attributes.containsKey(attributeName)) {
+                    attributes.put(attributeName, new DomAttr(page_, XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                            attributeName, mapping.getValue()));
+                }
+            }
+            return attributes;
+        }
+
+        /**
+         * Returns the specified attributes as SAX attributes, for the HTML element factories.
+         */
+        private static Attributes toSaxAttributes(final Map<String, DomAttr> attributes) {
+            final AttributesImpl saxAttributes = new AttributesImpl();
+            for (final DomAttr attribute : attributes.values()) {
+                saxAttributes.addAttribute(attribute.getNamespaceURI(), attribute.getLocalName(),
+                    attribute.getName(), null, attribute.getValue());
+            }
+            return saxAttributes;
+        }
+
+        private static boolean isNamespaceDeclaration(final String attributeName) {
+            return "xmlns".equals(attributeName) || attributeName.startsWith("xmlns:");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            handleCharacters();
+            currentNode_ = currentNode_.getParentNode();
+        }
+
+        /**
+         * Indicates if nodes other than elements can be added at the current level:
+         * a page only accepts its document element.
+         */
+        private boolean acceptsAnyNode() {
+            return currentNode_ != parent_ || !(parent_ instanceof SgmlPage);
+        }
+
+        private void append(final DomNode node) {
+            currentNode_.appendChild(node);
+            if (currentNode_ == parent_) {
+                topLevelNodes_.add(node);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            if (acceptsAnyNode()) {
+                characters_.append(ch, start, length);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) {
+            characters(ch, start, length);
+        }
+
+        /**
+         * Appends the character data accumulated so far to the current node as a text node.
+         */
+        private void handleCharacters() {
+            if (characters_.length() > 0) {
+                append(new DomText(page_, characters_.toString()));
+                characters_.setLength(0);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void processingInstruction(final String target, final String data) {
+            if (acceptsAnyNode()) {
+                LOG.warn("Processing instruction (" + target + ") is not yet supported.");
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void comment(final char[] ch, final int start, final int length) {
+            if (acceptsAnyNode()) {
+                handleCharacters();
+                append(new DomComment(page_, String.valueOf(ch, start, length)));
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void startCDATA() {
+            if (acceptsAnyNode()) {
+                handleCharacters();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void endCDATA() {
+            if (acceptsAnyNode()) {
+                append(new DomCDataSection(page_, characters_.toString()));
+                characters_.setLength(0);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void startDTD(final String name, final String publicId, final String systemId) {
+            documentType_ = new DomDocumentType(page_, name, publicId, systemId);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void endDTD() {
+            // nothing to do
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void startEntity(final String name) {
+            // nothing to do, the replacement text is reported as usual
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void endEntity(final String name) {
+            // nothing to do, the replacement text is reported as usual
+        }
+
+        /**
+         * Sets the document type of an {@link XmlPage}, once the content has been successfully parsed.
+         */
+        void setDocumentType() {
+            if (documentType_ != null && page_ instanceof XmlPage) {
+                ((XmlPage) page_).setDocumentType(documentType_);
+            }
+        }
+
+        /**
+         * Returns the nodes appended to the parent.
+         * @return the nodes appended to the parent
+         */
+        List<DomNode> getTopLevelNodes() {
+            return topLevelNodes_;
+        }
+
+        /**
+         * Removes the nodes built so far, when the parsing or the transformation fails.
+         */
+        void discard() {
+            for (final DomNode node : topLevelNodes_) {
+                node.remove();
+            }
+        }
+    }
+
     /**
      * Search for the namespace URI of the given prefix, starting from the specified element.
      * @param element the element to start searching from
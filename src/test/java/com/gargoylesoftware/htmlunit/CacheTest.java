@@ -28,6 +28,7 @@ import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.util.DateUtil;
 import org.apache.commons.lang.time.DateUtils;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -35,6 +36,7 @@ import com.gargoylesoftware.htmlunit.BrowserRunner.Alerts;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Browser;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Browsers;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.steadystate.css.dom.CSSStyleSheetImpl;
 
 /**
  * Tests for {@link Cache}.
@@ -228,6 +230,61 @@ public class CacheTest extends WebTestCase {
         assertEquals(2, client.getCache().getSize());
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Browsers(Browser.NONE)
+    public void separateBudgetsAndStatistics() throws Exception {
+        final Cache cache = new Cache();
+        cache.setMaxSize(2);
+
+        cache.cache(".a { color: red; }", new CSSStyleSheetImpl());
+        cache.cache(".b { color: red; }", new CSSStyleSheetImpl());
+        cacheResponse(cache, "a.js", 100);
+        cacheResponse(cache, "b.js", 100);
+        cacheResponse(cache, "c.js", 100);
+        assertEquals(4, cache.getSize());
+        assertEquals(1L, cache.getEvictionCount());
+
+        Assert.assertNotNull(cache.getCachedStyleSheet(".a { color: red; }"));
+        assertNull(cache.getCachedObject(new WebRequestSettings(new URL(URL_FIRST, "a.js"))));
+        Assert.assertNotNull(cache.getCachedObject(new WebRequestSettings(new URL(URL_FIRST, "b.js"))));
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+
+        // b.js has just been used, c.js is the least recently used script
+        cache.setMaxWeight(150);
+        assertEquals(3, cache.getSize());
+        assertNull(cache.getCachedObject(new WebRequestSettings(new URL(URL_FIRST, "c.js"))));
+        assertEquals(100L + 2 * 2 * ".a { color: red; }".length(), cache.getWeight());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0L, cache.getWeight());
+    }
+
+    private void cacheResponse(final Cache cache, final String file, final int length) throws Exception {
+        final WebRequestSettings settings = new WebRequestSettings(new URL(URL_FIRST, file));
+        final WebResponse response = new DummyWebResponse() {
+            @Override
+            public String getResponseHeaderValue(final String headerName) {
+                if ("Last-Modified".equals(headerName)) {
+                    return "Sun, 15 Jul 2007 20:46:27 GMT";
+                }
+                if ("Content-Length".equals(headerName)) {
+                    return String.valueOf(length);
+                }
+                return null;
+            }
+            @Override
+            public WebRequestSettings getRequestSettings() {
+                return settings;
+            }
+        };
+        cache.cacheIfPossible(settings, response, response);
+    }
+
     /**
      * Test that content retrieved with XHR is cached when right headers are here.
      * @throws Exception if the test fails
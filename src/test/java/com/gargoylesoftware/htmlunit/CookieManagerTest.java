@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -117,6 +118,35 @@ public class CookieManagerTest extends WebServerTestCase {
         assertEquals(cookie2, mgr.getCookies().iterator().next());
     }
 
+    /**
+     * Verifies the handling of the cookies received from a server and of the expired cookies.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void storedCookies() throws Exception {
+        final CookieManager mgr = new CookieManager();
+        final Date future = new Date(System.currentTimeMillis() + 60 * 60 * 1000);
+        final Date past = new Date(System.currentTimeMillis() - 60 * 60 * 1000);
+
+        mgr.storeCookie(new Cookie("localhost", "a", "1", "/", future, false));
+        mgr.storeCookie(new Cookie("localhost", "b", "2", "/", null, false));
+        final Cookie[] cookies = mgr.getCookiesArray();
+        assertEquals(2, cookies.length);
+        assertTrue(cookies == mgr.getCookiesArray());
+
+        // an expired cookie received from the server deletes the existing one
+        mgr.storeCookie(new Cookie("localhost", "a", "", "/", past, false));
+        assertEquals(1, mgr.getCookies().size());
+        assertEquals("b", mgr.getCookiesArray()[0].getName());
+
+        // an expired cookie added directly is kept until the next purge
+        mgr.addCookie(new Cookie("localhost", "c", "3", "/", past, false));
+        assertEquals(2, mgr.getCookies().size());
+        assertTrue(mgr.purgeExpiredCookies(new Date()));
+        assertEquals(1, mgr.getCookies().size());
+        assertFalse(mgr.purgeExpiredCookies(new Date()));
+    }
+
     /**
      * @throws Exception if the test fails
      */
@@ -134,6 +164,44 @@ public class CookieManagerTest extends WebServerTestCase {
         assertEquals(expectedAlerts, collectedAlerts);
     }
 
+    /**
+     * Verifies that the state synchronization methods overridden by a subclass are still called around requests.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void overriddenStateSynchronization() throws Exception {
+        final Map<String, Class< ? extends Servlet>> servlets = new HashMap<String, Class< ? extends Servlet>>();
+        servlets.put("/test", CommaCookieServlet.class);
+        startWebServer("./", null, servlets);
+
+        final List<String> calls = new ArrayList<String>();
+        final CookieManager mgr = new CookieManager() {
+            @Override
+            protected synchronized void updateState(final HttpState state) {
+                calls.add("updateState");
+                super.updateState(state);
+            }
+            @Override
+            protected synchronized void updateFromState(final HttpState state) {
+                calls.add("updateFromState");
+                super.updateFromState(state);
+            }
+        };
+        assertTrue(mgr.isStateSynchronizationOverridden());
+        assertFalse(new CookieManager().isStateSynchronizationOverridden());
+
+        final WebClient client = new WebClient();
+        client.setCookieManager(mgr);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        client.getPage("http://localhost:" + PORT + "/test");
+
+        final String[] expectedAlerts = {"my_key=\"Hello, big, big, world\"; another_key=Hi"};
+        assertEquals(expectedAlerts, collectedAlerts);
+        assertEquals(new String[] {"updateState", "updateFromState"}, calls);
+        assertEquals(2, mgr.getCookies().size());
+    }
+
     /**
      * Servlet for {@link #comma()}.
      */
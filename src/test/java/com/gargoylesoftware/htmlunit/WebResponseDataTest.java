@@ -14,11 +14,15 @@
  */
 package com.gargoylesoftware.htmlunit;
 
+import static org.junit.Assert.assertNotSame;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +68,48 @@ public class WebResponseDataTest extends WebServerTestCase {
         assertTrue(StringUtils.contains(body, "Test"));
     }
 
+    /**
+     * Tests that large bodies are written to a temporary file.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void bodyInFile() throws Exception {
+        final byte[] content = "0123456789".getBytes("ISO-8859-1");
+        final List<NameValuePair> headers = new ArrayList<NameValuePair>();
+
+        final WebResponseData smallData
+            = new WebResponseData(new ByteArrayInputStream(content), HttpStatus.SC_OK, "OK", headers, 10);
+        assertFalse(smallData.isBodyInFile());
+        assertTrue(Arrays.equals(content, smallData.getBody()));
+        assertEquals(10, smallData.getContentLength());
+
+        final WebResponseData data
+            = new WebResponseData(new ByteArrayInputStream(content), HttpStatus.SC_OK, "OK", headers, 5);
+        assertTrue(data.isBodyInFile());
+        assertTrue(Arrays.equals(content, data.getBody()));
+        assertEquals(10, data.getContentLength());
+        assertEquals("0123456789", IOUtils.toString(data.getInputStream(), "ISO-8859-1"));
+        final WebResponse response = new WebResponseImpl(data, URL_FIRST, HttpMethod.GET, 0);
+        assertEquals("0123456789", response.getContentAsString());
+
+        // the body is serialized in memory
+        final WebResponseData clone = clone(data);
+        assertFalse(clone.isBodyInFile());
+        assertTrue(Arrays.equals(content, clone.getBody()));
+
+        // compressed bodies are uncompressed before being written
+        final InputStream stream = getClass().getClassLoader().getResourceAsStream(GZIPPED_FILE);
+        headers.add(new NameValuePair("Content-Encoding", "gzip"));
+        final WebResponseData zippedData = new WebResponseData(stream, HttpStatus.SC_OK, "OK", headers, 10);
+        assertTrue(zippedData.isBodyInFile());
+        assertTrue(StringUtils.contains(new String(zippedData.getBody(), "UTF-8"), "Test"));
+
+        // the temporary file is deleted when cleaning up
+        data.cleanUp();
+        assertFalse(data.isBodyInFile());
+        assertNull(data.getBody());
+    }
+
     /**
      * Verifies that a null body input stream is handled correctly. A null body may be sent, for
      * example, when a 304 (Not Modified) response is sent to the client. See bug 1706505.
@@ -75,6 +121,7 @@ public class WebResponseDataTest extends WebServerTestCase {
         final List<NameValuePair> headers = new ArrayList<NameValuePair>();
         final WebResponseData data = new WebResponseData(body, 304, "NOT_MODIFIED", headers);
         assertNull(data.getBody());
+        assertEquals(0, data.getContentLength());
     }
 
     /**
@@ -107,6 +154,45 @@ public class WebResponseDataTest extends WebServerTestCase {
         assertEquals("Hello Redirected!", page.asText());
     }
 
+    /**
+     * Verifies that the body written to a temporary file is still available once the page created from
+     * the response has been replaced in its window.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void bodyInFileAfterNavigation() throws Exception {
+        final Map<String, Class< ? extends Servlet>> servlets = new HashMap<String, Class< ? extends Servlet>>();
+        servlets.put("/folder2/page2", RedirectionServlet.class);
+        startWebServer("./", null, servlets);
+
+        final WebClient client = new WebClient();
+        client.setMaxInMemory(5);
+
+        final HtmlPage page = client.getPage("http://localhost:" + PORT + "/folder2/page2");
+        client.getPage("http://localhost:" + PORT + "/folder2/page2");
+        assertNotSame(page, client.getCurrentWindow().getEnclosedPage());
+        assertEquals("Hello Redirected!", page.getWebResponse().getContentAsString());
+    }
+
+    /**
+     * Verifies that the subclasses overriding {@link WebResponseData#getBody(InputStream, List)} still
+     * provide the body when large bodies are written to temporary files.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void overriddenGetBody() throws Exception {
+        final List<NameValuePair> headers = new ArrayList<NameValuePair>();
+        final InputStream stream = new ByteArrayInputStream("0123456789".getBytes("ISO-8859-1"));
+        final WebResponseData data = new WebResponseData(stream, HttpStatus.SC_OK, "OK", headers, 5) {
+            @Override
+            protected byte[] getBody(final InputStream body, final List<NameValuePair> bodyHeaders) {
+                return new byte[] {'a'};
+            }
+        };
+        assertFalse(data.isBodyInFile());
+        assertTrue(Arrays.equals(new byte[] {'a'}, data.getBody()));
+    }
+
     /**
      * Servlet for {@link #redirection()}.
      */
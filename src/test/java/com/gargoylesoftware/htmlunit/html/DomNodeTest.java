@@ -19,6 +19,9 @@ import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -697,4 +700,70 @@ public class DomNodeTest extends WebTestCase {
         page.removeDomChangeListener(listener);
     }
 
+    /**
+     * Pages mutated concurrently from several threads must not interfere with each other's
+     * DOM change listeners (and must not share any lock while doing so).
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void domChangeListener_independentPagesInParallel() throws Exception {
+        final int threadCount = 8;
+        final int iterations = 500;
+        final String html = "<html><head></head><body><div id='d'></div></body></html>";
+
+        final HtmlPage[] pages = new HtmlPage[threadCount];
+        final AtomicInteger[] counters = new AtomicInteger[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            pages[i] = loadPage(html);
+            final AtomicInteger counter = new AtomicInteger();
+            counters[i] = counter;
+            pages[i].addDomChangeListener(new DomChangeListener() {
+                private static final long serialVersionUID = -2567423468236467327L;
+                public void nodeAdded(final DomChangeEvent event) {
+                    counter.incrementAndGet();
+                }
+                public void nodeDeleted(final DomChangeEvent event) {
+                    counter.incrementAndGet();
+                }
+            });
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 0; i < threadCount; i++) {
+            final HtmlPage page = pages[i];
+            final Thread thread = new Thread("DomNodeTest-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        final HtmlElement div = page.getHtmlElementById("d");
+                        for (int j = 0; j < iterations; j++) {
+                            final HtmlElement span = page.createElement("span");
+                            div.appendChild(span);
+                            span.remove();
+                        }
+                    }
+                    catch (final Throwable t) {
+                        failure.set(t);
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            };
+            thread.start();
+        }
+        start.countDown();
+        done.await();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        for (final AtomicInteger counter : counters) {
+            assertEquals(2 * iterations, counter.get());
+        }
+    }
+
 }
@@ -1068,6 +1068,49 @@ public class HtmlElementTest extends WebTestCase {
         assertEquals("test" + LINE_SEPARATOR + "Welcome" + LINE_SEPARATOR + "to the world", page.asText());
     }
 
+    /**
+     * The displayed state of the nodes must follow the changes of the tree and of the style attributes.
+     * @throws Exception on test failure
+     */
+    @Test
+    public void isDisplayedAfterChanges() throws Exception {
+        final String html = "<html>\n"
+            + "<head>\n"
+            + "    <title>test</title>\n"
+            + "</head>\n"
+            + "<body>\n"
+            + "<div id='outer'><span id='inner'>hello</span></div>\n"
+            + "<div id='hidden' style='display:none'></div>\n"
+            + "</body>\n"
+            + "</html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement outer = page.getHtmlElementById("outer");
+        final HtmlElement inner = page.getHtmlElementById("inner");
+        final HtmlElement hidden = page.getHtmlElementById("hidden");
+        assertTrue(inner.isDisplayed());
+        assertFalse(hidden.isDisplayed());
+
+        outer.setAttribute("style", "visibility: hidden");
+        assertFalse(inner.isDisplayed());
+        inner.setAttribute("style", "visibility: visible");
+        assertTrue(inner.isDisplayed());
+
+        hidden.appendChild(outer);
+        assertFalse(outer.isDisplayed());
+        assertFalse(inner.isDisplayed());
+
+        hidden.removeAttribute("style");
+        assertFalse(outer.isDisplayed());
+        assertTrue(inner.isDisplayed());
+
+        outer.remove();
+        inner.removeAttribute("style");
+        assertFalse(inner.isDisplayed());
+        outer.removeAttribute("style");
+        assertTrue(inner.isDisplayed());
+    }
+
     /**
      * @throws Exception on test failure
      */
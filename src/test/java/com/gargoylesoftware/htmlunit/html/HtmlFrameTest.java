@@ -218,4 +218,49 @@ public class HtmlFrameTest extends WebTestCase {
         assertEquals("page 3", ((HtmlPage) page.getFrameByName("f2").getEnclosedPage()).getTitleText());
     }
 
+    /**
+     * Frames downloaded in parallel must still be loaded in document order, and frames whose content
+     * has been changed by a script in the meantime must not be loaded with the downloaded content.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void parallelDownloads() throws Exception {
+        final String html =
+            "<html><head><title>frames</title></head>\n"
+            + "<frameset cols='30%,30%,*'>\n"
+            + "<frame name='f1' src='1.html'/>\n"
+            + "<frame name='f2' src='2.html'/>\n"
+            + "<frame name='f3' src='3.html'/>\n"
+            + "</frameset>\n"
+            + "</html>";
+
+        final String frame1 = "<html><head><title>1</title></head>\n"
+            + "<body><script>\n"
+            + "  alert(1);\n"
+            + "  parent.frames['f3'].location.href = '4.html';\n"
+            + "</script></body></html>";
+        final String frame2 = "<html><head><title>2</title></head><body><script>alert(2)</script></body></html>";
+        final String frame3 = "<html><head><title>3</title></head><body><script>alert(3)</script></body></html>";
+        final String frame4 = "<html><head><title>4</title></head><body><script>alert(4)</script></body></html>";
+
+        final WebClient webClient = new WebClient();
+        webClient.setParallelDownloadsPerHost(2);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        webClient.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection();
+        webClient.setWebConnection(conn);
+
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(new URL(URL_FIRST, "1.html"), frame1);
+        conn.setResponse(new URL(URL_FIRST, "2.html"), frame2);
+        conn.setResponse(new URL(URL_FIRST, "3.html"), frame3);
+        conn.setResponse(new URL(URL_FIRST, "4.html"), frame4);
+
+        final HtmlPage page = webClient.getPage(URL_FIRST);
+
+        assertEquals(new String[] {"1", "4", "2"}, collectedAlerts);
+        assertEquals("2", ((HtmlPage) page.getFrameByName("f2").getEnclosedPage()).getTitleText());
+        assertEquals("4", ((HtmlPage) page.getFrameByName("f3").getEnclosedPage()).getTitleText());
+    }
+
 }
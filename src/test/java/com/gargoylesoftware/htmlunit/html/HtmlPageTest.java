@@ -47,6 +47,7 @@ import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.NameValuePair;
 import org.junit.Assert;
 import org.junit.Test;
+import org.w3c.dom.DOMException;
 import org.w3c.dom.NodeList;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
@@ -1851,6 +1852,272 @@ public class HtmlPageTest extends WebServerTestCase {
         clonedPage.getByXPath("//p");
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void mayHaveEventHandlers() throws Exception {
+        final String html = "<html><head><title>foo</title>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    var input = document.getElementById('myInput');\n"
+            + "    input.addEventListener('keydown', function() { alert('keydown'); }, false);\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</head><body onload='test()'>\n"
+            + "<input id='myInput' onkeyup='alert(this.value)'>\n"
+            + "</body></html>";
+
+        final List<String> collectedAlerts = new ArrayList<String>();
+        final HtmlPage page = loadPage(html, collectedAlerts);
+        assertTrue(page.mayHaveEventHandlers("keydown"));
+        assertTrue(page.mayHaveEventHandlers("keyup"));
+        assertFalse(page.mayHaveEventHandlers("keypress"));
+        assertFalse(page.mayHaveEventHandlers("click"));
+
+        final HtmlTextInput input = page.getHtmlElementById("myInput");
+        input.type("ab");
+        input.click();
+        assertEquals(new String[] {"keydown", "a", "keydown", "ab"}, collectedAlerts);
+    }
+
+    /**
+     * Event handler attribute names are case-insensitive.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void mayHaveEventHandlers_uppercaseAttribute() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body>\n"
+            + "<input id='myInput'>\n"
+            + "</body></html>";
+
+        final HtmlPage page = loadPage(html);
+        assertFalse(page.mayHaveEventHandlers("click"));
+        assertFalse(page.mayHaveEventHandlers("keyup"));
+
+        final HtmlTextInput input = page.getHtmlElementById("myInput");
+        input.setAttribute("ONCLICK", "alert('click')");
+        input.setAttribute("OnKeyUp", "alert('keyup')");
+        assertTrue(page.mayHaveEventHandlers("click"));
+        assertTrue(page.mayHaveEventHandlers("keyup"));
+        assertFalse(page.mayHaveEventHandlers("keydown"));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void mayHaveEventHandlers_nodeMovedFromFrame() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body>\n"
+            + "<iframe id='myFrame' src='" + URL_SECOND + "'></iframe>\n"
+            + "</body></html>";
+        final String frameContent = "<html><head><title>frame</title>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    var input = document.getElementById('myInput');\n"
+            + "    input.addEventListener('keydown', function() { alert('keydown'); }, false);\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</head><body onload='test()'>\n"
+            + "<input id='myInput' onkeyup='alert(this.value)'>\n"
+            + "</body></html>";
+
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        final MockWebConnection conn = new MockWebConnection();
+        client.setWebConnection(conn);
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(URL_SECOND, frameContent);
+
+        final HtmlPage page = client.getPage(URL_FIRST);
+        assertFalse(page.mayHaveEventHandlers("keydown"));
+        assertFalse(page.mayHaveEventHandlers("keyup"));
+
+        final HtmlInlineFrame frame = page.getHtmlElementById("myFrame");
+        final HtmlPage framePage = (HtmlPage) frame.getEnclosedPage();
+        final HtmlTextInput input = framePage.getHtmlElementById("myInput");
+        page.getBody().appendChild(input);
+        assertTrue(page.mayHaveEventHandlers("keydown"));
+        assertTrue(page.mayHaveEventHandlers("keyup"));
+        assertFalse(page.mayHaveEventHandlers("click"));
+    }
+
+    /**
+     * Verifies that the ID and name maps follow the moves of the elements, and that cycles are rejected.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void mappedElementsFollowTreeChanges() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body>\n"
+            + "<div id='d1'><span id='s1' name='n1'></span></div>\n"
+            + "</body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement div = page.getHtmlElementById("d1");
+        final HtmlElement span = page.getHtmlElementById("s1");
+        assertEquals(1, page.getElementsByName("n1").size());
+
+        div.remove();
+        assertEquals(0, page.getElementsByName("n1").size());
+        try {
+            page.getHtmlElementById("s1");
+            fail("The removed element should not be found.");
+        }
+        catch (final ElementNotFoundException e) {
+            // expected
+        }
+
+        final HtmlElement clone = (HtmlElement) div.cloneNode(true);
+        clone.setAttribute("id", "d2");
+        try {
+            page.getHtmlElementById("d2");
+            fail("The detached clone should not be found.");
+        }
+        catch (final ElementNotFoundException e) {
+            // expected
+        }
+
+        page.getBody().appendChild(div);
+        page.getBody().appendChild(clone);
+        assertSame(span, page.getHtmlElementById("s1"));
+        assertSame(clone, page.getHtmlElementById("d2"));
+        assertEquals(2, page.getElementsByName("n1").size());
+
+        try {
+            span.appendChild(div);
+            fail("A node should not be inserted into one of its descendants.");
+        }
+        catch (final DOMException e) {
+            // expected
+        }
+        assertSame(div, span.getParentNode());
+    }
+
+    /**
+     * Verifies that an element moved within the page keeps its position in the ID and name maps,
+     * and that the elements quietly moved by the parser follow their new parent.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void mappedElementsMovedWithinPage() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body>\n"
+            + "<div id='d1'><span id='s1' name='n'></span></div>\n"
+            + "<div id='d2'><span id='s2' name='n'></span></div>\n"
+            + "</body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final HtmlElement span1 = page.getHtmlElementById("s1");
+        final HtmlElement span2 = page.getHtmlElementById("s2");
+        final List<HtmlElement> expected = Arrays.asList(span1, span2);
+        assertEquals(expected, page.getElementsByName("n"));
+
+        page.getBody().appendChild(span1);
+        assertEquals(expected, page.getElementsByName("n"));
+
+        span2.insertBefore(span1);
+        assertEquals(expected, page.getElementsByName("n"));
+
+        final HtmlElement div2 = page.getHtmlElementById("d2");
+        final HtmlElement detached = page.createElement("div");
+        div2.quietlyRemoveAndMoveChildrenTo(detached);
+        assertEquals(Arrays.asList(span1), page.getElementsByName("n"));
+        try {
+            page.getHtmlElementById("d2");
+            fail("The removed element should not be found.");
+        }
+        catch (final ElementNotFoundException e) {
+            // expected
+        }
+
+        page.getBody().appendChild(detached);
+        assertSame(span2, page.getHtmlElementById("s2"));
+        assertEquals(2, page.getElementsByName("n").size());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void prefetch() throws Exception {
+        final String html = "<html><head><title>foo</title>\n"
+            + "<link rel='stylesheet' href='style.css'>\n"
+            + "<script src='script.js'></script>\n"
+            + "</head><body onload='test()'>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    alert(document.styleSheets[0].cssRules.length);\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</body></html>";
+
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        client.setPrefetchEnabled(true);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection();
+        client.setWebConnection(conn);
+
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(new URL(URL_FIRST, "style.css"), "body { color: red }", "text/css");
+        conn.setResponse(new URL(URL_FIRST, "script.js"), "alert('script');", "text/javascript");
+
+        client.getPage(URL_FIRST);
+        assertEquals(new String[] {"script", "1"}, collectedAlerts);
+        // each resource has been downloaded only once
+        assertEquals(3, conn.getRequestCount());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void prefetchWithCharacterReference() throws Exception {
+        final String html = "<html><head><title>foo</title>\n"
+            + "<script src='script.js?a=1&amp;b=2'></script>\n"
+            + "</head><body></body></html>";
+
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        client.setPrefetchEnabled(true);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection();
+        client.setWebConnection(conn);
+
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(new URL(URL_FIRST, "script.js?a=1&b=2"), "alert('script');", "text/javascript");
+        conn.setDefaultResponse("alert('wrong');", "text/javascript");
+
+        client.getPage(URL_FIRST);
+        assertEquals(new String[] {"script"}, collectedAlerts);
+        // the prefetched script has been used by the parser
+        assertEquals(2, conn.getRequestCount());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void prefetchWithoutJavaScript() throws Exception {
+        final String html = "<html><head><title>foo</title>\n"
+            + "<link rel='stylesheet' href='style.css'>\n"
+            + "<script src='script.js'></script>\n"
+            + "</head><body>\n"
+            + "<img src='image.png' onload='alert(1)'>\n"
+            + "</body></html>";
+
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        client.setPrefetchEnabled(true);
+        client.setJavaScriptEnabled(false);
+        final MockWebConnection conn = new MockWebConnection();
+        client.setWebConnection(conn);
+
+        conn.setResponse(URL_FIRST, html);
+        conn.setDefaultResponse("");
+
+        client.getPage(URL_FIRST);
+        // nothing but the page itself has been downloaded
+        assertEquals(1, conn.getRequestCount());
+    }
+
     /**
      * @exception Exception If the test fails
      */
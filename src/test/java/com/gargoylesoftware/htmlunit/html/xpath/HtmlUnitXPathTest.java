@@ -286,4 +286,93 @@ public class HtmlUnitXPathTest extends WebTestCase {
         div.setAttribute("class", "design");
         Assert.assertSame(div, page.getFirstByXPath("//*[@class = 'design']"));
     }
+
+    /**
+     * Compiled expressions are shared between evaluations, which must not influence each other.
+     * @throws Exception if test fails
+     */
+    @Test
+    public void sameExpressionOnDifferentPages() throws Exception {
+        final String content1 = "<html><head><title>Test page</title></head>\n"
+            + "<body><div id='d1'><span>a</span></div><div id='d2'><span>b</span><span>c</span></div></body>\n"
+            + "</html>";
+        final String content2 = "<html><head><title>Test page</title></head>\n"
+            + "<body><DIV id='d3'><SPAN>d</SPAN></DIV></body>\n"
+            + "</html>";
+
+        final HtmlPage page1 = loadPage(content1);
+        final HtmlPage page2 = loadPage(content2);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(3, page1.getByXPath("//div/span").size());
+            assertEquals(1, page2.getByXPath("//div/span").size());
+            assertEquals(page1.getHtmlElementById("d1").getFirstChild(), page1.getFirstByXPath("//div/span"));
+            assertEquals(page2.getHtmlElementById("d3").getFirstChild(), page2.getFirstByXPath("//div/span"));
+            assertEquals(page1.getHtmlElementById("d2").getLastChild(),
+                    page1.getHtmlElementById("d2").getFirstByXPath("./span[2]"));
+            assertNull(page1.getFirstByXPath("//div/p"));
+            final Object count = page1.getFirstByXPath("count(//div)");
+            assertEquals(Double.valueOf(2), count);
+        }
+    }
+
+    /**
+     * Simple expressions are evaluated without Xalan, and must give the same results.
+     * Appending <tt>[true()]</tt> to an expression doesn't change its result but forces Xalan evaluation.
+     * @throws Exception if test fails
+     */
+    @Test
+    public void simpleExpressionsSameAsXalan() throws Exception {
+        final String content = "<html><head><title>Test page</title></head>\n"
+            + "<body>\n"
+            + "<div class='x' id='d1'><span>1</span><div class='y'><span>2</span><a href='#'>a</a></div>"
+            + "<span>3</span><a name='n'>b</a></div>\n"
+            + "<table><tr><td>1</td><td>2</td><td id='c3'>3</td></tr><tr><td>4</td></tr></table>\n"
+            + "<IMG SRC='foo.png'><img src='bar.png' alt=\"x\">\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(content);
+
+        final String[] expressions = {"//a[@href]", "//div[@class='x']/span", "//div/span", "//div//span",
+            "//td[3]", "//tr/td[1]", "/html/body/div", "//IMG/@src", "//img[@alt=\"x\"]", "//*[@class]",
+            "//div//*", "//div/div/span[1]", "/html/body//td[2]", "html/body", "//span[2]"};
+        for (final String expression : expressions) {
+            Assert.assertEquals(expression, page.getByXPath(expression + "[true()]"), page.getByXPath(expression));
+        }
+
+        final DomNode tr = page.getHtmlElementById("c3").getParentNode();
+        assertEquals(tr.getByXPath("./td[3][true()]"), tr.getByXPath("./td[3]"));
+        assertEquals(page.getHtmlElementById("c3"), tr.getFirstByXPath("./td[3]"));
+    }
+
+
+    /**
+     * The first node matching a simple expression is found without evaluating the whole expression,
+     * and must be the first one in document order, as found by Xalan.
+     * @throws Exception if test fails
+     */
+    @Test
+    public void simpleExpressionsFirstSameAsXalan() throws Exception {
+        final String content = "<html><head><title>Test page</title></head>\n"
+            + "<body>\n"
+            + "<div id='d1'><div class='y'><span>1</span><a href='#'>a</a></div><span>2</span></div>\n"
+            + "<table><tr><td>1</td><td id='c2'>2</td></tr><tr><td>3</td><td>4</td><td>5</td></tr></table>\n"
+            + "<img src='foo.png'><IMG SRC='bar.png' alt='x'>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(content);
+
+        final String[] expressions = {"//div/span", "//div//span", "//div/span[1]", "//td[3]", "//tr/td[2]",
+            "//*[@href]", "//div[@class='y']/a/@href", "//img/@src", "//img[@alt='x']", "/html/body//td[1]",
+            "//div//div/span", "//div/p", "//td[4]", "html/body/div/div"};
+        for (final String expression : expressions) {
+            Assert.assertSame(expression, page.getFirstByXPath(expression + "[true()]"),
+                    page.getFirstByXPath(expression));
+        }
+
+        final DomNode div = page.getHtmlElementById("d1");
+        assertEquals("2", ((DomNode) div.getFirstByXPath("./span")).asText());
+        assertEquals("1", ((DomNode) div.getFirstByXPath(".//span")).asText());
+        assertNull(div.getFirstByXPath("./div/span[2]"));
+        final HtmlElement td = page.getHtmlElementById("c2");
+        Assert.assertSame(td.getAttributeNode("id"), td.getFirstByXPath("@id"));
+    }
+
 }
@@ -239,6 +239,50 @@ public class JavaScriptEngineTest extends WebTestCase {
         assertEquals(expectedAlerts, collectedAlerts);
     }
 
+    /**
+     * Checks that windows share the host functions when enabled, and that scripts redefining them
+     * in one window don't affect the other windows.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Browsers(Browser.FF)
+    public void sharedFunctions() throws Exception {
+        final String firstContent
+            = "<html><head>\n"
+            + "<script>\n"
+            + "function test() {\n"
+            + "  var f = frames[0];\n"
+            + "  alert(f.document.createElement == document.createElement);\n"
+            + "  var original = document.body.appendChild;\n"
+            + "  HTMLElement.prototype.appendChild = function() { return 'overridden'; };\n"
+            + "  alert(document.body.appendChild(null));\n"
+            + "  alert(f.document.body.appendChild == original);\n"
+            + "}\n"
+            + "</script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "  <iframe src='page2.html'></iframe>\n"
+            + "</body>\n"
+            + "</html>";
+
+        final String secondContent = "<html><body></body></html>";
+
+        final WebClient client = getWebClient();
+        client.setJavaScriptFunctionSharingEnabled(true);
+        final MockWebConnection webConnection = new MockWebConnection();
+        webConnection.setDefaultResponse(secondContent);
+        webConnection.setResponse(URL_FIRST, firstContent);
+        client.setWebConnection(webConnection);
+
+        final String[] expectedAlerts = {"true", "overridden", "true"};
+
+        final List<String> collectedAlerts = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        client.getPage(URL_FIRST);
+
+        assertEquals(expectedAlerts, collectedAlerts);
+    }
+
     /**
      * If a reference has been hold on a page and the page is not
      * anymore the one contained in "its" window, JavaScript execution should
@@ -1421,6 +1465,35 @@ public class JavaScriptEngineTest extends WebTestCase {
         assertFalse(cf2 == ContextFactory.getGlobal());
     }
 
+    /**
+     * Verifies that the same script is compiled only once, even by different WebClient instances.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Browsers(Browser.NONE)
+    public void compiledScriptsShared() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body></body></html>";
+        final HtmlPage page1 = loadPage(html);
+
+        final WebClient client2 = createNewWebClient();
+        final MockWebConnection webConnection = new MockWebConnection();
+        webConnection.setDefaultResponse(html);
+        client2.setWebConnection(webConnection);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        client2.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final HtmlPage page2 = client2.getPage(URL_FIRST);
+
+        final String source = "alert(document.title + ' ' + (1 + 2));";
+        final Script script1 = page1.getWebClient().getJavaScriptEngine().compile(page1, source, "test.js", 1);
+        final Script script2 = client2.getJavaScriptEngine().compile(page2, source, "test.js", 1);
+        assertTrue(script1 == script2);
+        assertFalse(script1 == client2.getJavaScriptEngine().compile(page2, source, "test.js", 2));
+        assertFalse(script1 == client2.getJavaScriptEngine().compile(page2, source + ' ', "test.js", 1));
+
+        client2.getJavaScriptEngine().execute(page2, script1);
+        assertEquals(new String[] {"foo 3"}, collectedAlerts);
+    }
+
     /**
      * Configure subclass of {@link JavaScriptEngine} that collects background JS expressions.
      * @throws Exception if the test fails
@@ -14,6 +14,7 @@
  */
 package com.gargoylesoftware.htmlunit.javascript;
 
+import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
@@ -31,6 +32,26 @@ import com.gargoylesoftware.htmlunit.WebTestCase;
  */
 public class ProxyAutoConfigTest extends WebTestCase {
 
+    /**
+     * The content is executed only once, and the results are reused for the same scheme, host and port.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void evaluate() throws Exception {
+        final String content = "var count = 0;\n"
+            + "function FindProxyForURL(url, host) {\n"
+            + "  count++;\n"
+            + "  return 'PROXY ' + host + count + ':80';\n"
+            + "}";
+        final ProxyAutoConfig config = new ProxyAutoConfig(content);
+        assertEquals("PROXY first1:80", config.evaluate(new URL("http://first/a.html")));
+        assertEquals("PROXY first1:80", config.evaluate(new URL("http://first/b.html")));
+        assertEquals("PROXY second2:80", config.evaluate(new URL("http://second/a.html")));
+        assertEquals("PROXY first3:80", config.evaluate(new URL("https://first/a.html")));
+
+        assertEquals("PROXY first1:80", ProxyAutoConfig.evaluate(content, new URL("http://first/a.html")));
+    }
+
     /**
      * Test case.
      */
@@ -14,6 +14,12 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.background;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import junit.framework.Assert;
 
 import org.apache.commons.lang.mutable.MutableInt;
@@ -144,4 +150,121 @@ public class JavaScriptJobManagerMinimalTest {
         Assert.assertEquals(1, manager_.getJobCount());
     }
 
+    /**
+     * Verifies that a thread waiting for the jobs executes them itself once they are switched to virtual time.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void waitForJobsStartingBefore_switchToVirtualTime() throws Exception {
+        final MutableInt count = new MutableInt(0);
+        final JavaScriptJob job1 = new JavaScriptJob(50, null) {
+            public void run() {
+                manager_.setVirtualTime(true);
+            }
+        };
+        final JavaScriptJob job2 = new JavaScriptJob(10000, null) {
+            public void run() {
+                count.increment();
+            }
+        };
+        manager_.addJob(job1, page_);
+        manager_.addJob(job2, page_);
+        final long start = System.currentTimeMillis();
+        Assert.assertEquals(0, manager_.waitForJobsStartingBefore(20000));
+        Assert.assertEquals(1, count.intValue());
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    /**
+     * Verifies that the job managers of many windows share the threads of their scheduler,
+     * while still executing the jobs of each window one at a time and in order.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void sharedScheduler() throws Exception {
+        final JavaScriptJobScheduler scheduler = new JavaScriptJobScheduler(2);
+        final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        final List<JavaScriptJobManagerImpl> managers = new ArrayList<JavaScriptJobManagerImpl>();
+        final List<List<Integer>> executions = new ArrayList<List<Integer>>();
+        for (int i = 0; i < 20; i++) {
+            final JavaScriptJobManagerImpl manager = new JavaScriptJobManagerImpl(window_, scheduler);
+            final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+            final MutableInt running = new MutableInt(0);
+            for (int j = 0; j < 5; j++) {
+                final int index = j;
+                final JavaScriptJob job = new JavaScriptJob(10 * j, null) {
+                    public void run() {
+                        threadNames.add(Thread.currentThread().getName());
+                        running.increment();
+                        Assert.assertEquals(1, running.intValue());
+                        executed.add(index);
+                        running.decrement();
+                    }
+                };
+                manager.addJob(job, page_);
+            }
+            managers.add(manager);
+            executions.add(executed);
+        }
+        for (int i = 0; i < managers.size(); i++) {
+            final JavaScriptJobManagerImpl manager = managers.get(i);
+            Assert.assertEquals(0, manager.waitForJobs(1000));
+            Assert.assertEquals(5, manager.getExecutedJobCount());
+            Assert.assertEquals(0, manager.getFailedJobCount());
+            Assert.assertEquals("[0, 1, 2, 3, 4]", executions.get(i).toString());
+        }
+        Assert.assertTrue(threadNames.size() <= 2);
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void virtualTime() throws Exception {
+        manager_.setVirtualTime(true);
+        final long start = manager_.getCurrentTime();
+        final List<Long> executions = new ArrayList<Long>();
+        final JavaScriptJob job1 = new JavaScriptJob(10000, null) {
+            public void run() {
+                executions.add(manager_.getCurrentTime() - start);
+            }
+        };
+        final JavaScriptJob job2 = new JavaScriptJob(500, 1000) {
+            public void run() {
+                executions.add(manager_.getCurrentTime() - start);
+            }
+        };
+        manager_.addJob(job1, page_);
+        final int id = manager_.addJob(job2, page_);
+
+        Assert.assertEquals(2, manager_.advanceTime(2000));
+        Assert.assertEquals("[500, 1500]", executions.toString());
+        Assert.assertEquals(start + 2000, manager_.getCurrentTime());
+
+        manager_.removeJob(id);
+        final long realStart = System.currentTimeMillis();
+        Assert.assertEquals(0, manager_.waitForJobs(20000));
+        Assert.assertEquals("[500, 1500, 10000]", executions.toString());
+        Assert.assertEquals(start + 10000, manager_.getCurrentTime());
+        Assert.assertTrue(System.currentTimeMillis() - realStart < 5000);
+    }
+
+    /**
+     * Verifies that shutting down the job manager from a job executed on virtual time
+     * doesn't interrupt the caller's thread.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void shutdownOnVirtualTime() throws Exception {
+        manager_.setVirtualTime(true);
+        final JavaScriptJob job = new JavaScriptJob(100, null) {
+            public void run() {
+                manager_.shutdown();
+            }
+        };
+        manager_.addJob(job, page_);
+        Assert.assertEquals(1, manager_.advanceTime(200));
+        Assert.assertFalse(Thread.interrupted());
+    }
+
 }
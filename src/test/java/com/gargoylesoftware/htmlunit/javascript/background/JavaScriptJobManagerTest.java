@@ -23,6 +23,7 @@ import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
 import com.gargoylesoftware.htmlunit.MockWebConnection;
 import com.gargoylesoftware.htmlunit.TopLevelWindow;
 import com.gargoylesoftware.htmlunit.WebClient;
@@ -219,4 +220,110 @@ public class JavaScriptJobManagerTest extends WebTestCase {
 
         Assert.assertEquals("No new alerts should have happened", finalValue, collectedAlerts.size());
     }
+
+    /**
+     * Verifies that on virtual time, timeouts are executed without waiting and that <tt>Date</tt> follows.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void virtualTime() throws Exception {
+        final String content = "<html>\n"
+            + "<head>\n"
+            + "  <script>\n"
+            + "    var start = new Date().getTime();\n"
+            + "    function test() {\n"
+            + "      setTimeout(function() { alert(new Date().getTime() - start >= 60000); }, 60000);\n"
+            + "    }\n"
+            + "  </script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "</body>\n"
+            + "</html>";
+
+        final WebClient client = new WebClient();
+        client.setVirtualTimeEnabled(true);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection webConnection = new MockWebConnection();
+        webConnection.setResponse(URL_FIRST, content);
+        client.setWebConnection(webConnection);
+
+        startTimedTest();
+        client.getPage(URL_FIRST);
+        assertEquals(1, client.advanceVirtualTime(30000));
+        assertEquals(Collections.EMPTY_LIST, collectedAlerts);
+        assertEquals(0, client.waitForBackgroundJavaScript(60000));
+        assertEquals(Collections.singletonList("true"), collectedAlerts);
+        assertMaxTestRunTime(10000);
+    }
+
+    /**
+     * Verifies that waiting for the jobs of a page does not hang when a job navigates to another page
+     * while the page is put in the page cache, which suspends its jobs.
+     * @throws Exception if the test fails
+     */
+    @Test(timeout = 20000)
+    public void waitForJobsStartingBeforeWithCachedPage() throws Exception {
+        final String firstContent = "<html>\n"
+            + "<head>\n"
+            + "  <script>\n"
+            + "    function test() {\n"
+            + "      setInterval(function() { }, 10);\n"
+            + "      setTimeout(function() { location = '" + URL_SECOND + "'; }, 100);\n"
+            + "    }\n"
+            + "  </script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "</body>\n"
+            + "</html>";
+        final String secondContent = "<html><head><title>Second</title></head><body></body></html>";
+
+        final WebClient client = new WebClient();
+        client.setPageCacheSize(1);
+        final MockWebConnection webConnection = new MockWebConnection();
+        webConnection.setResponse(URL_FIRST, firstContent);
+        webConnection.setResponse(URL_SECOND, secondContent);
+        client.setWebConnection(webConnection);
+
+        final HtmlPage firstPage = client.getPage(URL_FIRST);
+        final JavaScriptJobManagerImpl firstJobManager =
+            (JavaScriptJobManagerImpl) firstPage.getEnclosingWindow().getJobManager();
+        assertEquals(0, client.waitForBackgroundJavaScriptStartingBefore(1000));
+        assertTrue(firstJobManager.isSuspended());
+        assertEquals("Second", ((HtmlPage) client.getCurrentWindow().getEnclosedPage()).getTitleText());
+    }
+
+    /**
+     * The jobs of a page evicted from the page cache are discarded, while the ones of the cached pages
+     * are kept.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void evictedCachedPage() throws Exception {
+        final String content = "<html><head><title>%s</title></head>\n"
+            + "<body onload='setInterval(function() { }, 1000)'>\n"
+            + "</body></html>";
+
+        final WebClient client = new WebClient();
+        client.setPageCacheSize(1);
+        final MockWebConnection webConnection = new MockWebConnection();
+        webConnection.setResponse(URL_FIRST, String.format(content, "First"));
+        webConnection.setResponse(URL_SECOND, String.format(content, "Second"));
+        webConnection.setResponse(URL_THIRD, String.format(content, "Third"));
+        client.setWebConnection(webConnection);
+
+        final HtmlPage firstPage = client.getPage(URL_FIRST);
+        final JavaScriptJobManagerImpl firstJobManager =
+            (JavaScriptJobManagerImpl) firstPage.getEnclosingWindow().getJobManager();
+        final HtmlPage secondPage = client.getPage(URL_SECOND);
+        final JavaScriptJobManagerImpl secondJobManager =
+            (JavaScriptJobManagerImpl) secondPage.getEnclosingWindow().getJobManager();
+        assertEquals(1, firstJobManager.getJobCount());
+
+        // only one page is kept in the page cache: the first one is evicted
+        client.getPage(URL_THIRD);
+        assertEquals(0, firstJobManager.getJobCount());
+        assertEquals(1, secondJobManager.getJobCount());
+        Assert.assertTrue(secondJobManager.isSuspended());
+    }
 }
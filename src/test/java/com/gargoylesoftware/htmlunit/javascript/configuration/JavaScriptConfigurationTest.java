@@ -140,6 +140,21 @@ public class JavaScriptConfigurationTest extends WebTestCase {
         assertTrue("Document property did not match", configuration.classConfigEquals("HTMLDocument", expectedConfig));
     }
 
+    /**
+     * Tests that equal browser versions share the same configuration.
+     */
+    @Test
+    public void getInstanceForEqualBrowserVersions() {
+        final String userAgent = "Mozilla/5.0 (Windows; U; Windows NT 5.1; en-US) Gecko/2008052906 Firefox/3.0";
+        final BrowserVersion browser1 = new BrowserVersion(BrowserVersion.NETSCAPE, "5.0 (Windows; en-US)",
+            userAgent, 3);
+        final BrowserVersion browser2 = new BrowserVersion(BrowserVersion.NETSCAPE, "5.0 (Windows; en-US)",
+            userAgent, 3);
+        final JavaScriptConfiguration configuration = JavaScriptConfiguration.getInstance(browser1);
+        Assert.assertSame(configuration, JavaScriptConfiguration.getInstance(browser1));
+        Assert.assertSame(configuration, JavaScriptConfiguration.getInstance(browser2));
+    }
+
     /**
      * Test getting the configuration for the Netscape browser. The readyState property should not be available
      * in this case.
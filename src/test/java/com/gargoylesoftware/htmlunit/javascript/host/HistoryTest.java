@@ -14,6 +14,9 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -258,4 +261,40 @@ public class HistoryTest extends WebServerTestCase {
         assertEquals(getExpectedAlerts(), alerts);
     }
 
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void pageCache() throws Exception {
+        final WebClient client = getWebClient();
+        client.setPageCacheSize(1);
+        final List<String> alerts = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(alerts));
+        final TopLevelWindow window = (TopLevelWindow) client.getCurrentWindow();
+        final History history = window.getHistory();
+
+        final HtmlPage pageA = client.getPage("http://localhost:" + PORT + "/HistoryTest_a.html");
+        final HtmlPage pageB = pageA.getAnchorByName("b").click();
+        final HtmlPage pageC = pageB.getAnchorByName("c").click();
+
+        HtmlPage page = pageC.getAnchorByName("back").click();
+        assertSame(pageB, page);
+        assertEquals(1, history.getIndex());
+        page.getAnchorByName("length").click();
+
+        page = page.getAnchorByName("forward").click();
+        assertSame(pageC, page);
+        assertEquals(2, history.getIndex());
+
+        // only one page is kept: the first one has been evicted
+        page = page.getAnchorByName("minusTwo").click();
+        assertNotSame(pageA, page);
+        assertEquals(0, history.getIndex());
+        assertEquals("http://localhost:" + PORT + "/HistoryTest_a.html",
+            page.getWebResponse().getRequestSettings().getUrl());
+
+        final String[] expectedAlerts = {"3"};
+        assertEquals(expectedAlerts, alerts);
+    }
+
 }
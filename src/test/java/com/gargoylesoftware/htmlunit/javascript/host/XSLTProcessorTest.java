@@ -14,6 +14,7 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host;
 
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -129,4 +130,157 @@ public class XSLTProcessorTest extends WebTestCase {
         client.getPage(URL_FIRST);
         assertEquals(expectedAlerts, collectedAlerts);
     }
+
+    /**
+     * Verifies that different stylesheets give different results, even if their compiled form is cached.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void transformToFragment() throws Exception {
+        final String html = "<html><head><title>foo</title><script>\n"
+            + "  function load(url) {\n"
+            + "    var doc = document.implementation.createDocument('', '', null);\n"
+            + "    doc.async = false;\n"
+            + "    doc.load(url);\n"
+            + "    return doc;\n"
+            + "  }\n"
+            + "  function transform(xmlDoc, url) {\n"
+            + "    var processor = new XSLTProcessor();\n"
+            + "    processor.importStylesheet(load(url));\n"
+            + "    var fragment = processor.transformToFragment(xmlDoc, document);\n"
+            + "    alert(fragment.firstChild.firstChild.nodeValue);\n"
+            + "  }\n"
+            + "  function test() {\n"
+            + "    var xmlDoc = load('" + URL_SECOND + "');\n"
+            + "    transform(xmlDoc, 'title.xsl');\n"
+            + "    transform(xmlDoc, 'artist.xsl');\n"
+            + "    transform(xmlDoc, 'title.xsl');\n"
+            + "  }\n"
+            + "</script></head><body onload='test()'>\n"
+            + "</body></html>";
+
+        final String xml
+            = "<catalog><cd><title>Empire Burlesque</title><artist>Bob Dylan</artist></cd></catalog>";
+
+        final String xsl
+            = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>\n"
+            + "  <xsl:template match='/'><p><xsl:value-of select='catalog/cd/%s'/></p></xsl:template>\n"
+            + "</xsl:stylesheet>";
+
+        final String[] expectedAlerts = {"Empire Burlesque", "Bob Dylan", "Empire Burlesque"};
+        final List<String> collectedAlerts = new ArrayList<String>();
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_2);
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection();
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(URL_SECOND, xml, "text/xml");
+        conn.setResponse(new URL(URL_FIRST, "title.xsl"), String.format(xsl, "title"), "text/xml");
+        conn.setResponse(new URL(URL_FIRST, "artist.xsl"), String.format(xsl, "artist"), "text/xml");
+        client.setWebConnection(conn);
+
+        client.getPage(URL_FIRST);
+        assertEquals(expectedAlerts, collectedAlerts);
+    }
+
+    /**
+     * Stylesheets which differ only by whitespace text must not share their compiled version.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void transformToFragment_whitespaceText() throws Exception {
+        final String html = "<html><head><title>foo</title><script>\n"
+            + "  function load(url) {\n"
+            + "    var doc = document.implementation.createDocument('', '', null);\n"
+            + "    doc.async = false;\n"
+            + "    doc.load(url);\n"
+            + "    return doc;\n"
+            + "  }\n"
+            + "  function transform(xmlDoc, url) {\n"
+            + "    var processor = new XSLTProcessor();\n"
+            + "    processor.importStylesheet(load(url));\n"
+            + "    var fragment = processor.transformToFragment(xmlDoc, document);\n"
+            + "    alert(fragment.firstChild.firstChild.nodeValue.charCodeAt(1));\n"
+            + "  }\n"
+            + "  function test() {\n"
+            + "    var xmlDoc = load('" + URL_SECOND + "');\n"
+            + "    transform(xmlDoc, 'space.xsl');\n"
+            + "    transform(xmlDoc, 'tab.xsl');\n"
+            + "  }\n"
+            + "</script></head><body onload='test()'>\n"
+            + "</body></html>";
+
+        final String xml = "<catalog/>";
+
+        final String xsl
+            = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>\n"
+            + "  <xsl:template match='/'><p>a<xsl:text>%s</xsl:text>b</p></xsl:template>\n"
+            + "</xsl:stylesheet>";
+
+        final String[] expectedAlerts = {"32", "9"};
+        final List<String> collectedAlerts = new ArrayList<String>();
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_2);
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection();
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(URL_SECOND, xml, "text/xml");
+        conn.setResponse(new URL(URL_FIRST, "space.xsl"), String.format(xsl, " "), "text/xml");
+        conn.setResponse(new URL(URL_FIRST, "tab.xsl"), String.format(xsl, "&#9;"), "text/xml");
+        client.setWebConnection(conn);
+
+        client.getPage(URL_FIRST);
+        assertEquals(expectedAlerts, collectedAlerts);
+    }
+
+    /**
+     * The compiled stylesheet is kept by the processor for all its transformations, until another
+     * stylesheet is imported.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void importStylesheet_again() throws Exception {
+        final String html = "<html><head><title>foo</title><script>\n"
+            + "  function load(url) {\n"
+            + "    var doc = document.implementation.createDocument('', '', null);\n"
+            + "    doc.async = false;\n"
+            + "    doc.load(url);\n"
+            + "    return doc;\n"
+            + "  }\n"
+            + "  function transform(processor, xmlDoc) {\n"
+            + "    var fragment = processor.transformToFragment(xmlDoc, document);\n"
+            + "    alert(fragment.firstChild.firstChild.nodeValue);\n"
+            + "  }\n"
+            + "  function test() {\n"
+            + "    var xmlDoc = load('" + URL_SECOND + "');\n"
+            + "    var processor = new XSLTProcessor();\n"
+            + "    processor.importStylesheet(load('title.xsl'));\n"
+            + "    transform(processor, xmlDoc);\n"
+            + "    transform(processor, xmlDoc);\n"
+            + "    processor.importStylesheet(load('artist.xsl'));\n"
+            + "    transform(processor, xmlDoc);\n"
+            + "  }\n"
+            + "</script></head><body onload='test()'>\n"
+            + "</body></html>";
+
+        final String xml
+            = "<catalog><cd><title>Empire Burlesque</title><artist>Bob Dylan</artist></cd></catalog>";
+
+        final String xsl
+            = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>\n"
+            + "  <xsl:template match='/'><p><xsl:value-of select='catalog/cd/%s'/></p></xsl:template>\n"
+            + "</xsl:stylesheet>";
+
+        final String[] expectedAlerts = {"Empire Burlesque", "Empire Burlesque", "Bob Dylan"};
+        final List<String> collectedAlerts = new ArrayList<String>();
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_2);
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection();
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(URL_SECOND, xml, "text/xml");
+        conn.setResponse(new URL(URL_FIRST, "title.xsl"), String.format(xsl, "title"), "text/xml");
+        conn.setResponse(new URL(URL_FIRST, "artist.xsl"), String.format(xsl, "artist"), "text/xml");
+        client.setWebConnection(conn);
+
+        client.getPage(URL_FIRST);
+        assertEquals(expectedAlerts, collectedAlerts);
+    }
 }
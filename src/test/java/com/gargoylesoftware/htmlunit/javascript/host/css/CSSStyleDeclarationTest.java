@@ -92,6 +92,35 @@ public class CSSStyleDeclarationTest extends WebTestCase {
             page.<HtmlElement>getHtmlElementById("div1").getAttribute("style"));
     }
 
+    /**
+     * The style object must follow the changes made to the "style" attribute by other means.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({ "10px", "20px", "30px", "", "5px", "50px", "5px" })
+    public void style_ExternalAttributeChanges() throws Exception {
+        final String html
+            = "<html><head><title>First</title><script>\n"
+            + "function doTest() {\n"
+            + "    var node = document.getElementById('div1');\n"
+            + "    var style = node.style;\n"
+            + "    alert(style.left);\n"
+            + "    style.left = '20px';\n"
+            + "    alert(style.left);\n"
+            + "    node.setAttribute('style', 'left: 30px; top: 5px');\n"
+            + "    alert(style.left);\n"
+            + "    style.cssText = 'top: 5px';\n"
+            + "    alert(style.left);\n"
+            + "    alert(style.top);\n"
+            + "    style.left = '50px';\n"
+            + "    alert(style.left);\n"
+            + "    alert(style.top);\n"
+            + "}\n</script></head>\n"
+            + "<body onload='doTest()'><div id='div1' style='left: 10px'>foo</div></body></html>";
+
+        loadPageWithAlerts(html);
+    }
+
     /**
      * @throws Exception if the test fails
      */
@@ -188,6 +188,45 @@ public class ComputedCSSStyleDeclarationTest extends WebTestCase {
         loadPageWithAlerts(html);
     }
 
+    /**
+     * Rules with a more specific selector win, whatever their order and stylesheet,
+     * and <tt>!important</tt> declarations win over normal ones.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({ "pointer", "move", "text", "crosshair", "wait" })
+    public void cascade() throws Exception {
+        final String html = "<html><head><title>foo</title>\n"
+            + "<style type='text/css'>\n"
+            + "  #d1 {cursor: pointer}\n"
+            + "  div.c1 {cursor: move}\n"
+            + "  span {cursor: help !important}\n"
+            + "</style>\n"
+            + "<style type='text/css'>\n"
+            + "  .c1 {cursor: text}\n"
+            + "  div {cursor: crosshair}\n"
+            + "  #s1 {cursor: wait !important}\n"
+            + "</style>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    var ids = ['d1', 'd2', 'd3', 'd4', 's1'];\n"
+            + "    for (var i = 0; i < ids.length; i++) {\n"
+            + "      var e = document.getElementById(ids[i]);\n"
+            + "      var s = window.getComputedStyle ? window.getComputedStyle(e, null) : e.currentStyle;\n"
+            + "      alert(s.cursor);\n"
+            + "    }\n"
+            + "  }\n"
+            + "</script></head><body onload='test()'>\n"
+            + "  <div id='d1' class='c1'></div>\n"
+            + "  <div id='d2' class='c1 c2'></div>\n"
+            + "  <p id='d3' class='c1'></p>\n"
+            + "  <div id='d4'></div>\n"
+            + "  <span id='s1'></span>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts(html);
+    }
+
     /**
      * Some style tests. There are two points in this case:
      * <ol>
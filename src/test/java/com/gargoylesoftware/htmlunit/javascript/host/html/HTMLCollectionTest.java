@@ -303,4 +303,47 @@ public class HTMLCollectionTest extends WebTestCase {
         loadPageWithAlerts(html);
     }
 
+    /**
+     * Collections must stay live when elements are added, removed or changed, including when the
+     * change doesn't concern them.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({ "2", "2", "3", "2", "1", "0", "1", "1", "0", "1" })
+    public void liveAfterChanges() throws Exception {
+        final String html
+            = "<html><head><title>foo</title><script>\n"
+            + "function doTest() {\n"
+            + "    var form = document.forms[0];\n"
+            + "    var elements = form.elements;\n"
+            + "    alert(elements.length);\n"
+            + "    form.appendChild(document.createElement('span'));\n"
+            + "    alert(elements.length);\n"
+            + "    var div = document.createElement('div');\n"
+            + "    div.appendChild(document.createElement('input'));\n"
+            + "    form.appendChild(div);\n"
+            + "    alert(elements.length);\n"
+            + "    form.removeChild(div);\n"
+            + "    alert(elements.length);\n"
+            + "    var named = document.getElementsByName('foo');\n"
+            + "    alert(named.length);\n"
+            + "    document.getElementById('i1').name = 'bar';\n"
+            + "    alert(named.length);\n"
+            + "    var tds = document.getElementById('r').cells;\n"
+            + "    alert(tds.length);\n"
+            + "    tds[0].appendChild(document.createElement('td'));\n"
+            + "    alert(tds.length);\n"
+            + "    tds[0].parentNode.removeChild(tds[0]);\n"
+            + "    alert(tds.length);\n"
+            + "    var spans = document.getElementsByTagName('span');\n"
+            + "    alert(spans.length);\n"
+            + "}\n"
+            + "</script></head><body onload='doTest()'>\n"
+            + "<form><input id='i1' name='foo'><input id='i2'></form>\n"
+            + "<table><tr id='r'><td>1</td></tr></table>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts(html);
+    }
+
 }
@@ -735,6 +735,25 @@ public class HTMLDocumentTest extends WebTestCase {
         loadPageWithAlerts(html);
     }
 
+    /**
+     * Tags and script elements may be written in several fragments.
+     * @exception Exception if the test fails
+     */
+    @Test
+    @Alerts({ "fragments", "DIV" })
+    public void writeInFragments() throws Exception {
+        final String html =
+              "<html><body><script>\n"
+            + "  document.write('<scr');\n"
+            + "  document.write('ipt>alert(\\'fr');\n"
+            + "  document.write('agments\\')</SCR');\n"
+            + "  document.write('IPT><d');\n"
+            + "  document.write('iv id=\"d\"></div>');\n"
+            + "  alert(document.getElementById('d').tagName);\n"
+            + "</script></body></html>";
+        loadPageWithAlerts(html);
+    }
+
     /**
      * Test that <tt>document.forms.form_name</tt> should be evaluated to <tt>undefined</tt> if the form has a prefix.
      * @throws Exception if the test fails
@@ -14,6 +14,9 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.regexp;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -442,6 +445,18 @@ public class HtmlUnitRegExpProxyTest extends WebTestCase {
         assertEquals("(a)(b)[\\\\2c]", HtmlUnitRegExpProxy.jsRegExpToJavaRegExp("(a)(b)[\\\\2c]"));
     }
 
+    /**
+     * Verifies that the translated patterns are reused.
+     */
+    @Test
+    public void regExpDataCache() {
+        final HtmlUnitRegExpProxy.RegExpData data = HtmlUnitRegExpProxy.getRegExpData("a{2}b", "gi");
+        assertSame(data, HtmlUnitRegExpProxy.getRegExpData("a{2}b", "gi"));
+        assertNotSame(data, HtmlUnitRegExpProxy.getRegExpData("a{2}b", "g"));
+        assertNotSame(data, HtmlUnitRegExpProxy.getRegExpData("gi/a{2}b", ""));
+        assertTrue(data.getPattern().matcher("xAab").find());
+    }
+
     /**
      * Tests usage of regex with non escaped curly braces, such as is used by dhtmlGrid.
      * @throws Exception if the test fails
@@ -22,6 +22,7 @@ import javax.servlet.Servlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.xml.XMLConstants;
 
 import org.apache.commons.httpclient.HttpStatus;
 import org.junit.Assert;
@@ -34,6 +35,10 @@ import com.gargoylesoftware.htmlunit.MockWebConnection;
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebServerTestCase;
+import com.gargoylesoftware.htmlunit.html.DomCDataSection;
+import com.gargoylesoftware.htmlunit.html.DomComment;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
 
 /**
  * Tests for {@link XmlPage}.
@@ -84,6 +89,62 @@ public class XmlPageTest extends WebServerTestCase {
         assertEquals("foo", xmlPage.getXmlDocument().getFirstChild().getNodeName());
     }
 
+    /**
+     * Tests the nodes built while parsing the content.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void domNodes() throws Exception {
+        final String content
+            = "<?xml version='1.0'?>\n"
+            + "<!DOCTYPE foo SYSTEM 'foo.dtd'>\n"
+            + "<foo xmlns:b='urn:b'><!--comment-->"
+            + "<b:bar a='1'>x<![CDATA[<y>]]>z</b:bar>"
+            + "</foo>";
+
+        final XmlPage xmlPage = testXmlDocument(content, "text/xml");
+        assertEquals("foo", xmlPage.getDoctype().getName());
+
+        final DomElement foo = xmlPage.getDocumentElement();
+        assertEquals("foo", foo.getTagName());
+        assertTrue(DomComment.class.isInstance(foo.getFirstChild()));
+
+        final DomElement bar = (DomElement) foo.getLastChild();
+        assertEquals("b:bar", bar.getTagName());
+        assertEquals("urn:b", bar.getNamespaceURI());
+        assertEquals("urn:b", XmlUtil.lookupNamespaceURI(bar, "b"));
+        assertEquals("1", bar.getAttribute("a"));
+
+        final DomNode cdata = bar.getFirstChild().getNextSibling();
+        assertTrue(DomCDataSection.class.isInstance(cdata));
+        assertEquals("x", bar.getFirstChild().getNodeValue());
+        assertEquals("<y>", cdata.getNodeValue());
+        assertEquals("z", bar.getLastChild().getNodeValue());
+    }
+
+    /**
+     * The attributes of XHTML elements get the same namespace URIs as the ones of other elements.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void domNodes_xhtmlAttributes() throws Exception {
+        final String content
+            = "<html xmlns='http://www.w3.org/1999/xhtml' xmlns:x='urn:x'>"
+            + "<body id='b' x:a='1'></body>"
+            + "</html>";
+
+        final XmlPage xmlPage = testXmlDocument(content, "text/xml");
+        final DomElement html = xmlPage.getDocumentElement();
+        assertEquals(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, html.getAttributesMap().get("xmlns").getNamespaceURI());
+        assertEquals(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, html.getAttributesMap().get("xmlns:x").getNamespaceURI());
+
+        final DomElement body = (DomElement) html.getFirstChild();
+        assertNull(body.getAttributesMap().get("id").getNamespaceURI());
+        assertEquals("b", body.getAttribute("id"));
+        assertEquals("urn:x", body.getAttributesMap().get("x:a").getNamespaceURI());
+        assertEquals("1", body.getAttributeNS("urn:x", "a"));
+    }
+
     /**
      * Utility method to test XML page of different MIME types.
      * @param content the XML content